@@ -3,19 +3,69 @@ package com.clj.fastbluetooth;
 
 import android.app.Application;
 import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
 import android.content.Context;
 import android.content.pm.PackageManager;
 
+import com.clj.fastbluetooth.callback.BluetoothConnectCallback;
+import com.clj.fastbluetooth.callback.BluetoothHeartbeatCallback;
+import com.clj.fastbluetooth.callback.BluetoothMetricsCallback;
 import com.clj.fastbluetooth.callback.BluetoothReadCallback;
+import com.clj.fastbluetooth.callback.BluetoothReceiveCallback;
+import com.clj.fastbluetooth.callback.BluetoothResponseCallback;
 import com.clj.fastbluetooth.callback.BluetoothScanCallback;
+import com.clj.fastbluetooth.callback.BluetoothTransferCallback;
+import com.clj.fastbluetooth.callback.BluetoothWritabilityCallback;
 import com.clj.fastbluetooth.callback.BluetoothWriteCallback;
+import com.clj.fastbluetooth.codec.FrameDecoder;
+import com.clj.fastbluetooth.codec.ResponseMatcher;
+import com.clj.fastbluetooth.core.BluetoothConnection;
 import com.clj.fastbluetooth.core.BluetoothController;
+import com.clj.fastbluetooth.core.BluetoothExecutor;
+import com.clj.fastbluetooth.core.BluetoothMetrics;
+import com.clj.fastbluetooth.core.BluetoothTracer;
+import com.clj.fastbluetooth.core.ChannelReceiver;
+import com.clj.fastbluetooth.core.DeviceConnectStats;
+import com.clj.fastbluetooth.core.FileTransfer;
+import com.clj.fastbluetooth.core.HeartbeatSupervisor;
+import com.clj.fastbluetooth.core.ReadLoop;
+import com.clj.fastbluetooth.core.ReplayInputStream;
+import com.clj.fastbluetooth.core.ResponseFuture;
+import com.clj.fastbluetooth.core.ScanStats;
+import com.clj.fastbluetooth.core.TraceSink;
+import com.clj.fastbluetooth.core.TrafficRecorder;
+import com.clj.fastbluetooth.data.ConnectOptions;
+import com.clj.fastbluetooth.data.ExecutorStats;
+import com.clj.fastbluetooth.data.HeartbeatOptions;
+import com.clj.fastbluetooth.data.KnownDevice;
+import com.clj.fastbluetooth.data.MetricsSnapshot;
+import com.clj.fastbluetooth.data.ReceiveOptions;
+import com.clj.fastbluetooth.data.ScanFilter;
+import com.clj.fastbluetooth.data.ScanOptions;
+import com.clj.fastbluetooth.data.ScanResult;
+import com.clj.fastbluetooth.data.TransferOptions;
+import com.clj.fastbluetooth.data.WriteOptions;
+import com.clj.fastbluetooth.utils.AsyncLogSink;
 import com.clj.fastbluetooth.utils.BluetoothLog;
+import com.clj.fastbluetooth.utils.LogSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 public class FastBluetooth {
 
+    private static final int DEFAULT_MAX_CONNECTIONS = 7;
+
     private Context context;
     private BluetoothAdapter bluetoothAdapter;
+    private int maxReadBufferSize = ReadLoop.DEFAULT_MAX_BUFFER_SIZE;
+    private WriteOptions writeOptions = new WriteOptions();
+    private ScanOptions scanOptions = new ScanOptions();
+    private ConnectOptions connectOptions = new ConnectOptions();
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 
     public static FastBluetooth getInstance() {
         return FastBluetoothHolder.sFastBluetooth;
@@ -53,6 +103,239 @@ public class FastBluetooth {
         return this;
     }
 
+    /**
+     * 设置日志输出的最低级别，例如{@link BluetoothLog#WARN}，{@link BluetoothLog#NONE}表示全部关闭
+     */
+    public FastBluetooth setLogLevel(int level) {
+        BluetoothLog.setLevel(level);
+        return this;
+    }
+
+    /**
+     * 设置日志的输出目标，传null恢复为logcat
+     */
+    public FastBluetooth setLogSink(LogSink sink) {
+        BluetoothLog.setSink(sink);
+        return this;
+    }
+
+    /**
+     * 在后台线程输出日志，调用线程只做入队，缓冲区满时丢弃
+     */
+    public FastBluetooth enableAsyncLog(boolean enable) {
+        synchronized (BluetoothLog.class) {
+            LogSink sink = BluetoothLog.getSink();
+            if (enable && !(sink instanceof AsyncLogSink)) {
+                BluetoothLog.setSink(new AsyncLogSink(sink));
+            } else if (!enable && sink instanceof AsyncLogSink) {
+                BluetoothLog.setSink(((AsyncLogSink) sink).getTarget());
+                ((AsyncLogSink) sink).close();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 以DEBUG级别输出收发数据的十六进制转储
+     *
+     * @param maxBytes 每段数据最多转储的字节数，小于0时不限制
+     */
+    public FastBluetooth enableTrafficLog(boolean enable, int maxBytes) {
+        BluetoothLog.setTrafficEnabled(enable, maxBytes);
+        return this;
+    }
+
+    /**
+     * 设置接收缓冲区的最大字节数，未被消费的数据超过该值时会回调onReadError并丢弃
+     */
+    public FastBluetooth setMaxReadBufferSize(int size) {
+        if (size > 0) {
+            this.maxReadBufferSize = size;
+        }
+        return this;
+    }
+
+    public int getMaxReadBufferSize() {
+        return maxReadBufferSize;
+    }
+
+    /**
+     * 设置写数据的配置，例如合并写入，对之后建立的连接生效
+     */
+    public FastBluetooth setWriteOptions(WriteOptions options) {
+        if (options != null) {
+            this.writeOptions = options;
+        }
+        return this;
+    }
+
+    public WriteOptions getWriteOptions() {
+        return writeOptions;
+    }
+
+    /**
+     * 设置扫描的配置，例如待筛选队列的长度、溢出策略和已配对设备的查找方式，对之后的扫描生效
+     */
+    public FastBluetooth setScanOptions(ScanOptions options) {
+        if (options != null) {
+            this.scanOptions = options;
+        }
+        return this;
+    }
+
+    public ScanOptions getScanOptions() {
+        return scanOptions;
+    }
+
+    /**
+     * 设置连接的配置，例如socket建立方式、重试退避和总时限，对之后的连接生效
+     */
+    public FastBluetooth setConnectOptions(ConnectOptions options) {
+        if (options != null) {
+            this.connectOptions = options;
+        }
+        return this;
+    }
+
+    public ConnectOptions getConnectOptions() {
+        return connectOptions;
+    }
+
+    /**
+     * 同时保持连接的最大设备数，读线程数的上限随之设为它的两倍
+     */
+    public FastBluetooth setMaxConnections(int maxConnections) {
+        if (maxConnections > 0) {
+            this.maxConnections = maxConnections;
+            BluetoothExecutor.getInstance().setReadThreadPoolSize(maxConnections * 2);
+        }
+        return this;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * 所有连接共享的写线程数，需要在第一次建立连接之前设置
+     * 每个连接的读任务阻塞在各自的socket上，不计入其中
+     */
+    public FastBluetooth setWriteThreadPoolSize(int size) {
+        BluetoothExecutor.getInstance().setWriteThreadPoolSize(size);
+        return this;
+    }
+
+    public int getWriteThreadPoolSize() {
+        return BluetoothExecutor.getInstance().getWriteThreadPoolSize();
+    }
+
+    /**
+     * 扫描、设备筛选、连接等任务的线程数，需要在第一次扫描或连接之前设置
+     */
+    public FastBluetooth setIoThreadPoolSize(int size) {
+        BluetoothExecutor.getInstance().setIoThreadPoolSize(size);
+        return this;
+    }
+
+    public int getIoThreadPoolSize() {
+        return BluetoothExecutor.getInstance().getIoThreadPoolSize();
+    }
+
+    /**
+     * 使用应用自己的执行器运行扫描、设备筛选、连接等任务，传null恢复使用内部线程池
+     * 扫描期间筛选任务会一直占用一个线程，执行器至少需要两个线程
+     */
+    public FastBluetooth setIoExecutor(Executor executor) {
+        BluetoothExecutor.getInstance().setIoExecutor(executor);
+        return this;
+    }
+
+    /**
+     * 各线程池的线程数、活跃任务数和排队任务数
+     */
+    public List<ExecutorStats> getExecutorStats() {
+        return BluetoothExecutor.getInstance().getStats();
+    }
+
+    /**
+     * 开启扫描、连接、读写的全局指标统计，默认关闭
+     */
+    public FastBluetooth enableMetrics(boolean enable) {
+        BluetoothMetrics.getInstance().setEnabled(enable);
+        return this;
+    }
+
+    /**
+     * 开启指标统计后，每隔intervalMillis在后台线程推送一次快照，callback为null时停止推送
+     */
+    public FastBluetooth setMetricsCallback(BluetoothMetricsCallback callback, long intervalMillis) {
+        BluetoothMetrics.getInstance().setCallback(callback, intervalMillis);
+        return this;
+    }
+
+    /**
+     * 指标名称见{@link BluetoothMetrics}中的常量
+     */
+    public MetricsSnapshot getMetrics() {
+        return BluetoothMetrics.getInstance().snapshot();
+    }
+
+    /**
+     * 开启扫描和连接过程的操作轨迹记录，默认关闭，最多保留{@link BluetoothTracer#DEFAULT_CAPACITY}个事件
+     */
+    public FastBluetooth enableTrace(boolean enable) {
+        return enableTrace(enable, BluetoothTracer.getInstance().getCapacity());
+    }
+
+    /**
+     * 开启扫描和连接过程的操作轨迹记录
+     *
+     * @param capacity 最多保留的事件数，超过后覆盖最早的事件
+     */
+    public FastBluetooth enableTrace(boolean enable, int capacity) {
+        if (capacity != BluetoothTracer.getInstance().getCapacity()) {
+            BluetoothTracer.getInstance().setCapacity(capacity);
+        }
+        BluetoothTracer.getInstance().setEnabled(enable);
+        return this;
+    }
+
+    /**
+     * 导出已记录的轨迹，例如new ChromeTraceFileSink(file)，在调用线程中执行
+     */
+    public void exportTrace(TraceSink sink) throws IOException {
+        BluetoothTracer.getInstance().export(sink);
+    }
+
+    /**
+     * 开始把所有连接收发的数据记录到文件，已有的抓包会先结束
+     *
+     * @param maxBytes 文件大小上限，达到后不再记录
+     */
+    public TrafficRecorder startTrafficCapture(File file, long maxBytes) throws IOException {
+        return TrafficRecorder.start(file, maxBytes);
+    }
+
+    public void stopTrafficCapture() {
+        TrafficRecorder.stop();
+    }
+
+    /**
+     * 把抓包中某个设备收到的数据重新交给读任务，按原来的分段和时间间隔回调，读完后回调onReadError(ERROR_DISCONNECTION)
+     *
+     * @param mac   为null时重放全部设备的数据
+     * @param speed {@link ReplayInputStream#ORIGINAL_SPEED}按原速度，{@link ReplayInputStream#AS_FAST_AS_POSSIBLE}不等待
+     * @return 读任务，调用close()提前结束
+     */
+    public ReadLoop replayTrafficCapture(File capture, String mac, double speed, FrameDecoder decoder,
+                                         BluetoothReadCallback callback) throws IOException {
+        ReadLoop readLoop = new ReadLoop(new ReplayInputStream(capture, mac, speed), ReadLoop.DEFAULT_BUFFER_SIZE,
+                maxReadBufferSize, callback);
+        readLoop.setFrameDecoder(decoder);
+        readLoop.start(BluetoothExecutor.getInstance().getReadExecutor());
+        return readLoop;
+    }
+
     public void fastScan(BluetoothScanCallback callback) {
         scan(null, null, -1, false, callback);
     }
@@ -77,8 +360,24 @@ public class FastBluetooth {
         scan(names, mac, timeout, true, callback);
     }
 
+    /**
+     * 按筛选条件扫描，支持多个名称、前缀、后缀、MAC和正则，发现第一个匹配的设备后结束扫描
+     */
+    public void scanWithFilter(ScanFilter filter, long timeout, BluetoothScanCallback callback) {
+        scan(filter, timeout, false, callback);
+    }
+
+    public void scanAndConnect(ScanFilter filter, long timeout, BluetoothScanCallback callback) {
+        scan(filter, timeout, true, callback);
+    }
+
     private void scan(String[] names, String mac, long timeout,
                       boolean autoConnect, BluetoothScanCallback callback) {
+        scan(new ScanFilter().addNames(names).addMacs(mac), timeout, autoConnect, callback);
+    }
+
+    private void scan(ScanFilter filter, long timeout,
+                      boolean autoConnect, BluetoothScanCallback callback) {
         if (callback == null) {
             throw new IllegalArgumentException("BluetoothScanCallback can not be Null!");
         }
@@ -89,23 +388,168 @@ public class FastBluetooth {
             return;
         }
 
-        BluetoothController.getInstance().scan(names, mac, timeout, autoConnect, callback);
+        BluetoothController.getInstance().scan(filter, timeout, autoConnect, callback);
+    }
+
+    /**
+     * 当前或最近一次扫描发现的设备，返回不可变的快照，扫描过程中也可以遍历
+     */
+    public List<ScanResult> getScanResults() {
+        return BluetoothController.getInstance().getScanResults();
+    }
+
+    /**
+     * 当前或最近一次扫描的统计，包括因队列已满被丢弃的设备数
+     */
+    public ScanStats getScanStats() {
+        return BluetoothController.getInstance().getScanStats();
+    }
+
+    /**
+     * 连接指定设备，可以同时连接多个设备
+     */
+    public void connect(BluetoothDevice device, BluetoothConnectCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("BluetoothConnectCallback can not be Null!");
+        }
+        BluetoothController.getInstance().connect(device, callback);
+    }
+
+    /**
+     * 直接连接之前连接成功过的设备，省去扫描；直接连接失败时回退到按MAC扫描后再连接
+     *
+     * @param scanTimeout 回退扫描的超时时间，毫秒
+     */
+    public void reconnect(String mac, long scanTimeout, BluetoothConnectCallback callback) {
+        BluetoothController.getInstance().reconnect(mac, scanTimeout, callback);
+    }
+
+    /**
+     * 连接成功过的设备，最近连接的在前，应用重启后仍然保留
+     */
+    public List<KnownDevice> getKnownDevices() {
+        return BluetoothController.getInstance().getKnownDeviceStore().getAll();
+    }
+
+    public void forgetKnownDevice(String mac) {
+        BluetoothController.getInstance().getKnownDeviceStore().remove(mac);
+    }
+
+    /**
+     * 设备的连接统计，包括按原因分类的失败次数，没有连接过时返回null
+     */
+    public DeviceConnectStats getConnectStats(String mac) {
+        return BluetoothController.getInstance().getConnectStats(mac);
+    }
+
+    public BluetoothConnection getConnection(String mac) {
+        return BluetoothController.getInstance().getConnection(mac);
+    }
+
+    public List<BluetoothConnection> getAllConnections() {
+        return BluetoothController.getInstance().getAllConnections();
     }
 
     public void write(byte[] command, BluetoothWriteCallback callback) {
         BluetoothController.getInstance().write(command, callback);
     }
 
+    /**
+     * 发送文件，例如固件升级包，按块从文件读取，窗口内的块写出后再读取下一块
+     * 失败时回调已写出到的位置，重连后设置{@link TransferOptions#setOffset(long)}续传
+     *
+     * @return 传输任务，没有连接时返回null
+     */
+    public FileTransfer sendFile(File file, TransferOptions options, BluetoothTransferCallback callback) {
+        return BluetoothController.getInstance().sendFile(file, options, callback);
+    }
+
+    /**
+     * 接收大量数据到文件，例如日志导出或批量下载，数据经复用的直接缓冲区写入文件，不逐段回调byte[]
+     * 收到{@link ReceiveOptions#setMaxBytes(long)}或{@link ReceiveOptions#setTerminator(byte[])}后结束，
+     * 通常在发送导出命令之前调用
+     *
+     * @return 接收任务，没有连接时返回null
+     */
+    public ChannelReceiver receiveFile(File file, ReceiveOptions options, BluetoothReceiveCallback callback) {
+        return BluetoothController.getInstance().receiveFile(file, options, callback);
+    }
+
+    /**
+     * 接收数据到任意通道，结束时不关闭通道
+     */
+    public ChannelReceiver receive(WritableByteChannel channel, ReceiveOptions options,
+                                   BluetoothReceiveCallback callback) {
+        return BluetoothController.getInstance().receive(channel, options, callback);
+    }
+
+    /**
+     * 发送请求，返回的Future在收到匹配的应答、超时或失败时完成
+     * 多个请求可以同时进行，不需要等上一个应答
+     */
+    public ResponseFuture request(byte[] command, ResponseMatcher matcher, long timeout) {
+        return BluetoothController.getInstance().request(command, matcher, timeout, null);
+    }
+
+    public ResponseFuture request(byte[] command, ResponseMatcher matcher, long timeout,
+                                  BluetoothResponseCallback callback) {
+        return BluetoothController.getInstance().request(command, matcher, timeout, callback);
+    }
+
+    public void setWritabilityCallback(BluetoothWritabilityCallback callback) {
+        BluetoothController.getInstance().setWritabilityCallback(callback);
+    }
+
+    public boolean isWritable() {
+        return BluetoothController.getInstance().isWritable();
+    }
+
     public void openDataRead(BluetoothReadCallback callback) {
-        BluetoothController.getInstance().read(callback);
+        BluetoothController.getInstance().read(null, callback);
+    }
+
+    /**
+     * 按帧读取数据，只有解码出的完整帧才会回调onDataReceive
+     */
+    public void openDataRead(FrameDecoder decoder, BluetoothReadCallback callback) {
+        BluetoothController.getInstance().read(decoder, callback);
     }
 
     public void stopDataRead(){
         BluetoothController.getInstance().stopDataRead();
     }
 
-    public void destroy() {
+    /**
+     * 为最近一次建立的连接开启心跳监控，心跳超时后自动重连
+     *
+     * @return 没有连接时返回null
+     */
+    public HeartbeatSupervisor startHeartbeat(HeartbeatOptions options, BluetoothHeartbeatCallback callback) {
+        return BluetoothController.getInstance().startHeartbeat(options, callback);
+    }
 
+    public void disconnect() {
+        BluetoothController.getInstance().disconnect();
+    }
+
+    public void disconnect(String mac) {
+        BluetoothController.getInstance().disconnect(mac);
+    }
+
+    public void disconnectAll() {
+        BluetoothController.getInstance().disconnectAll();
+    }
+
+    /**
+     * 停止扫描、断开所有连接并关闭线程池
+     * 已提交的任务会继续执行完，不阻塞调用线程；之后再次使用会重新创建线程池
+     */
+    public void destroy() {
+        if (context != null) {
+            BluetoothController.getInstance().cancelScan();
+        }
+        BluetoothController.getInstance().disconnectAll();
+        BluetoothExecutor.getInstance().shutdown();
     }
 
 
@@ -0,0 +1,17 @@
+package com.clj.fastbluetooth.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.clj.fastbluetooth.core.BluetoothConnection;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+public interface BluetoothConnectCallback {
+
+    void onStartConnect(BluetoothDevice device);
+
+    void onConnectFail(BluetoothDevice device, BluetoothException exception);
+
+    void onConnectSuccess(BluetoothConnection connection);
+
+    void onDisConnected(BluetoothDevice device);
+}
@@ -0,0 +1,24 @@
+package com.clj.fastbluetooth.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.clj.fastbluetooth.core.BluetoothConnection;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+public interface BluetoothHeartbeatCallback {
+
+    /**
+     * 心跳超时或连接断开，旧连接已关闭，开启自动重连时随后开始重连
+     */
+    void onLinkLost(BluetoothDevice device, BluetoothException exception);
+
+    /**
+     * 重连成功，读回调、帧解码器和可写状态回调已转移到新的连接上
+     */
+    void onReconnected(BluetoothConnection connection);
+
+    /**
+     * 达到最大重连次数，不再重连
+     */
+    void onReconnectFail(BluetoothDevice device, BluetoothException exception);
+}
@@ -0,0 +1,11 @@
+package com.clj.fastbluetooth.callback;
+
+import com.clj.fastbluetooth.data.MetricsSnapshot;
+
+public interface BluetoothMetricsCallback {
+
+    /**
+     * 按设置的间隔在后台线程中回调
+     */
+    void onMetrics(MetricsSnapshot snapshot);
+}
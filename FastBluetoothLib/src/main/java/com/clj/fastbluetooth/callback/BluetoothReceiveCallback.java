@@ -0,0 +1,29 @@
+package com.clj.fastbluetooth.callback;
+
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+public interface BluetoothReceiveCallback {
+
+    /**
+     * 按{@link com.clj.fastbluetooth.data.ReceiveOptions#setProgressIntervalMillis(long)}的间隔回调
+     *
+     * @param bytes          已写入通道的字节数
+     * @param bytesPerSecond 距上一次回调期间的速率
+     */
+    void onReceiveProgress(long bytes, long bytesPerSecond);
+
+    /**
+     * 收到了指定的字节数或结束标记，数据已全部写入通道
+     *
+     * @param bytes          写入通道的字节数，不包含结束标记
+     * @param bytesPerSecond 从收到第一段数据起的平均速率
+     */
+    void onReceiveComplete(long bytes, long bytesPerSecond);
+
+    /**
+     * 接收失败、连接断开或被取消
+     *
+     * @param bytes 已写入通道的字节数
+     */
+    void onReceiveError(BluetoothException e, long bytes);
+}
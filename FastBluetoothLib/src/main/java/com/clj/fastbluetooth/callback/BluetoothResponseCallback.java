@@ -0,0 +1,10 @@
+package com.clj.fastbluetooth.callback;
+
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+public interface BluetoothResponseCallback {
+
+    void onResponseError(BluetoothException e);
+
+    void onResponse(byte[] data);
+}
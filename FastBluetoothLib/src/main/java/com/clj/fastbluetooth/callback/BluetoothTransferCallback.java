@@ -0,0 +1,28 @@
+package com.clj.fastbluetooth.callback;
+
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+public interface BluetoothTransferCallback {
+
+    /**
+     * 按{@link com.clj.fastbluetooth.data.TransferOptions#setProgressIntervalMillis(long)}的间隔回调
+     *
+     * @param position       已写出到的文件位置，包含续传跳过的部分
+     * @param end            传输结束的文件位置
+     * @param bytesPerSecond 距上一次回调期间的速率
+     */
+    void onTransferProgress(long position, long end, long bytesPerSecond);
+
+    /**
+     * @param bytes          本次传输写出的字节数，不包含续传跳过的部分
+     * @param bytesPerSecond 本次传输的平均速率
+     */
+    void onTransferComplete(long bytes, long bytesPerSecond);
+
+    /**
+     * 传输失败或被取消，已经进入写队列的块都写出或失败后才回调
+     *
+     * @param position 已写出到的文件位置，之前的数据都已写出，之后的都没有，重连后作为续传的offset
+     */
+    void onTransferError(BluetoothException e, long position);
+}
@@ -0,0 +1,9 @@
+package com.clj.fastbluetooth.callback;
+
+public interface BluetoothWritabilityCallback {
+
+    /**
+     * 待写出的字节数超过高水位时回调false，回落到低水位以下时回调true
+     */
+    void onWritabilityChanged(boolean writable);
+}
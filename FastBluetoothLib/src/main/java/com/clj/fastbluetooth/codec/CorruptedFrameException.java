@@ -0,0 +1,12 @@
+package com.clj.fastbluetooth.codec;
+
+import java.io.IOException;
+
+public class CorruptedFrameException extends IOException {
+
+    private static final long serialVersionUID = -3262540474377290521L;
+
+    public CorruptedFrameException(String message) {
+        super(message);
+    }
+}
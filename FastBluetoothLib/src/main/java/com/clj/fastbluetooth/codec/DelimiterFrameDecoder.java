@@ -0,0 +1,69 @@
+package com.clj.fastbluetooth.codec;
+
+/**
+ * 分隔符分帧，例如以"\r\n"结尾的文本协议
+ * 记录已经扫描过的位置，数据分多次到达时不会重复扫描。
+ */
+public class DelimiterFrameDecoder implements FrameDecoder {
+
+    private final byte[] delimiter;
+    private final boolean stripDelimiter;
+    private final int maxFrameLength;
+
+    // 相对于当前帧起点，已确认不包含分隔符的字节数
+    private int searchIndex;
+
+    public DelimiterFrameDecoder(byte[] delimiter, int maxFrameLength) {
+        this(delimiter, true, maxFrameLength);
+    }
+
+    public DelimiterFrameDecoder(byte[] delimiter, boolean stripDelimiter, int maxFrameLength) {
+        if (delimiter == null || delimiter.length == 0) {
+            throw new IllegalArgumentException("delimiter can not be empty!");
+        }
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be a positive integer: " + maxFrameLength);
+        }
+        this.delimiter = delimiter.clone();
+        this.stripDelimiter = stripDelimiter;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public int decode(byte[] buffer, int offset, int length, Frame frame) throws CorruptedFrameException {
+        int index = indexOf(buffer, offset, length);
+        if (index < 0) {
+            searchIndex = Math.max(0, length - delimiter.length + 1);
+            if (length > maxFrameLength + delimiter.length) {
+                throw new CorruptedFrameException("frame length exceeds " + maxFrameLength + ": " + length);
+            }
+            return 0;
+        }
+
+        searchIndex = 0;
+        if (index > maxFrameLength) {
+            throw new CorruptedFrameException("frame length exceeds " + maxFrameLength + ": " + index);
+        }
+        frame.set(offset, stripDelimiter ? index : index + delimiter.length);
+        return index + delimiter.length;
+    }
+
+    @Override
+    public void reset() {
+        searchIndex = 0;
+    }
+
+    private int indexOf(byte[] buffer, int offset, int length) {
+        int last = length - delimiter.length;
+        for (int i = searchIndex; i <= last; i++) {
+            int j = 0;
+            while (j < delimiter.length && buffer[offset + i + j] == delimiter[j]) {
+                j++;
+            }
+            if (j == delimiter.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,29 @@
+package com.clj.fastbluetooth.codec;
+
+/**
+ * 定长帧，每frameLength个字节为一帧
+ */
+public class FixedLengthFrameDecoder implements FrameDecoder {
+
+    private final int frameLength;
+
+    public FixedLengthFrameDecoder(int frameLength) {
+        if (frameLength <= 0) {
+            throw new IllegalArgumentException("frameLength must be a positive integer: " + frameLength);
+        }
+        this.frameLength = frameLength;
+    }
+
+    @Override
+    public int decode(byte[] buffer, int offset, int length, Frame frame) {
+        if (length < frameLength) {
+            return 0;
+        }
+        frame.set(offset, frameLength);
+        return frameLength;
+    }
+
+    @Override
+    public void reset() {
+    }
+}
@@ -0,0 +1,23 @@
+package com.clj.fastbluetooth.codec;
+
+/**
+ * 解码出的一帧在接收缓冲区中的位置
+ */
+public final class Frame {
+
+    private int offset;
+    private int length;
+
+    public void set(int offset, int length) {
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+}
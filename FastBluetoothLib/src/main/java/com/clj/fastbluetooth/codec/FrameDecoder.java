@@ -0,0 +1,24 @@
+package com.clj.fastbluetooth.codec;
+
+/**
+ * 帧解码器
+ * 读线程每次收到数据后，反复调用{@link #decode(byte[], int, int, Frame)}直到返回0，
+ * 只有完整的帧才会回调给{@link com.clj.fastbluetooth.callback.BluetoothReadCallback}。
+ * 解码器只在读线程中使用，可以保存增量解析的状态，但一个实例只能对应一个连接。
+ */
+public interface FrameDecoder {
+
+    /**
+     * 从buffer[offset, offset + length)的开头解析一帧
+     *
+     * @param frame 解析成功时写入帧内容在buffer中的位置，由读线程复用
+     * @return 这一帧在buffer中占用的字节数（包括帧头、分隔符等），数据不足一帧时返回0
+     * @throws CorruptedFrameException 数据无法解析，读线程会丢弃当前缓冲区并调用{@link #reset()}
+     */
+    int decode(byte[] buffer, int offset, int length, Frame frame) throws CorruptedFrameException;
+
+    /**
+     * 清除增量解析的状态
+     */
+    void reset();
+}
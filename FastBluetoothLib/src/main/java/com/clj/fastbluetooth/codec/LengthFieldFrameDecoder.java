@@ -0,0 +1,86 @@
+package com.clj.fastbluetooth.codec;
+
+/**
+ * 长度字段分帧
+ * 帧总长度 = lengthFieldOffset + lengthFieldLength + 长度字段的值 + lengthAdjustment，
+ * 回调给上层的内容会去掉开头的initialBytesToStrip个字节。
+ * 例如帧格式为 [0xAA][len 2字节][payload]，len只表示payload长度时：
+ * new LengthFieldFrameDecoder(1024, 1, 2, 0, 3, true)
+ */
+public class LengthFieldFrameDecoder implements FrameDecoder {
+
+    private final int maxFrameLength;
+    private final int lengthFieldOffset;
+    private final int lengthFieldLength;
+    private final int lengthFieldEndOffset;
+    private final int lengthAdjustment;
+    private final int initialBytesToStrip;
+    private final boolean bigEndian;
+
+    public LengthFieldFrameDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength) {
+        this(maxFrameLength, lengthFieldOffset, lengthFieldLength, 0, 0, true);
+    }
+
+    public LengthFieldFrameDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength,
+                                   int lengthAdjustment, int initialBytesToStrip, boolean bigEndian) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be a positive integer: " + maxFrameLength);
+        }
+        if (lengthFieldOffset < 0) {
+            throw new IllegalArgumentException("lengthFieldOffset must be a non-negative integer: " + lengthFieldOffset);
+        }
+        if (lengthFieldLength != 1 && lengthFieldLength != 2 && lengthFieldLength != 3 && lengthFieldLength != 4) {
+            throw new IllegalArgumentException("lengthFieldLength must be either 1, 2, 3, or 4: " + lengthFieldLength);
+        }
+        if (initialBytesToStrip < 0) {
+            throw new IllegalArgumentException("initialBytesToStrip must be a non-negative integer: " + initialBytesToStrip);
+        }
+        this.maxFrameLength = maxFrameLength;
+        this.lengthFieldOffset = lengthFieldOffset;
+        this.lengthFieldLength = lengthFieldLength;
+        this.lengthFieldEndOffset = lengthFieldOffset + lengthFieldLength;
+        this.lengthAdjustment = lengthAdjustment;
+        this.initialBytesToStrip = initialBytesToStrip;
+        this.bigEndian = bigEndian;
+    }
+
+    @Override
+    public int decode(byte[] buffer, int offset, int length, Frame frame) throws CorruptedFrameException {
+        if (length < lengthFieldEndOffset) {
+            return 0;
+        }
+
+        long frameLength = readLength(buffer, offset + lengthFieldOffset) + lengthAdjustment + lengthFieldEndOffset;
+        if (frameLength < lengthFieldEndOffset) {
+            throw new CorruptedFrameException("Adjusted frame length (" + frameLength + ") is less "
+                    + "than lengthFieldEndOffset: " + lengthFieldEndOffset);
+        }
+        if (frameLength > maxFrameLength) {
+            throw new CorruptedFrameException("frame length exceeds " + maxFrameLength + ": " + frameLength);
+        }
+        if (frameLength < initialBytesToStrip) {
+            throw new CorruptedFrameException("Adjusted frame length (" + frameLength + ") is less "
+                    + "than initialBytesToStrip: " + initialBytesToStrip);
+        }
+
+        int frameLengthInt = (int) frameLength;
+        if (length < frameLengthInt) {
+            return 0;
+        }
+        frame.set(offset + initialBytesToStrip, frameLengthInt - initialBytesToStrip);
+        return frameLengthInt;
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    private long readLength(byte[] buffer, int index) {
+        long value = 0;
+        for (int i = 0; i < lengthFieldLength; i++) {
+            int b = buffer[index + (bigEndian ? i : lengthFieldLength - 1 - i)] & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,29 @@
+package com.clj.fastbluetooth.codec;
+
+/**
+ * 以指定字节开头的帧即为应答，例如应答的第一个字节是命令码或序号
+ */
+public class PrefixResponseMatcher implements ResponseMatcher {
+
+    private final byte[] prefix;
+
+    public PrefixResponseMatcher(byte... prefix) {
+        if (prefix == null || prefix.length == 0) {
+            throw new IllegalArgumentException("prefix can not be empty!");
+        }
+        this.prefix = prefix.clone();
+    }
+
+    @Override
+    public boolean matches(byte[] buffer, int offset, int length) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
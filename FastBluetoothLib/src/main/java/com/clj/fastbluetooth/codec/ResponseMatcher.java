@@ -0,0 +1,10 @@
+package com.clj.fastbluetooth.codec;
+
+/**
+ * 判断收到的一帧是否是某个请求的应答
+ * 在读线程中调用，直接读取接收缓冲区，不要保存buffer的引用
+ */
+public interface ResponseMatcher {
+
+    boolean matches(byte[] buffer, int offset, int length);
+}
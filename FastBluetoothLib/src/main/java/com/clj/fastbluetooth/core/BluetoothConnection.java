@@ -0,0 +1,464 @@
+package com.clj.fastbluetooth.core;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import com.clj.fastbluetooth.callback.BluetoothHeartbeatCallback;
+import com.clj.fastbluetooth.callback.BluetoothReadCallback;
+import com.clj.fastbluetooth.callback.BluetoothReceiveCallback;
+import com.clj.fastbluetooth.callback.BluetoothResponseCallback;
+import com.clj.fastbluetooth.callback.BluetoothTransferCallback;
+import com.clj.fastbluetooth.callback.BluetoothWritabilityCallback;
+import com.clj.fastbluetooth.callback.BluetoothWriteCallback;
+import com.clj.fastbluetooth.codec.FrameDecoder;
+import com.clj.fastbluetooth.codec.ResponseMatcher;
+import com.clj.fastbluetooth.data.HeartbeatOptions;
+import com.clj.fastbluetooth.data.ReceiveOptions;
+import com.clj.fastbluetooth.data.TransferOptions;
+import com.clj.fastbluetooth.data.WriteOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 一个已连接设备的句柄
+ * 每个连接有自己的读任务、写队列、请求跟踪和回调，多个连接之间互不影响；
+ * 读任务和写队列分别运行在{@link BluetoothExecutor}的读、写线程池上。
+ */
+public class BluetoothConnection {
+
+    interface OnCloseListener {
+        void onClose(BluetoothConnection connection);
+    }
+
+    private final BluetoothDevice mDevice;
+    private final BluetoothSocket mSocket;
+    private final WriteOptions mWriteOptions;
+    private final int mMaxReadBufferSize;
+    private final Executor mReadExecutor;
+    private final Executor mWriteExecutor;
+    private final RequestTracker mRequestTracker = new RequestTracker();
+    private final ConnectionStats mStats;
+
+    private ReadLoop mReadLoop;
+    private WriteQueue mWriteQueue;
+    private BluetoothWritabilityCallback mWritabilityCallback;
+    // 最近一次read()设置的解码器和回调，重连后转移到新的连接
+    private FrameDecoder mReadDecoder;
+    private BluetoothReadCallback mReadCallback;
+    private HeartbeatSupervisor mHeartbeat;
+    private OnCloseListener mCloseListener;
+    private volatile boolean mClosed;
+
+    private final Runnable mStreamErrorListener = new Runnable() {
+        @Override
+        public void run() {
+            // 链路异常断开，保留心跳以便重连
+            close();
+        }
+    };
+
+    BluetoothConnection(BluetoothDevice device, BluetoothSocket socket, WriteOptions writeOptions,
+                        int maxReadBufferSize, Executor readExecutor, Executor writeExecutor) {
+        mDevice = device;
+        mStats = new ConnectionStats(device.getAddress());
+        mSocket = socket;
+        mWriteOptions = writeOptions;
+        mMaxReadBufferSize = maxReadBufferSize;
+        mReadExecutor = readExecutor;
+        mWriteExecutor = writeExecutor;
+    }
+
+    void setCloseListener(OnCloseListener listener) {
+        this.mCloseListener = listener;
+    }
+
+    public BluetoothDevice getDevice() {
+        return mDevice;
+    }
+
+    public String getMac() {
+        return mDevice.getAddress();
+    }
+
+    public boolean isConnected() {
+        return !mClosed && mSocket.isConnected();
+    }
+
+    public ConnectionStats getStats() {
+        return mStats;
+    }
+
+    public int getPendingRequestCount() {
+        return mRequestTracker.getPendingCount();
+    }
+
+    public synchronized long getPendingWriteBytes() {
+        return mWriteQueue == null ? 0 : mWriteQueue.getPendingBytes();
+    }
+
+    /**
+     * 发送数据
+     */
+    public void write(byte[] command, BluetoothWriteCallback callback) {
+        WriteQueue writeQueue = obtainWriteQueue();
+        if (writeQueue == null) {
+            if (callback != null) {
+                callback.onWriteError(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null));
+            }
+            return;
+        }
+        writeQueue.write(command, callback);
+    }
+
+    /**
+     * 发送文件，按块读取文件交给写队列，不把整个文件读入内存
+     * 回调在写线程中执行，连接断开时回调onTransferError(ERROR_DISCONNECTION)和已写出到的位置
+     *
+     * @return 传输任务，可以用来取消或查询进度
+     */
+    public FileTransfer sendFile(File file, TransferOptions options, BluetoothTransferCallback callback) {
+        if (file == null || callback == null) {
+            throw new IllegalArgumentException("file and callback can not be Null!");
+        }
+        long offset = options != null ? options.getOffset() : 0;
+        WriteQueue writeQueue = obtainWriteQueue();
+        if (writeQueue == null) {
+            callback.onTransferError(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null), offset);
+            return null;
+        }
+        FileTransfer transfer = new FileTransfer(file, writeQueue, BluetoothExecutor.getInstance().getIoExecutor(),
+                options, callback);
+        transfer.start();
+        return transfer;
+    }
+
+    /**
+     * 把之后收到的数据写入文件，收到指定的字节数或结束标记后结束
+     * 接收期间数据不经过read()的解码器和回调，回调在读线程中执行
+     *
+     * @return 接收任务，可以用来取消或查询进度；文件打不开或没有连接时返回null
+     */
+    public ChannelReceiver receiveFile(File file, ReceiveOptions options, BluetoothReceiveCallback callback) {
+        if (file == null || callback == null) {
+            throw new IllegalArgumentException("file and callback can not be Null!");
+        }
+        FileChannel channel;
+        try {
+            channel = new FileOutputStream(file, options != null && options.isAppend()).getChannel();
+        } catch (IOException e) {
+            BluetoothLog.e("receiveFile open catch: %s", e.getMessage());
+            callback.onReceiveError(new BluetoothException(BluetoothException.ERROR_IO, e.getMessage()), 0);
+            return null;
+        }
+        return receive(new ChannelReceiver(channel, true, options, callback));
+    }
+
+    /**
+     * 把之后收到的数据写入channel，结束时不关闭channel
+     *
+     * @see #receiveFile(File, ReceiveOptions, BluetoothReceiveCallback)
+     */
+    public ChannelReceiver receive(WritableByteChannel channel, ReceiveOptions options,
+                                   BluetoothReceiveCallback callback) {
+        if (channel == null || callback == null) {
+            throw new IllegalArgumentException("channel and callback can not be Null!");
+        }
+        return receive(new ChannelReceiver(channel, false, options, callback));
+    }
+
+    private ChannelReceiver receive(ChannelReceiver receiver) {
+        synchronized (this) {
+            if (ensureReadLoop()) {
+                mReadLoop.setChannelReceiver(receiver);
+                return receiver;
+            }
+        }
+        receiver.onReadError(BluetoothException.ERROR_DISCONNECTION);
+        return null;
+    }
+
+    /**
+     * 监听写缓冲区的可写状态，高低水位在{@link WriteOptions}中设置
+     */
+    public synchronized void setWritabilityCallback(BluetoothWritabilityCallback callback) {
+        this.mWritabilityCallback = callback;
+        if (mWriteQueue != null) {
+            mWriteQueue.setWritabilityCallback(callback);
+        }
+    }
+
+    public synchronized boolean isWritable() {
+        return mWriteQueue == null || mWriteQueue.isWritable();
+    }
+
+    /**
+     * 读取数据
+     * 读线程与socket同生命周期，已在运行时只替换回调和解码器，并恢复{@link #stopDataRead()}暂停的读取
+     *
+     * @param decoder 帧解码器，为null时按到达的数据块回调
+     */
+    public synchronized void read(FrameDecoder decoder, BluetoothReadCallback callback) {
+        mReadDecoder = decoder;
+        mReadCallback = callback;
+        if (mReadLoop != null && mReadLoop.isRunning()) {
+            mReadLoop.setFrameDecoder(decoder);
+            mReadLoop.setReadCallback(callback);
+            mReadLoop.resume();
+            return;
+        }
+        int error = startReadLoop(decoder, callback);
+        if (error != 0 && callback != null) {
+            callback.onReadError(new BluetoothException(error, null));
+        }
+    }
+
+    /**
+     * 停止读取数据
+     * 解除回调并暂停读线程，不再从socket读取，对端发来的数据留在socket缓冲区中，再次调用read()后继续回调；
+     * 读线程不退出，不会产生多个线程争抢同一个输入流。
+     * 暂停期间调用{@link #request}或{@link #receive}会恢复读取，此时匹配不上请求的帧没有回调，会被丢弃。
+     */
+    public synchronized void stopDataRead() {
+        mReadCallback = null;
+        if (mReadLoop != null) {
+            mReadLoop.setReadCallback(null);
+            mReadLoop.pause();
+        }
+    }
+
+    /**
+     * 发送请求并等待应答
+     * 可以同时有多个请求未完成，每个应答交给第一个匹配的请求，匹配不上的帧照常回调给read()的callback。
+     * 按帧匹配时需要先通过read()设置{@link FrameDecoder}。
+     *
+     * @param timeout 毫秒，小于等于0时不超时
+     */
+    public ResponseFuture request(byte[] command, ResponseMatcher matcher, long timeout,
+                                  BluetoothResponseCallback callback) {
+        if (command == null || matcher == null) {
+            throw new IllegalArgumentException("command and matcher can not be Null!");
+        }
+        final ResponseFuture future = new ResponseFuture(matcher, callback);
+        if (!ensureReadLoop()) {
+            future.fail(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null));
+            return future;
+        }
+
+        // 先注册再写出，避免应答比注册先到
+        mRequestTracker.register(future, timeout);
+        write(command, new BluetoothWriteCallback() {
+            @Override
+            public void onWriteError(BluetoothException e) {
+                future.fail(e);
+            }
+
+            @Override
+            public void onWriteSuccess(byte[] data) {
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 开始心跳监控，已有的心跳会先停止
+     */
+    public HeartbeatSupervisor startHeartbeat(HeartbeatOptions options, BluetoothHeartbeatCallback callback) {
+        if (options == null || callback == null) {
+            throw new IllegalArgumentException("HeartbeatOptions and BluetoothHeartbeatCallback can not be Null!");
+        }
+        HeartbeatSupervisor supervisor = new HeartbeatSupervisor(this, options, callback);
+        HeartbeatSupervisor previous;
+        synchronized (this) {
+            previous = mHeartbeat;
+            mHeartbeat = supervisor;
+        }
+        if (previous != null) {
+            previous.stop();
+        }
+        supervisor.start();
+        return supervisor;
+    }
+
+    /**
+     * 停止本连接的心跳，重连前的旧连接调用时不影响已经转到新连接上的心跳
+     */
+    public void stopHeartbeat() {
+        HeartbeatSupervisor supervisor;
+        synchronized (this) {
+            supervisor = mHeartbeat;
+            mHeartbeat = null;
+        }
+        if (supervisor != null) {
+            supervisor.stopIfMonitoring(this);
+        }
+    }
+
+    public synchronized HeartbeatSupervisor getHeartbeat() {
+        return mHeartbeat;
+    }
+
+    synchronized void attachHeartbeat(HeartbeatSupervisor supervisor) {
+        this.mHeartbeat = supervisor;
+    }
+
+    /**
+     * 心跳转到新连接上后调用
+     */
+    synchronized void detachHeartbeat(HeartbeatSupervisor supervisor) {
+        if (mHeartbeat == supervisor) {
+            mHeartbeat = null;
+        }
+    }
+
+    /**
+     * 把旧连接的读回调、帧解码器和可写状态回调转移过来
+     */
+    void restoreFrom(BluetoothConnection previous) {
+        FrameDecoder decoder;
+        BluetoothReadCallback readCallback;
+        BluetoothWritabilityCallback writabilityCallback;
+        synchronized (previous) {
+            decoder = previous.mReadDecoder;
+            readCallback = previous.mReadCallback;
+            writabilityCallback = previous.mWritabilityCallback;
+        }
+        if (readCallback != null || decoder != null) {
+            read(decoder, readCallback);
+        }
+        if (writabilityCallback != null) {
+            setWritabilityCallback(writabilityCallback);
+        }
+    }
+
+    /**
+     * 断开连接，同时停止心跳，不会自动重连
+     * 关闭socket会使阻塞中的读线程立即退出，未完成的写入和请求回调ERROR_DISCONNECTION
+     */
+    public void disconnect() {
+        stopHeartbeat();
+        close();
+    }
+
+    /**
+     * 关闭连接，心跳保持运行
+     */
+    void close() {
+        OnCloseListener closeListener;
+        WriteQueue writeQueue;
+        ReadLoop readLoop;
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            writeQueue = mWriteQueue;
+            mWriteQueue = null;
+            readLoop = mReadLoop;
+            mReadLoop = null;
+            closeListener = mCloseListener;
+        }
+        // 关闭写队列和读任务会回调未完成的写入和接收，在锁外进行；
+        // 先于socket关闭，读写线程因此出错时不会再回调ERROR_IO
+        if (writeQueue != null) {
+            writeQueue.close();
+        }
+        if (readLoop != null) {
+            readLoop.close();
+        }
+        try {
+            mSocket.close();
+        } catch (IOException e) {
+            BluetoothLog.e("socket close catch: %s", e.getMessage());
+        }
+        mRequestTracker.failAll(BluetoothException.ERROR_DISCONNECTION);
+        if (closeListener != null) {
+            closeListener.onClose(this);
+        }
+    }
+
+    private synchronized WriteQueue obtainWriteQueue() {
+        if (mWriteQueue != null && mWriteQueue.isOpen()) {
+            return mWriteQueue;
+        }
+        mWriteQueue = null;
+
+        if (!isConnected()) {
+            return null;
+        }
+
+        OutputStream os;
+        try {
+            os = mSocket.getOutputStream();
+        } catch (IOException e) {
+            BluetoothLog.e("getOutputStream catch: %s", e.getMessage());
+            return null;
+        }
+        mWriteQueue = new WriteQueue(os, mWriteOptions, mWriteExecutor);
+        mWriteQueue.setWritabilityCallback(mWritabilityCallback);
+        mWriteQueue.setConnectionStats(mStats);
+        mWriteQueue.setErrorListener(mStreamErrorListener);
+        return mWriteQueue;
+    }
+
+    /**
+     * 确保读线程在运行并且没有暂停
+     */
+    private synchronized boolean ensureReadLoop() {
+        if (mReadLoop != null && mReadLoop.isRunning()) {
+            mReadLoop.resume();
+            return true;
+        }
+        return startReadLoop(null, null) == 0;
+    }
+
+    /**
+     * @return 成功返回0，否则返回{@link BluetoothException}中的错误码
+     */
+    private int startReadLoop(FrameDecoder decoder, BluetoothReadCallback callback) {
+        mReadLoop = null;
+
+        if (!isConnected()) {
+            return BluetoothException.ERROR_DISCONNECTION;
+        }
+
+        InputStream in;
+        try {
+            in = mSocket.getInputStream();
+        } catch (IOException e) {
+            BluetoothLog.e("getInputStream catch: %s", e.getMessage());
+            return BluetoothException.ERROR_IO;
+        }
+        mReadLoop = new ReadLoop(in, ReadLoop.DEFAULT_BUFFER_SIZE, mMaxReadBufferSize, callback);
+        mReadLoop.setFrameDecoder(decoder);
+        mReadLoop.setRequestTracker(mRequestTracker);
+        mReadLoop.setConnectionStats(mStats);
+        mReadLoop.setErrorListener(mStreamErrorListener);
+        try {
+            mReadLoop.start(mReadExecutor);
+        } catch (RejectedExecutionException e) {
+            BluetoothLog.e("start read catch: %s", e.getMessage());
+            mReadLoop = null;
+            return BluetoothException.ERROR_IO;
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BluetoothConnection { " +
+                "mac=" + getMac() +
+                ", connected=" + isConnected() +
+                ", " + mStats +
+                '}';
+    }
+}
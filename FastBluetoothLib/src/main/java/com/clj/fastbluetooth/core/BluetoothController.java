@@ -10,56 +10,75 @@ import android.content.IntentFilter;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
-import android.text.TextUtils;
+import android.os.SystemClock;
 
 import com.clj.fastbluetooth.FastBluetooth;
+import com.clj.fastbluetooth.callback.BluetoothConnectCallback;
+import com.clj.fastbluetooth.callback.BluetoothHeartbeatCallback;
 import com.clj.fastbluetooth.callback.BluetoothReadCallback;
+import com.clj.fastbluetooth.callback.BluetoothReceiveCallback;
+import com.clj.fastbluetooth.callback.BluetoothResponseCallback;
 import com.clj.fastbluetooth.callback.BluetoothScanCallback;
+import com.clj.fastbluetooth.callback.BluetoothTransferCallback;
+import com.clj.fastbluetooth.callback.BluetoothWritabilityCallback;
 import com.clj.fastbluetooth.callback.BluetoothWriteCallback;
+import com.clj.fastbluetooth.codec.FrameDecoder;
+import com.clj.fastbluetooth.codec.ResponseMatcher;
+import com.clj.fastbluetooth.data.ConnectOptions;
+import com.clj.fastbluetooth.data.HeartbeatOptions;
+import com.clj.fastbluetooth.data.KnownDevice;
+import com.clj.fastbluetooth.data.ReceiveOptions;
+import com.clj.fastbluetooth.data.ScanFilter;
+import com.clj.fastbluetooth.data.ScanOptions;
+import com.clj.fastbluetooth.data.ScanResult;
+import com.clj.fastbluetooth.data.TraceEvent;
+import com.clj.fastbluetooth.data.TransferOptions;
 import com.clj.fastbluetooth.exception.BluetoothException;
-import com.clj.fastbluetooth.util.CycleThread;
 import com.clj.fastbluetooth.utils.BluetoothLog;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class BluetoothController {
 
-    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
-
     private BluetoothScanCallback mScanCallback;
-    private BluetoothReadCallback mReadCallback;
-    private BluetoothWriteCallback mWriteCallback;
-    private String[] names;
-    private String mac;
+    private ScanFilter mScanFilter;
+    private ScanFilterMatcher mFilterMatcher;
     private long timeout;
     private boolean autoConnect;
     private boolean flag_containScanParams;
 
-    // 搜索到的蓝牙设备全部存放在集合中
-    // 队列是一种特殊的线性表，它只允许在表的前端进行删除操作，而在表的后端进行插入操作。
-    // LinkedList类实现了Queue接口，因此我们可以把LinkedList当成Queue来用
-    // 队列是先进先出，栈是后进先出
-    private final Queue<BluetoothDevice> searchedDeviceQueue = new ConcurrentLinkedQueue<>();
+    // 广播接收器发现的设备交给筛选任务的有界队列，每次扫描新建，上一次扫描遗留的任务不会取走新的设备
+    private volatile BlockingQueue<BluetoothDevice> searchedDeviceQueue =
+            new ArrayBlockingQueue<>(ScanOptions.DEFAULT_QUEUE_CAPACITY);
+    private int mScanOverflowPolicy = ScanOptions.OVERFLOW_DROP_NEWEST;
+    private int mBondedLookup = ScanOptions.BONDED_LOOKUP_NONE;
+    private final ScanStats mScanStats = new ScanStats();
 
-    // 临时存储在集合中的蓝牙设备的最大值
-    private static final int MAX_SIZE = 1000;
+    // 筛选任务等待新设备的最长时间，超时后检查扫描是否已结束
+    private static final long COLLECTION_POLL_MILLIS = 500;
 
-    // 搜索到并筛选出来的蓝牙设备
-    private final List<BluetoothDevice> collectionDeviceList = new ArrayList<>();
+    // 搜索到并去重后的蓝牙设备
+    private final ScanResultStore mScanResults = new ScanResultStore();
 
     // 线程标记
-    private boolean flag_isSearching = false;
+    private volatile boolean flag_isSearching = false;
+    // 每次扫描加1，上一次扫描遗留的任务据此退出
+    private volatile int mScanGeneration = 0;
+    // 本次扫描开始的SystemClock.elapsedRealtime()，用于扫描耗时指标
+    private volatile long mScanStartTime;
 
     private static final int BT_START_FAIL = 100;                  // 开启扫描失败
     private static final int BT_START_SUC = 101;                  // 开启扫描失败
@@ -69,15 +88,24 @@ public class BluetoothController {
     private static final int BT_CONNECT_ERROR = 106;       // socket连接失败
     private static final int BT_OPEN_FAIL = 107;           // 蓝牙打开失败
 
-    private ScanThread mScanThread = null;
-    private CollectionThread mCollectionThread = null;
-    private ConnectThread mConnectThread = null;
-    private WriteThread mWriteThread = null;
-    private ReadThread mReadThread = null;
+    // 所有已建立的连接，key为MAC地址
+    private final Map<String, BluetoothConnection> mConnections = new ConcurrentHashMap<>();
+    // 正在连接中的设备，避免对同一个设备重复连接
+    private final Set<String> mConnectingDevices = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // 保护连接数检查、mConnectingDevices的登记以及连接成功时从连接中转为已连接
+    private final Object mConnectLock = new Object();
+    // 最近一次建立的连接，不指定设备的读写操作都作用于它
+    private volatile BluetoothConnection mCurrentConnection = null;
+
+    private volatile BluetoothDevice mTargetDevice = null;
+    // 扫描到目标设备后自动发起连接的设备，连接任务开始时取走，用于扫描到连接成功的耗时指标
+    private volatile BluetoothDevice mScanConnectDevice = null;
 
-    private BluetoothSocket mSocket = null;
+    // 各设备的连接统计，key为MAC地址
+    private final ConcurrentHashMap<String, DeviceConnectStats> mConnectStats = new ConcurrentHashMap<>();
 
-    private BluetoothDevice mTargetDevice = null;
+    // 连接成功过的设备，第一次使用时从SharedPreferences加载
+    private volatile KnownDeviceStore mKnownDeviceStore = null;
 
     public static BluetoothController getInstance() {
         return BluetoothScannerHolder.sBluetoothScanner;
@@ -87,7 +115,15 @@ public class BluetoothController {
         private static final BluetoothController sBluetoothScanner = new BluetoothController();
     }
 
-    public synchronized void scan(String[] names, String mac, long timeout,
+    public void scan(String[] names, String mac, long timeout,
+                     boolean autoConnect, final BluetoothScanCallback callback) {
+        scan(new ScanFilter().addNames(names).addMacs(mac), timeout, autoConnect, callback);
+    }
+
+    /**
+     * @param filter 为null或没有条件时只扫描，不筛选目标设备
+     */
+    public synchronized void scan(ScanFilter filter, long timeout,
                                   boolean autoConnect, final BluetoothScanCallback callback) {
 
         if (flag_isSearching) {
@@ -98,7 +134,7 @@ public class BluetoothController {
             return;
         }
 
-        flag_containScanParams = (names != null && names.length >= 1) || (mac != null);
+        flag_containScanParams = filter != null && !filter.isEmpty();
 
         // 如果设置了自动连接，那必须要有搜索条件
         if (autoConnect && !flag_containScanParams) {
@@ -109,34 +145,38 @@ public class BluetoothController {
             return;
         }
 
-        this.names = names;
-        this.mac = mac;
+        this.mScanFilter = filter;
+        this.mFilterMatcher = flag_containScanParams ? new ScanFilterMatcher(filter) : null;
         this.timeout = timeout;
         this.autoConnect = autoConnect;
         this.mScanCallback = callback;
 
         // 每次开启新的搜索线程，重置参数
         resetParams();
+        ScanOptions options = FastBluetooth.getInstance().getScanOptions();
+        searchedDeviceQueue = new ArrayBlockingQueue<>(options.getQueueCapacity());
+        mScanOverflowPolicy = options.getOverflowPolicy();
+        mBondedLookup = options.getBondedLookup();
 
+        mScanStartTime = SystemClock.elapsedRealtime();
         flag_isSearching = true;
+        int generation = ++mScanGeneration;
+        BluetoothTracer.getInstance().record(TraceEvent.SCAN_STARTED);
 
         // 注册蓝牙扫描过程广播监听器
         registerScanReceiver();
 
-        // 开启扫描线程
-        if (mScanThread != null && mScanThread.isAlive()) {
-            mScanThread.interrupt();
-        }
-        mScanThread = null;
-        mScanThread = new ScanThread();
-        mScanThread.start();
-
-        if (mCollectionThread != null && mCollectionThread.isAlive()) {
-            mCollectionThread.interrupt();
+        // 开启扫描和筛选任务
+        try {
+            BluetoothExecutor.getInstance().execute(new ScanTask(generation));
+            BluetoothExecutor.getInstance().execute(new CollectionTask(generation, searchedDeviceQueue));
+        } catch (RejectedExecutionException e) {
+            BluetoothLog.e("start scan catch: %s", e.getMessage());
+            cancelScan();
+            if (callback != null) {
+                callback.onScanStarted(false);
+            }
         }
-        mCollectionThread = null;
-        mCollectionThread = new CollectionThread();
-        mCollectionThread.start();
     }
 
     /**
@@ -153,60 +193,428 @@ public class BluetoothController {
         if (FastBluetooth.getInstance().getBluetoothAdapter() != null
                 && FastBluetooth.getInstance().getBluetoothAdapter().isDiscovering()) {
             FastBluetooth.getInstance().getBluetoothAdapter().cancelDiscovery();
+            BluetoothTracer.getInstance().record(TraceEvent.DISCOVERY_CANCELLED);
         }
     }
 
     private void resetParams() {
-        searchedDeviceQueue.clear();
-        collectionDeviceList.clear();
+        mScanResults.clear();
         mTargetDevice = null;
-        mSocket = null;
+        mScanStats.reset();
+    }
+
+    /**
+     * 当前或最近一次扫描发现的设备，按发现顺序排列的不可变快照
+     */
+    public List<ScanResult> getScanResults() {
+        return mScanResults.snapshot();
+    }
+
+    public ScanStats getScanStats() {
+        return mScanStats;
+    }
+
+    private void connectScanTarget(BluetoothDevice device, BluetoothConnectCallback callback) {
+        mScanConnectDevice = device;
+        connect(device, callback);
     }
 
     /**
-     * 连接
+     * 连接，结果通过扫描时传入的{@link BluetoothScanCallback}回调
      */
     public void connect(BluetoothDevice device) {
-        if (mConnectThread != null && mConnectThread.isAlive()) {
-            mConnectThread.interrupt();
+        connect(device, null);
+    }
+
+    /**
+     * 连接，多个设备可以同时保持连接，各自拥有独立的读写通道
+     *
+     * @param callback 为null时结果通过扫描时传入的{@link BluetoothScanCallback}回调
+     */
+    public void connect(BluetoothDevice device, BluetoothConnectCallback callback) {
+        if (device == null) {
+            throw new IllegalArgumentException("BluetoothDevice can not be Null!");
+        }
+        String mac = device.getAddress();
+
+        BluetoothConnection existing = mConnections.get(mac);
+        if (existing != null && existing.isConnected()) {
+            mCurrentConnection = existing;
+            notifyConnectSuccess(existing, callback);
+            return;
+        }
+
+        int error = reserveConnect(mac);
+        if (error != 0) {
+            notifyConnectFail(device, new BluetoothException(error, null), callback);
+            return;
+        }
+        try {
+            BluetoothExecutor.getInstance().execute(new ConnectTask(device, callback));
+        } catch (RejectedExecutionException e) {
+            BluetoothLog.e("start connect catch: %s", e.getMessage());
+            synchronized (mConnectLock) {
+                mConnectingDevices.remove(mac);
+            }
+            notifyConnectFail(device, new BluetoothException(BluetoothException.ERROR_CONNECT, e.getMessage()), callback);
         }
-        mConnectThread = null;
-        mConnectThread = new ConnectThread(device);
-        mConnectThread.start();
+    }
+
+    /**
+     * 检查连接数上限并登记为连接中，正在连接的设备也计入上限
+     * 该设备已有的旧连接在连接成功后会被替换，不额外占用名额
+     *
+     * @return 可以连接时返回0，否则返回{@link BluetoothException}中的错误码
+     */
+    private int reserveConnect(String mac) {
+        synchronized (mConnectLock) {
+            if (mConnectingDevices.contains(mac)) {
+                BluetoothLog.w("%s is connecting, complete the previous connect action first", mac);
+                return BluetoothException.ERROR_BUSY;
+            }
+            int count = mConnections.size() + mConnectingDevices.size()
+                    - (mConnections.containsKey(mac) ? 1 : 0);
+            if (count >= FastBluetooth.getInstance().getMaxConnections()) {
+                BluetoothLog.w("connection count reaches the limit: %d", count);
+                return BluetoothException.ERROR_CONNECTION_LIMIT;
+            }
+            mConnectingDevices.add(mac);
+            return 0;
+        }
+    }
+
+    /**
+     * 直接连接之前连接成功过的设备，不经过扫描
+     * 直接连接失败时再按MAC扫描一次，找到设备后重新连接，两次连接都会回调onStartConnect
+     *
+     * @param scanTimeout 回退扫描的超时时间，毫秒
+     */
+    public void reconnect(final String mac, final long scanTimeout, final BluetoothConnectCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("BluetoothConnectCallback can not be Null!");
+        }
+        BluetoothAdapter adapter = FastBluetooth.getInstance().getBluetoothAdapter();
+        if (adapter == null || mac == null || !BluetoothAdapter.checkBluetoothAddress(mac.toUpperCase())) {
+            notifyConnectFail(null, new BluetoothException(BluetoothException.ERROR_CONNECT, "invalid mac: " + mac), callback);
+            return;
+        }
+        connect(adapter.getRemoteDevice(mac.toUpperCase()), new BluetoothConnectCallback() {
+            @Override
+            public void onStartConnect(BluetoothDevice device) {
+                callback.onStartConnect(device);
+            }
+
+            @Override
+            public void onConnectFail(BluetoothDevice device, BluetoothException exception) {
+                if (exception.getCode() == BluetoothException.ERROR_CONNECTION_LIMIT
+                        || exception.getCode() == BluetoothException.ERROR_BUSY) {
+                    callback.onConnectFail(device, exception);
+                    return;
+                }
+                BluetoothLog.w("direct connect to %s failed, fall back to discovery", mac);
+                scanAndReconnect(device, exception, scanTimeout, callback);
+            }
+
+            @Override
+            public void onConnectSuccess(BluetoothConnection connection) {
+                callback.onConnectSuccess(connection);
+            }
+
+            @Override
+            public void onDisConnected(BluetoothDevice device) {
+                callback.onDisConnected(device);
+            }
+        });
+    }
+
+    /**
+     * 在主线程中调用
+     */
+    private void scanAndReconnect(final BluetoothDevice device, final BluetoothException directError,
+                                  long scanTimeout, final BluetoothConnectCallback callback) {
+        scan(new ScanFilter().addMacs(device.getAddress()), scanTimeout, false, new BluetoothScanCallback() {
+            @Override
+            public void onBlueNotEnable() {
+                callback.onConnectFail(device, directError);
+            }
+
+            @Override
+            public void onScanStarted(boolean success) {
+                if (!success) {
+                    callback.onConnectFail(device, directError);
+                }
+            }
+
+            @Override
+            public void onScanning(BluetoothDevice bluetoothDevice) {
+            }
+
+            @Override
+            public void onScanFinished(boolean findMatchDevice) {
+                if (findMatchDevice && mTargetDevice != null) {
+                    connectScanTarget(mTargetDevice, callback);
+                } else {
+                    callback.onConnectFail(device, directError);
+                }
+            }
+
+            @Override
+            public void onStartConnect() {
+            }
+
+            @Override
+            public void onConnectError() {
+            }
+
+            @Override
+            public void onConnectSuc() {
+            }
+        });
+    }
+
+    public KnownDeviceStore getKnownDeviceStore() {
+        KnownDeviceStore store = mKnownDeviceStore;
+        if (store == null) {
+            synchronized (this) {
+                if (mKnownDeviceStore == null) {
+                    mKnownDeviceStore = new KnownDeviceStore(FastBluetooth.getInstance().getContext());
+                }
+                store = mKnownDeviceStore;
+            }
+        }
+        return store;
+    }
+
+    public BluetoothConnection getConnection(String mac) {
+        return mac == null ? null : mConnections.get(mac);
+    }
+
+    public List<BluetoothConnection> getAllConnections() {
+        return new ArrayList<>(mConnections.values());
+    }
+
+    public BluetoothConnection getCurrentConnection() {
+        return mCurrentConnection;
     }
 
     /**
      * 发送数据
      */
     public void write(byte[] command, BluetoothWriteCallback callback) {
-        this.mWriteCallback = callback;
+        BluetoothConnection connection = mCurrentConnection;
+        if (connection == null) {
+            if (callback != null) {
+                callback.onWriteError(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null));
+            }
+            return;
+        }
+        connection.write(command, callback);
+    }
 
-        if (mWriteThread != null && mWriteThread.isAlive()) {
-            mWriteThread.interrupt();
+    /**
+     * 向当前连接发送文件
+     */
+    public FileTransfer sendFile(File file, TransferOptions options, BluetoothTransferCallback callback) {
+        BluetoothConnection connection = mCurrentConnection;
+        if (connection == null) {
+            if (callback != null) {
+                callback.onTransferError(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null),
+                        options != null ? options.getOffset() : 0);
+            }
+            return null;
         }
-        mWriteThread = null;
-        mWriteThread = new WriteThread(command);
-        mWriteThread.start();
+        return connection.sendFile(file, options, callback);
     }
 
     /**
-     * 发送数据
+     * 把当前连接之后收到的数据写入文件
+     */
+    public ChannelReceiver receiveFile(File file, ReceiveOptions options, BluetoothReceiveCallback callback) {
+        BluetoothConnection connection = mCurrentConnection;
+        if (connection == null) {
+            if (callback != null) {
+                callback.onReceiveError(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null), 0);
+            }
+            return null;
+        }
+        return connection.receiveFile(file, options, callback);
+    }
+
+    public ChannelReceiver receive(WritableByteChannel channel, ReceiveOptions options,
+                                   BluetoothReceiveCallback callback) {
+        BluetoothConnection connection = mCurrentConnection;
+        if (connection == null) {
+            if (callback != null) {
+                callback.onReceiveError(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null), 0);
+            }
+            return null;
+        }
+        return connection.receive(channel, options, callback);
+    }
+
+    public void setWritabilityCallback(BluetoothWritabilityCallback callback) {
+        BluetoothConnection connection = mCurrentConnection;
+        if (connection != null) {
+            connection.setWritabilityCallback(callback);
+        }
+    }
+
+    public boolean isWritable() {
+        BluetoothConnection connection = mCurrentConnection;
+        return connection == null || connection.isWritable();
+    }
+
+    /**
+     * 读取数据
+     *
+     * @param decoder 帧解码器，为null时按到达的数据块回调
      */
-    public void read(BluetoothReadCallback callback) {
-        this.mReadCallback = callback;
+    public void read(FrameDecoder decoder, BluetoothReadCallback callback) {
+        BluetoothConnection connection = mCurrentConnection;
+        if (connection == null) {
+            if (callback != null) {
+                callback.onReadError(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null));
+            }
+            return;
+        }
+        connection.read(decoder, callback);
+    }
 
-        if (mReadThread != null && mReadThread.isAlive()) {
-            mReadThread.interrupt();
+    /**
+     * 发送请求并等待应答
+     */
+    public ResponseFuture request(byte[] command, ResponseMatcher matcher, long timeout,
+                                  BluetoothResponseCallback callback) {
+        BluetoothConnection connection = mCurrentConnection;
+        if (connection == null) {
+            ResponseFuture future = new ResponseFuture(matcher, callback);
+            future.fail(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null));
+            return future;
         }
-        mReadThread = null;
-        mReadThread = new ReadThread();
-        mReadThread.start();
+        return connection.request(command, matcher, timeout, callback);
     }
 
     public void stopDataRead() {
-        if (mReadThread != null && mReadThread.isAlive()) {
-            mReadThread.cancel();
+        BluetoothConnection connection = mCurrentConnection;
+        if (connection != null) {
+            connection.stopDataRead();
+        }
+    }
+
+    /**
+     * 断开最近一次建立的连接
+     */
+    public void disconnect() {
+        BluetoothConnection connection = mCurrentConnection;
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * 为最近一次建立的连接开启心跳监控
+     *
+     * @return 没有连接时返回null
+     */
+    public HeartbeatSupervisor startHeartbeat(HeartbeatOptions options, BluetoothHeartbeatCallback callback) {
+        BluetoothConnection connection = mCurrentConnection;
+        return connection == null ? null : connection.startHeartbeat(options, callback);
+    }
+
+    public void disconnect(String mac) {
+        BluetoothConnection connection = getConnection(mac);
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    public void disconnectAll() {
+        for (BluetoothConnection connection : getAllConnections()) {
+            connection.disconnect();
+        }
+    }
+
+    private BluetoothConnection registerConnection(BluetoothDevice device, BluetoothSocket socket,
+                                                   final BluetoothConnectCallback callback) {
+        BluetoothConnection connection = new BluetoothConnection(device, socket,
+                FastBluetooth.getInstance().getWriteOptions(),
+                FastBluetooth.getInstance().getMaxReadBufferSize(),
+                BluetoothExecutor.getInstance().getReadExecutor(),
+                BluetoothExecutor.getInstance().getWriteExecutor());
+        connection.setCloseListener(new BluetoothConnection.OnCloseListener() {
+            @Override
+            public void onClose(BluetoothConnection connection) {
+                // 重连后同一个MAC可能已经对应新的连接
+                mConnections.remove(connection.getMac(), connection);
+                if (mCurrentConnection == connection) {
+                    mCurrentConnection = null;
+                }
+                notifyDisConnected(connection.getDevice(), callback);
+            }
+        });
+        BluetoothConnection previous;
+        synchronized (mConnectLock) {
+            // 同时从连接中移除，避免被重复计入连接数
+            previous = mConnections.put(device.getAddress(), connection);
+            mConnectingDevices.remove(device.getAddress());
+        }
+        if (previous != null) {
+            previous.disconnect();
         }
+        mCurrentConnection = connection;
+        return connection;
+    }
+
+    private void notifyStartConnect(final BluetoothDevice device, final BluetoothConnectCallback callback) {
+        if (callback == null) {
+            sendMsg(BT_START_CONNECT, null);
+            return;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onStartConnect(device);
+            }
+        });
+    }
+
+    private void notifyConnectFail(final BluetoothDevice device, final BluetoothException exception,
+                                   final BluetoothConnectCallback callback) {
+        if (callback == null) {
+            sendMsg(BT_CONNECT_ERROR, null);
+            return;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onConnectFail(device, exception);
+            }
+        });
+    }
+
+    private void notifyConnectSuccess(final BluetoothConnection connection, final BluetoothConnectCallback callback) {
+        if (callback == null) {
+            sendMsg(BT_CONNECT_OK, null);
+            return;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onConnectSuccess(connection);
+            }
+        });
+    }
+
+    private void notifyDisConnected(final BluetoothDevice device, final BluetoothConnectCallback callback) {
+        if (callback == null) {
+            return;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onDisConnected(device);
+            }
+        });
     }
 
     private void registerScanReceiver() {
@@ -221,7 +629,7 @@ public class BluetoothController {
         try {
             FastBluetooth.getInstance().getContext().getApplicationContext().unregisterReceiver(blueScanReceiver);
         } catch (IllegalArgumentException e) {
-            BluetoothLog.e("unregisterScanReceiver catch: " + e.getMessage());
+            BluetoothLog.e("unregisterScanReceiver catch: %s", e.getMessage());
         }
     }
 
@@ -239,9 +647,7 @@ public class BluetoothController {
             if (BluetoothDevice.ACTION_FOUND.equals(action)) {
                 BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
                 if (device != null) {
-                    if (searchedDeviceQueue.size() < MAX_SIZE) {
-                        searchedDeviceQueue.offer(device);
-                    }
+                    offerSearchedDevice(device, false);
                 }
             }
 
@@ -253,262 +659,282 @@ public class BluetoothController {
         }
     };
 
+    private boolean isCurrentScan(int generation) {
+        return flag_isSearching && generation == mScanGeneration;
+    }
+
+    /**
+     * 在主线程和扫描任务中调用，不能阻塞，队列已满时按{@link ScanOptions}的策略丢弃
+     *
+     * @param bonded 已配对设备由扫描任务直接加入，不是收到的广播
+     */
+    private void offerSearchedDevice(BluetoothDevice device, boolean bonded) {
+        BlockingQueue<BluetoothDevice> queue = searchedDeviceQueue;
+        if (bonded) {
+            mScanStats.onBondedOffered();
+        } else {
+            mScanStats.onEventReceived();
+        }
+        if (queue.offer(device)) {
+            return;
+        }
+        if (mScanOverflowPolicy == ScanOptions.OVERFLOW_DROP_OLDEST) {
+            queue.poll();
+            mScanStats.onEventDropped();
+            if (queue.offer(device)) {
+                return;
+            }
+        }
+        mScanStats.onEventDropped();
+    }
+
     /**
-     * 设备搜索线程
+     * 设备搜索任务
      */
-    private class ScanThread extends Thread {
+    private class ScanTask implements Runnable {
+        private final int mGeneration;
+
+        ScanTask(int generation) {
+            mGeneration = generation;
+        }
+
         @Override
         public void run() {
-            // 启动搜索
-            sendMsgDelayed(BT_START_FAIL, null, 2000);
+            Set<BluetoothDevice> bondedDevices = null;
+            if (mBondedLookup != ScanOptions.BONDED_LOOKUP_NONE) {
+                bondedDevices = FastBluetooth.getInstance().getBluetoothAdapter().getBondedDevices();
+            }
+
+            // 已配对设备中有目标设备，不需要扫描，交给筛选任务回调并结束
+            if (mBondedLookup == ScanOptions.BONDED_LOOKUP_FIRST && containsTarget(bondedDevices)) {
+                sendMsg(BT_START_SUC, null);
+                offerBondedDevices(bondedDevices);
+                return;
+            }
+
+            // 已配对设备不必等扫描启动，启动扫描重试期间筛选任务就可以找到目标
+            offerBondedDevices(bondedDevices);
+
+            // 启动搜索，超时消息带上扫描的代数，只移除本次扫描的消息
+            Integer token = mGeneration;
+            sendMsgDelayed(BT_START_FAIL, token, 2000);
             while (!FastBluetooth.getInstance().getBluetoothAdapter().startDiscovery()) {
+                // 启动失败超时后或者已配对设备中找到目标后扫描已被取消，不再重试
+                if (!isCurrentScan(mGeneration)) {
+                    removeMsg(BT_START_FAIL, token);
+                    return;
+                }
                 try {
                     Thread.sleep(100);  // 由于可能蓝牙没有打开，启动会失败
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    return;
                 }
             }
-            removeMsg(BT_START_FAIL);
+            removeMsg(BT_START_FAIL, token);
 
+            // 启动期间扫描已经结束，cancelScan()没有停掉刚启动的扫描；已经开始新的扫描时不能停
+            if (!isCurrentScan(mGeneration)) {
+                if (mGeneration == mScanGeneration) {
+                    FastBluetooth.getInstance().getBluetoothAdapter().cancelDiscovery();
+                }
+                return;
+            }
             sendMsg(BT_START_SUC, null);
 
             if (timeout > 1000) {
                 sendMsgDelayed(BT_SCAN_FINISHED, null, timeout);
             }
         }
-    }
 
-    /**
-     * 设备筛选线程
-     */
-    private class CollectionThread extends Thread {
-        @Override
-        public void run() {
-            while (flag_isSearching) {
-                if (searchedDeviceQueue.size() > 0) {
-                    BluetoothDevice device = searchedDeviceQueue.poll();
-                    if (device != null && !collectionDeviceList.contains(device)) {
-                        collectionDeviceList.add(device);
-                        if (mScanCallback != null) {
-                            mScanCallback.onScanning(device);
-                        }
-
-                        if (flag_containScanParams) {
-                            String deviceName = device.getName();
-                            String deviceMac = device.getAddress();
-
-                            if (TextUtils.equals(deviceMac, mac)) {
-                                mTargetDevice = device;
-                                sendMsg(BT_SCAN_FINISHED, null);
-                            } else if (names != null && names.length > 0) {
-                                if (!TextUtils.isEmpty(deviceName)) {
-                                    for (String n : names) {
-                                        if (TextUtils.equals(n, deviceName)) {
-                                            mTargetDevice = device;
-                                            sendMsg(BT_SCAN_FINISHED, null);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
+        /**
+         * 筛选任务的匹配器不能在其他线程使用，这里单独编译一个
+         */
+        private boolean containsTarget(Set<BluetoothDevice> devices) {
+            if (!flag_containScanParams || devices == null || devices.isEmpty()) {
+                return false;
+            }
+            ScanFilterMatcher matcher = new ScanFilterMatcher(mScanFilter);
+            for (BluetoothDevice device : devices) {
+                if (matcher.matches(device.getName(), device.getAddress())) {
+                    return true;
                 }
             }
+            return false;
+        }
+
+        private void offerBondedDevices(Set<BluetoothDevice> devices) {
+            if (devices == null) {
+                return;
+            }
+            for (BluetoothDevice device : devices) {
+                offerSearchedDevice(device, true);
+            }
         }
     }
 
     /**
-     * 连接蓝牙线程
+     * 设备筛选任务
      */
-    private class ConnectThread extends Thread {
-        private final BluetoothDevice mDevice;
+    private class CollectionTask implements Runnable {
+        private final int mGeneration;
+        private final BlockingQueue<BluetoothDevice> mQueue;
 
-        ConnectThread(BluetoothDevice device) {
-            mDevice = device;
+        CollectionTask(int generation, BlockingQueue<BluetoothDevice> queue) {
+            mGeneration = generation;
+            mQueue = queue;
         }
 
         @Override
         public void run() {
-            sendMsg(BT_START_CONNECT, null);
-
-            // 获取socket的过程
-            try {
-                mSocket = mDevice.createRfcommSocketToServiceRecord(MY_UUID);
-            } catch (Exception e) {
-                sendMsg(BT_CONNECT_ERROR, null);
-                return;
-            }
-
-            // 如果还在扫描，停止扫描
-            if (FastBluetooth.getInstance().getBluetoothAdapter() != null
-                    && FastBluetooth.getInstance().getBluetoothAdapter().isDiscovering()) {
-                FastBluetooth.getInstance().getBluetoothAdapter().cancelDiscovery();
-            }
-
-            // 尝试连接2次
-            for (int i = 0; mSocket != null && !mSocket.isConnected() && i < 2; i++) {
+            while (isCurrentScan(mGeneration)) {
+                // 没有新设备时阻塞等待，不占用CPU
+                BluetoothDevice device;
                 try {
-                    mSocket.connect();
-                    sleep(200);
-                } catch (IOException e) {
-                    BluetoothLog.e("socket connect异常(第" + i + "次): " + e.getMessage());
-                    e.printStackTrace();
+                    device = mQueue.poll(COLLECTION_POLL_MILLIS, TimeUnit.MILLISECONDS);
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    return;
                 }
-            }
+                if (device != null && mScanResults.put(device, System.currentTimeMillis())) {
+                    mScanStats.onDeviceCollected();
+                    BluetoothMetrics metrics = BluetoothMetrics.getInstance();
+                    metrics.onDeviceCollected();
+                    if (mScanResults.size() == 1) {
+                        metrics.recordScanFirstDevice(SystemClock.elapsedRealtime() - mScanStartTime);
+                        BluetoothTracer.getInstance().record(TraceEvent.FIRST_DEVICE, device.getAddress(), device.getName());
+                    }
+                    if (mScanCallback != null) {
+                        mScanCallback.onScanning(device);
+                    }
 
-            // 如果连接失败，清除配对信息
-            if (mSocket == null || !mSocket.isConnected()) {
-                // 清除手机蓝牙设置里所有设备的配对
-                if (FastBluetooth.getInstance().getBluetoothAdapter() != null) {
-                    Set<BluetoothDevice> pairedDevices = FastBluetooth.getInstance().getBluetoothAdapter().getBondedDevices();
-                    if (pairedDevices != null && pairedDevices.size() > 0) {
-                        for (BluetoothDevice device : pairedDevices) {
-                            if (!TextUtils.isEmpty(device.getAddress()) && TextUtils.equals(device.getAddress(), mTargetDevice.getAddress())) {
-                                try {
-                                    Method m = device.getClass().getMethod("removeBond", (Class[]) null);
-                                    m.invoke(device, (Object[]) null);
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                }
-                            }
-                        }
+                    if (flag_containScanParams && mTargetDevice == null
+                            && mFilterMatcher.matches(device.getName(), device.getAddress())) {
+                        mTargetDevice = device;
+                        metrics.recordScanTargetFound(SystemClock.elapsedRealtime() - mScanStartTime);
+                        BluetoothTracer.getInstance().record(TraceEvent.TARGET_MATCHED, device.getAddress(), device.getName());
+                        sendMsg(BT_SCAN_FINISHED, null);
                     }
                 }
-                sendMsg(BT_CONNECT_ERROR, null);
-                return;
             }
-
-            sendMsg(BT_CONNECT_OK, null);
         }
     }
 
     /**
-     * 写
+     * 连接蓝牙任务
      */
-    private class WriteThread extends Thread {
-
-        private final byte[] mCommand;
+    private class ConnectTask implements Runnable {
+        private final BluetoothDevice mDevice;
+        private final BluetoothConnectCallback mCallback;
 
-        WriteThread(byte[] command) {
-            mCommand = command;
+        ConnectTask(BluetoothDevice device, BluetoothConnectCallback callback) {
+            mDevice = device;
+            mCallback = callback;
         }
 
         @Override
         public void run() {
-            super.run();
-            if (mSocket == null || !mSocket.isConnected()) {
-                if (mWriteCallback != null) {
-                    mWriteCallback.onWriteError(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null));
-                }
-                return;
-            }
             try {
-                OutputStream os = mSocket.getOutputStream();
-                DataOutputStream dos = new DataOutputStream(os);
-                dos.write(mCommand);
-                dos.flush();
-                os.flush();
-                if (mWriteCallback != null) {
-                    mWriteCallback.onWriteSuccess(mCommand);
-                }
-            } catch (IOException e) {
-                if (mWriteCallback != null) {
-                    mWriteCallback.onWriteError(new BluetoothException(BluetoothException.ERROR_IO, null));
+                connectDevice();
+            } finally {
+                synchronized (mConnectLock) {
+                    mConnectingDevices.remove(mDevice.getAddress());
                 }
             }
         }
-    }
 
-    /**
-     * 读
-     */
-    private class ReadThread extends CycleThread {
-
-        DataInputStream dis = null;
-        byte[] buffer = new byte[0];
+        private void connectDevice() {
+            notifyStartConnect(mDevice, mCallback);
+            long startTime = SystemClock.elapsedRealtime();
+            boolean fromScan = mDevice.equals(mScanConnectDevice);
+            if (fromScan) {
+                mScanConnectDevice = null;
+            }
 
-        @Override
-        public void begin() {
-            super.begin();
-            if (mSocket == null || !mSocket.isConnected()) {
-                if (mReadCallback != null) {
-                    mReadCallback.onReadError(new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null));
-                }
-                return;
+            // 如果还在扫描，停止扫描
+            if (FastBluetooth.getInstance().getBluetoothAdapter() != null
+                    && FastBluetooth.getInstance().getBluetoothAdapter().isDiscovering()) {
+                FastBluetooth.getInstance().getBluetoothAdapter().cancelDiscovery();
+                BluetoothTracer.getInstance().record(TraceEvent.DISCOVERY_CANCELLED, mDevice.getAddress());
             }
+
+            // 按上次成功的方式优先尝试
+            ConnectOptions options = FastBluetooth.getInstance().getConnectOptions();
+            KnownDevice known = getKnownDeviceStore().get(mDevice.getAddress());
+            DeviceConnectStats stats = obtainConnectStats(mDevice.getAddress());
+            Connector.Result result;
             try {
-                InputStream in = mSocket.getInputStream();
-                dis = new DataInputStream(in);
+                result = new Connector(options).connect(mDevice, known != null ? known.getSocketMethod() : null);
             } catch (IOException e) {
-                if (mReadCallback != null) {
-                    mReadCallback.onReadError(new BluetoothException(BluetoothException.ERROR_IO, null));
+                int code = ConnectFailureClassifier.classify(e, mDevice.getBondState());
+                stats.onFailure(code);
+                BluetoothMetrics.getInstance().onConnectFailure();
+                BluetoothTracer.getInstance().record(TraceEvent.CONNECT_FAILED, mDevice.getAddress(), e.getMessage());
+                BluetoothLog.e("connect %s failed(%d): %s", mDevice.getAddress(), code, e.getMessage());
+                if (shouldRemoveBond(options, code, stats.getConsecutiveBondFailures())) {
+                    removeBond(mDevice, stats);
                 }
+                notifyConnectFail(mDevice, new BluetoothException(code, e.getMessage()), mCallback);
+                return;
             }
+            stats.onSuccess();
+            long now = SystemClock.elapsedRealtime();
+            BluetoothMetrics.getInstance().onConnectSuccess(now - startTime);
+            BluetoothTracer.getInstance().record(TraceEvent.CONNECTED, mDevice.getAddress(), result.strategy);
+            if (fromScan) {
+                BluetoothMetrics.getInstance().recordScanToConnected(now - mScanStartTime);
+            }
+
+            BluetoothConnection connection = registerConnection(mDevice, result.socket, mCallback);
+            getKnownDeviceStore().recordConnected(mDevice.getAddress(), mDevice.getName(),
+                    now - startTime, result.strategy);
+            notifyConnectSuccess(connection, mCallback);
         }
+    }
 
-        @Override
-        public void end() {
-            super.end();
-            if (mSocket.isConnected()) {
-                try {
-                    dis.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+    private DeviceConnectStats obtainConnectStats(String mac) {
+        DeviceConnectStats stats = mConnectStats.get(mac);
+        if (stats == null) {
+            DeviceConnectStats created = new DeviceConnectStats(mac);
+            stats = mConnectStats.putIfAbsent(mac, created);
+            if (stats == null) {
+                stats = created;
             }
         }
+        return stats;
+    }
 
-        @Override
-        public void cycle() {
-            super.cycle();
-            if (dis == null) {
-                cancel();
-                return;
-            }
+    public DeviceConnectStats getConnectStats(String mac) {
+        return mac == null ? null : mConnectStats.get(mac.toUpperCase());
+    }
 
-            try {
-                int len = dis.available();
-                if (len == 0) {
-                    if (buffer.length > 0) {
-                        if (mReadCallback != null) {
-                            mReadCallback.onDataReceive(buffer);
-                        }
-                        buffer = new byte[0];
-                    }
-                    try {
-                        Thread.sleep(10);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                } else {
-                    buffer = new byte[len];
-                    dis.read(buffer);
-                }
+    /**
+     * @param consecutiveBondFailures 包括本次在内连续因配对问题失败的次数，其他原因的失败会打断计数
+     */
+    private static boolean shouldRemoveBond(ConnectOptions options, int code, int consecutiveBondFailures) {
+        switch (options.getBondRemovalPolicy()) {
+            case ConnectOptions.BOND_REMOVAL_ALWAYS:
+                return true;
+            case ConnectOptions.BOND_REMOVAL_ON_BOND_FAILURE:
+                return code == BluetoothException.ERROR_BOND
+                        && consecutiveBondFailures >= options.getBondRemovalThreshold();
+            default:
+                return false;
+        }
+    }
 
-//                while (len != 0) {
-//                    buffer = new byte[len];
-//                    dis.read(buffer);
-//                    try {
-//                        Thread.sleep(10);
-//                    } catch (InterruptedException e) {
-//                        e.printStackTrace();
-//                    }
-//                    len = dis.available();
-//                }
-//                if (buffer.length > 0) {
-//                    if (mReadCallback != null) {
-//                        mReadCallback.onDataReceive(buffer);
-//                    }
-//                }
-            } catch (IOException e) {
-                cancel();
-                e.printStackTrace();
-                if (mReadCallback != null) {
-                    mReadCallback.onReadError(new BluetoothException(BluetoothException.ERROR_IO, null));
-                }
-            }
+    /**
+     * 清除配对信息，下次连接需要重新配对
+     */
+    private static void removeBond(BluetoothDevice device, DeviceConnectStats stats) {
+        if (device.getBondState() != BluetoothDevice.BOND_BONDED) {
+            return;
+        }
+        try {
+            Method m = device.getClass().getMethod("removeBond", (Class[]) null);
+            m.invoke(device, (Object[]) null);
+            stats.onBondRemoved();
+            BluetoothLog.w("remove bond of %s", device.getAddress());
+        } catch (Exception e) {
+            BluetoothLog.e("removeBond catch: %s", e.getMessage());
         }
     }
 
@@ -523,6 +949,10 @@ public class BluetoothController {
                     break;
 
                 case BT_START_FAIL:
+                    // 之前的扫描留下的超时消息
+                    if (msg.obj instanceof Integer && (Integer) msg.obj != mScanGeneration) {
+                        break;
+                    }
                     cancelScan();
                     if (mScanCallback != null) {
                         mScanCallback.onScanStarted(false);
@@ -537,6 +967,7 @@ public class BluetoothController {
 
                 case BT_SCAN_FINISHED:
                     removeMsg(BT_SCAN_FINISHED);
+                    BluetoothTracer.getInstance().record(TraceEvent.SCAN_FINISHED);
 
                     // 如果还在搜索，说明是超时了
                     if (flag_isSearching) {
@@ -552,7 +983,7 @@ public class BluetoothController {
                         }
                     }
                     if (autoConnect && mTargetDevice != null) {
-                        connect(mTargetDevice);
+                        connectScanTarget(mTargetDevice, null);
                     }
                     break;
 
@@ -612,4 +1043,8 @@ public class BluetoothController {
         mHandler.removeMessages(what);
     }
 
+    private void removeMsg(int what, Object obj) {
+        mHandler.removeMessages(what, obj);
+    }
+
 }
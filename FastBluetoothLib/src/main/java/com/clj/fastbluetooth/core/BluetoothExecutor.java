@@ -0,0 +1,256 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.data.ExecutorStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 库内所有后台任务的执行器
+ * io：扫描、设备筛选、连接等短任务，可以替换为应用自己的{@link Executor}；
+ * read：每个连接一个长期阻塞在socket上的读任务，不受io线程数限制，线程数有上限，连接断开后线程回收；
+ * write：所有连接的写队列共享；
+ * scheduler：请求超时等定时任务。
+ * 线程池在第一次使用时创建，{@link #shutdown()}之后再次使用会重新创建。
+ */
+public class BluetoothExecutor {
+
+    public static final int DEFAULT_IO_THREAD_POOL_SIZE = 3;
+    public static final int DEFAULT_WRITE_THREAD_POOL_SIZE = 2;
+    // 默认最大连接数的两倍，替换连接时旧连接的读线程还没退出，新连接已经开始读取
+    public static final int DEFAULT_READ_THREAD_POOL_SIZE = 14;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private int mIoPoolSize = DEFAULT_IO_THREAD_POOL_SIZE;
+    private int mWritePoolSize = DEFAULT_WRITE_THREAD_POOL_SIZE;
+    private int mReadPoolSize = DEFAULT_READ_THREAD_POOL_SIZE;
+    private Executor mCustomIoExecutor;
+
+    private ThreadPoolExecutor mIoExecutor;
+    private ThreadPoolExecutor mReadExecutor;
+    private ThreadPoolExecutor mWriteExecutor;
+    private ScheduledThreadPoolExecutor mScheduler;
+    // 已经shutdown、还在执行剩余任务的线程池
+    private final List<ThreadPoolExecutor> mTerminating = new ArrayList<>();
+
+    public static BluetoothExecutor getInstance() {
+        return BluetoothExecutorHolder.sBluetoothExecutor;
+    }
+
+    private static class BluetoothExecutorHolder {
+        private static final BluetoothExecutor sBluetoothExecutor = new BluetoothExecutor();
+    }
+
+    /**
+     * 需要在线程池创建之前设置，即第一次扫描或连接之前，或者{@link #shutdown()}之后
+     */
+    public synchronized void setIoThreadPoolSize(int size) {
+        if (size > 0) {
+            this.mIoPoolSize = size;
+        }
+    }
+
+    public synchronized int getIoThreadPoolSize() {
+        return mIoPoolSize;
+    }
+
+    /**
+     * 需要在线程池创建之前设置，即第一次建立连接之前，或者{@link #shutdown()}之后
+     */
+    public synchronized void setWriteThreadPoolSize(int size) {
+        if (size > 0) {
+            this.mWritePoolSize = size;
+        }
+    }
+
+    public synchronized int getWriteThreadPoolSize() {
+        return mWritePoolSize;
+    }
+
+    /**
+     * 读线程数的上限，超过时启动读取会被拒绝，可以随时设置，已经创建的线程池立即生效
+     */
+    public synchronized void setReadThreadPoolSize(int size) {
+        if (size > 0) {
+            this.mReadPoolSize = size;
+            if (mReadExecutor != null) {
+                mReadExecutor.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    public synchronized int getReadThreadPoolSize() {
+        return mReadPoolSize;
+    }
+
+    /**
+     * 使用应用自己的执行器运行io任务，传null恢复使用内部线程池
+     * 外部执行器的生命周期由应用自己管理，{@link #shutdown()}不会关闭它
+     */
+    public synchronized void setIoExecutor(Executor executor) {
+        this.mCustomIoExecutor = executor;
+    }
+
+    /**
+     * 执行扫描、设备筛选、连接等任务
+     */
+    public void execute(Runnable task) {
+        obtainIoExecutor().execute(task);
+    }
+
+    /**
+     * 执行io任务的执行器，设置了外部执行器时返回外部执行器
+     */
+    public Executor getIoExecutor() {
+        return obtainIoExecutor();
+    }
+
+    /**
+     * 运行长期阻塞的读任务，每个任务独占一个线程，线程数达到{@link #getReadThreadPoolSize()}时
+     * execute会抛出{@link java.util.concurrent.RejectedExecutionException}
+     */
+    public Executor getReadExecutor() {
+        return obtainReadExecutor();
+    }
+
+    public Executor getWriteExecutor() {
+        return obtainWriteExecutor();
+    }
+
+    public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return obtainScheduler().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 各线程池当前的线程数、活跃任务数和排队任务数
+     */
+    public synchronized List<ExecutorStats> getStats() {
+        List<ExecutorStats> stats = new ArrayList<>(4);
+        if (mCustomIoExecutor instanceof ThreadPoolExecutor) {
+            stats.add(ExecutorStats.of("io", (ThreadPoolExecutor) mCustomIoExecutor));
+        } else if (mCustomIoExecutor == null) {
+            stats.add(ExecutorStats.of("io", mIoExecutor));
+        }
+        stats.add(ExecutorStats.of("read", mReadExecutor));
+        stats.add(ExecutorStats.of("write", mWriteExecutor));
+        stats.add(ExecutorStats.of("scheduler", mScheduler));
+        return stats;
+    }
+
+    /**
+     * 停止接收新任务，已提交的任务继续执行完，不阻塞调用线程
+     */
+    public synchronized void shutdown() {
+        mTerminating.clear();
+        if (mIoExecutor != null) {
+            mTerminating.add(mIoExecutor);
+            mIoExecutor = null;
+        }
+        if (mReadExecutor != null) {
+            mTerminating.add(mReadExecutor);
+            mReadExecutor = null;
+        }
+        if (mWriteExecutor != null) {
+            mTerminating.add(mWriteExecutor);
+            mWriteExecutor = null;
+        }
+        for (ThreadPoolExecutor executor : mTerminating) {
+            executor.shutdown();
+        }
+        if (mScheduler != null) {
+            // 未到期的定时任务不再执行
+            mScheduler.shutdownNow();
+            mScheduler = null;
+        }
+    }
+
+    /**
+     * 等待{@link #shutdown()}之前提交的任务执行完，不要在主线程调用
+     *
+     * @return 超时前全部执行完返回true
+     */
+    public boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+        List<ThreadPoolExecutor> terminating;
+        synchronized (this) {
+            terminating = new ArrayList<>(mTerminating);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (ThreadPoolExecutor executor : terminating) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        synchronized (this) {
+            mTerminating.removeAll(terminating);
+        }
+        return true;
+    }
+
+    private synchronized Executor obtainIoExecutor() {
+        if (mCustomIoExecutor != null) {
+            return mCustomIoExecutor;
+        }
+        if (mIoExecutor == null) {
+            mIoExecutor = newFixedPool("io", mIoPoolSize);
+        }
+        return mIoExecutor;
+    }
+
+    private synchronized Executor obtainReadExecutor() {
+        if (mReadExecutor == null) {
+            mReadExecutor = new ThreadPoolExecutor(0, mReadPoolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new NamedThreadFactory("read", false));
+        }
+        return mReadExecutor;
+    }
+
+    private synchronized Executor obtainWriteExecutor() {
+        if (mWriteExecutor == null) {
+            mWriteExecutor = newFixedPool("write", mWritePoolSize);
+        }
+        return mWriteExecutor;
+    }
+
+    private synchronized ScheduledThreadPoolExecutor obtainScheduler() {
+        if (mScheduler == null) {
+            mScheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("scheduler", true));
+        }
+        return mScheduler;
+    }
+
+    private static ThreadPoolExecutor newFixedPool(String name, int size) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name, false));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+        private final String mPrefix;
+        private final boolean mDaemon;
+
+        NamedThreadFactory(String name, boolean daemon) {
+            mPrefix = "FastBluetooth-" + name + "-";
+            mDaemon = daemon;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, mPrefix + mCount.getAndIncrement());
+            thread.setDaemon(mDaemon);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.clj.fastbluetooth.core;
+
+import android.os.SystemClock;
+
+import com.clj.fastbluetooth.callback.BluetoothMetricsCallback;
+import com.clj.fastbluetooth.data.HistogramSnapshot;
+import com.clj.fastbluetooth.data.MetricsSnapshot;
+import com.clj.fastbluetooth.util.LogHistogram;
+import com.clj.fastbluetooth.util.StripedCounter;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 全局的扫描、连接、读写指标，所有连接累计在一起
+ * 默认关闭，关闭时每个记录点只多读一次volatile变量；开启后计数器分段累加，直方图内存固定，
+ * 可以随时通过{@link #snapshot()}读取，也可以设置回调定时推送。
+ */
+public class BluetoothMetrics {
+
+    public static final String SCAN_DEVICES = "scan.devices";
+    public static final String CONNECT_SUCCESSES = "connect.successes";
+    public static final String CONNECT_FAILURES = "connect.failures";
+    public static final String READ_BYTES = "read.bytes";
+    public static final String READ_FRAMES = "read.frames";
+    public static final String READ_ERRORS = "read.errors";
+    public static final String WRITE_BYTES = "write.bytes";
+    public static final String WRITE_COUNT = "write.count";
+    public static final String WRITE_ERRORS = "write.errors";
+
+    // 扫描开始到发现第一个设备，毫秒
+    public static final String SCAN_FIRST_DEVICE_MILLIS = "scan.firstDevice.ms";
+    // 扫描开始到发现目标设备，毫秒
+    public static final String SCAN_TARGET_FOUND_MILLIS = "scan.targetFound.ms";
+    // 扫描开始到目标设备连接成功，毫秒
+    public static final String SCAN_TO_CONNECTED_MILLIS = "scan.toConnected.ms";
+    // 建立socket连接的耗时，包含重试，毫秒
+    public static final String CONNECT_LATENCY_MILLIS = "connect.latency.ms";
+    // 写入队列到写出完成，微秒
+    public static final String WRITE_LATENCY_MICROS = "write.latency.us";
+
+    private volatile boolean mEnabled;
+
+    private final StripedCounter mScanDevices = new StripedCounter();
+    private final StripedCounter mConnectSuccesses = new StripedCounter();
+    private final StripedCounter mConnectFailures = new StripedCounter();
+    private final StripedCounter mReadBytes = new StripedCounter();
+    private final StripedCounter mReadFrames = new StripedCounter();
+    private final StripedCounter mReadErrors = new StripedCounter();
+    private final StripedCounter mWriteBytes = new StripedCounter();
+    private final StripedCounter mWriteCount = new StripedCounter();
+    private final StripedCounter mWriteErrors = new StripedCounter();
+
+    private final LogHistogram mScanFirstDevice = new LogHistogram();
+    private final LogHistogram mScanTargetFound = new LogHistogram();
+    private final LogHistogram mScanToConnected = new LogHistogram();
+    private final LogHistogram mConnectLatency = new LogHistogram();
+    private final LogHistogram mWriteLatency = new LogHistogram();
+
+    private BluetoothMetricsCallback mCallback;
+    private long mReportInterval;
+    private Future<?> mReportTask;
+
+    public static BluetoothMetrics getInstance() {
+        return BluetoothMetricsHolder.sBluetoothMetrics;
+    }
+
+    private static class BluetoothMetricsHolder {
+        private static final BluetoothMetrics sBluetoothMetrics = new BluetoothMetrics();
+    }
+
+    private BluetoothMetrics() {
+    }
+
+    /**
+     * 关闭后已记录的数据保留，重新开启时继续累计
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        scheduleReport();
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * 开启状态下每隔intervalMillis推送一次快照
+     *
+     * @param callback 为null时停止推送
+     */
+    public synchronized void setCallback(BluetoothMetricsCallback callback, long intervalMillis) {
+        if (callback != null && intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive: " + intervalMillis);
+        }
+        mCallback = callback;
+        mReportInterval = intervalMillis;
+        scheduleReport();
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put(SCAN_DEVICES, mScanDevices.sum());
+        counters.put(CONNECT_SUCCESSES, mConnectSuccesses.sum());
+        counters.put(CONNECT_FAILURES, mConnectFailures.sum());
+        counters.put(READ_BYTES, mReadBytes.sum());
+        counters.put(READ_FRAMES, mReadFrames.sum());
+        counters.put(READ_ERRORS, mReadErrors.sum());
+        counters.put(WRITE_BYTES, mWriteBytes.sum());
+        counters.put(WRITE_COUNT, mWriteCount.sum());
+        counters.put(WRITE_ERRORS, mWriteErrors.sum());
+
+        Map<String, HistogramSnapshot> histograms = new LinkedHashMap<>();
+        histograms.put(SCAN_FIRST_DEVICE_MILLIS, mScanFirstDevice.snapshot());
+        histograms.put(SCAN_TARGET_FOUND_MILLIS, mScanTargetFound.snapshot());
+        histograms.put(SCAN_TO_CONNECTED_MILLIS, mScanToConnected.snapshot());
+        histograms.put(CONNECT_LATENCY_MILLIS, mConnectLatency.snapshot());
+        histograms.put(WRITE_LATENCY_MICROS, mWriteLatency.snapshot());
+        return new MetricsSnapshot(SystemClock.elapsedRealtime(), counters, histograms);
+    }
+
+    /**
+     * 清零所有指标
+     */
+    public void reset() {
+        mScanDevices.reset();
+        mConnectSuccesses.reset();
+        mConnectFailures.reset();
+        mReadBytes.reset();
+        mReadFrames.reset();
+        mReadErrors.reset();
+        mWriteBytes.reset();
+        mWriteCount.reset();
+        mWriteErrors.reset();
+        mScanFirstDevice.reset();
+        mScanTargetFound.reset();
+        mScanToConnected.reset();
+        mConnectLatency.reset();
+        mWriteLatency.reset();
+    }
+
+    void onDeviceCollected() {
+        if (mEnabled) {
+            mScanDevices.increment();
+        }
+    }
+
+    void recordScanFirstDevice(long millis) {
+        if (mEnabled) {
+            mScanFirstDevice.record(millis);
+        }
+    }
+
+    void recordScanTargetFound(long millis) {
+        if (mEnabled) {
+            mScanTargetFound.record(millis);
+        }
+    }
+
+    void recordScanToConnected(long millis) {
+        if (mEnabled) {
+            mScanToConnected.record(millis);
+        }
+    }
+
+    void onConnectSuccess(long latencyMillis) {
+        if (mEnabled) {
+            mConnectSuccesses.increment();
+            mConnectLatency.record(latencyMillis);
+        }
+    }
+
+    void onConnectFailure() {
+        if (mEnabled) {
+            mConnectFailures.increment();
+        }
+    }
+
+    void onBytesRead(int count) {
+        if (mEnabled) {
+            mReadBytes.add(count);
+        }
+    }
+
+    void onFrameRead() {
+        if (mEnabled) {
+            mReadFrames.increment();
+        }
+    }
+
+    void onReadError() {
+        if (mEnabled) {
+            mReadErrors.increment();
+        }
+    }
+
+    void onWritten(int bytes, int writes) {
+        if (mEnabled) {
+            mWriteBytes.add(bytes);
+            mWriteCount.add(writes);
+        }
+    }
+
+    void onWriteError(int writes) {
+        if (mEnabled) {
+            mWriteErrors.add(writes);
+        }
+    }
+
+    /**
+     * 关闭时返回0，调用方据此跳过耗时记录，不产生System.nanoTime()的开销
+     */
+    long writeStartTime() {
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    void recordWriteLatency(long startTime) {
+        if (mEnabled && startTime != 0) {
+            mWriteLatency.record((System.nanoTime() - startTime) / 1000);
+        }
+    }
+
+    /**
+     * 需要持有锁
+     */
+    private void scheduleReport() {
+        if (mReportTask != null) {
+            mReportTask.cancel(false);
+            mReportTask = null;
+        }
+        if (!mEnabled || mCallback == null) {
+            return;
+        }
+        final BluetoothMetricsCallback callback = mCallback;
+        try {
+            mReportTask = BluetoothExecutor.getInstance().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    report(callback);
+                }
+            }, mReportInterval);
+        } catch (RejectedExecutionException e) {
+            BluetoothLog.e("schedule metrics report catch: %s", e.getMessage());
+        }
+    }
+
+    private void report(BluetoothMetricsCallback callback) {
+        synchronized (this) {
+            if (callback != mCallback || !mEnabled) {
+                return;
+            }
+        }
+        try {
+            callback.onMetrics(snapshot());
+        } finally {
+            synchronized (this) {
+                if (callback == mCallback) {
+                    scheduleReport();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.data.TraceEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 扫描和连接过程的操作轨迹
+ * 事件按System.nanoTime()记录到预先分配的环形缓冲区，写满后覆盖最早的事件，记录时不创建对象；
+ * 导出时才生成{@link TraceEvent}交给{@link TraceSink}，例如{@link ChromeTraceFileSink}。
+ * 默认关闭，关闭时每个记录点只多读一次volatile变量。
+ */
+public class BluetoothTracer {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private volatile boolean mEnabled;
+
+    private int[] mTypes;
+    private long[] mTimes;
+    private long[] mThreadIds;
+    private String[] mMacs;
+    private String[] mDetails;
+    // 累计记录的事件数，下一条事件写入mCount % capacity
+    private long mCount;
+
+    public static BluetoothTracer getInstance() {
+        return BluetoothTracerHolder.sBluetoothTracer;
+    }
+
+    private static class BluetoothTracerHolder {
+        private static final BluetoothTracer sBluetoothTracer = new BluetoothTracer();
+    }
+
+    private BluetoothTracer() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * 重新分配缓冲区，已记录的事件会被清空
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        allocate(capacity);
+    }
+
+    public synchronized int getCapacity() {
+        return mTypes.length;
+    }
+
+    void record(int type) {
+        record(type, null, null);
+    }
+
+    void record(int type, String mac) {
+        record(type, mac, null);
+    }
+
+    void record(int type, String mac, String detail) {
+        if (!mEnabled) {
+            return;
+        }
+        long time = System.nanoTime();
+        long threadId = Thread.currentThread().getId();
+        synchronized (this) {
+            int index = (int) (mCount % mTypes.length);
+            mTypes[index] = type;
+            mTimes[index] = time;
+            mThreadIds[index] = threadId;
+            mMacs[index] = mac;
+            mDetails[index] = detail;
+            mCount++;
+        }
+    }
+
+    /**
+     * 缓冲区中的事件，最早的在前
+     */
+    public synchronized List<TraceEvent> snapshot() {
+        int capacity = mTypes.length;
+        int size = (int) Math.min(mCount, capacity);
+        List<TraceEvent> events = new ArrayList<>(size);
+        for (long i = mCount - size; i < mCount; i++) {
+            int index = (int) (i % capacity);
+            events.add(new TraceEvent(mTypes[index], mTimes[index], mThreadIds[index], mMacs[index], mDetails[index]));
+        }
+        return events;
+    }
+
+    /**
+     * 在调用线程中导出当前缓冲区中的事件，写文件等耗时操作不要在主线程调用
+     */
+    public void export(TraceSink sink) throws IOException {
+        sink.export(snapshot());
+    }
+
+    public synchronized void clear() {
+        allocate(mTypes.length);
+    }
+
+    private void allocate(int capacity) {
+        mTypes = new int[capacity];
+        mTimes = new long[capacity];
+        mThreadIds = new long[capacity];
+        mMacs = new String[capacity];
+        mDetails = new String[capacity];
+        mCount = 0;
+    }
+}
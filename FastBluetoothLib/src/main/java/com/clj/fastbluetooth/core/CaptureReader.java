@@ -0,0 +1,160 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.util.MacUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 按顺序读取{@link TrafficRecorder}的抓包文件
+ * 整个文件只读映射，{@link #next()}只移动位置，数据用{@link #getData(int, byte[], int, int)}直接拷贝到调用方的数组。
+ * 遇到长度为0或不完整的记录即视为文件结束，崩溃时留下的文件也能读出已完整写入的部分。不是线程安全的。
+ */
+public class CaptureReader implements Closeable {
+
+    private final RandomAccessFile mRandomAccessFile;
+    private final MappedByteBuffer mBuffer;
+    private final long mStartTimeMillis;
+    private final long mStartNanos;
+
+    // 下一条记录的位置
+    private int mNext;
+    // 当前记录数据的起始位置
+    private int mDataStart;
+    private int mLength;
+    private long mTimeNanos;
+    private int mDirection;
+    private long mMac;
+    private boolean mEnd;
+
+    public CaptureReader(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File can not be Null!");
+        }
+        mRandomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = mRandomAccessFile.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("capture file too large: " + size);
+            }
+            if (size < TrafficRecorder.HEADER_SIZE) {
+                throw new IOException("not a capture file: " + file);
+            }
+            mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mBuffer.getInt(0) != TrafficRecorder.MAGIC) {
+                throw new IOException("not a capture file: " + file);
+            }
+            if (mBuffer.getShort(4) != TrafficRecorder.VERSION) {
+                throw new IOException("unsupported capture version: " + mBuffer.getShort(4));
+            }
+            mStartTimeMillis = mBuffer.getLong(8);
+            mStartNanos = mBuffer.getLong(16);
+            mNext = mBuffer.getShort(6);
+        } catch (IOException e) {
+            mRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 开始抓包时的System.currentTimeMillis()
+     */
+    public long getStartTimeMillis() {
+        return mStartTimeMillis;
+    }
+
+    /**
+     * 开始抓包时的System.nanoTime()，与记录的时间相减得到相对时间
+     */
+    public long getStartNanos() {
+        return mStartNanos;
+    }
+
+    /**
+     * 移到下一条记录
+     *
+     * @return 没有更多记录时返回false
+     */
+    public boolean next() {
+        if (mEnd) {
+            return false;
+        }
+        int position = mNext;
+        int limit = mBuffer.limit();
+        if (position > limit - TrafficRecorder.RECORD_HEADER_SIZE) {
+            return end();
+        }
+        int length = mBuffer.getInt(position);
+        if (length <= 0 || length > limit - position - TrafficRecorder.RECORD_HEADER_SIZE) {
+            return end();
+        }
+        mLength = length;
+        mTimeNanos = mBuffer.getLong(position + 4);
+        mDirection = mBuffer.get(position + 12) & 0xFF;
+        mMac = ((long) (mBuffer.getShort(position + 13) & 0xFFFF) << 32)
+                | (mBuffer.getInt(position + 15) & 0xFFFFFFFFL);
+        mDataStart = position + TrafficRecorder.RECORD_HEADER_SIZE;
+        mNext = mDataStart + length;
+        return true;
+    }
+
+    private boolean end() {
+        mEnd = true;
+        mLength = 0;
+        return false;
+    }
+
+    public long getTimeNanos() {
+        return mTimeNanos;
+    }
+
+    /**
+     * {@link TrafficRecorder#DIRECTION_RX}或{@link TrafficRecorder#DIRECTION_TX}
+     */
+    public int getDirection() {
+        return mDirection;
+    }
+
+    /**
+     * 打包后的MAC地址，见{@link MacUtils}，没有记录MAC时为{@link MacUtils#INVALID}
+     */
+    public long getMacValue() {
+        return mMac == 0xFFFFFFFFFFFFL ? MacUtils.INVALID : mMac;
+    }
+
+    public String getMac() {
+        return MacUtils.unpack(getMacValue());
+    }
+
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * 把当前记录中从recordOffset开始的length个字节拷贝到dst
+     */
+    public void getData(int recordOffset, byte[] dst, int dstOffset, int length) {
+        if (recordOffset < 0 || length < 0 || recordOffset > mLength - length) {
+            throw new IndexOutOfBoundsException("recordOffset=" + recordOffset + ", length=" + length
+                    + ", recordLength=" + mLength);
+        }
+        mBuffer.position(mDataStart + recordOffset);
+        mBuffer.get(dst, dstOffset, length);
+    }
+
+    public byte[] getData() {
+        byte[] data = new byte[mLength];
+        getData(0, data, 0, mLength);
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mRandomAccessFile.close();
+    }
+}
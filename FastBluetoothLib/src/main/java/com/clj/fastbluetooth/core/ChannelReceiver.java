@@ -0,0 +1,280 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothReceiveCallback;
+import com.clj.fastbluetooth.data.ReceiveOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 把收到的数据直接写入文件或通道
+ * 由{@link ReadLoop}在读线程中调用，数据从接收缓冲区拷贝到复用的直接缓冲区，攒满后一次写入通道，
+ * 不为每段数据创建byte[]，也不经过{@link com.clj.fastbluetooth.callback.BluetoothReadCallback}。
+ * 收到指定的字节数或结束标记后结束，之后的数据照常交给read()的回调；
+ * 结束标记可能跨越多段数据，末尾与结束标记开头相同的字节不消费，留在接收缓冲区中与下一段数据一起检查。
+ */
+public class ChannelReceiver {
+
+    private final WritableByteChannel mChannel;
+    private final boolean mCloseChannel;
+    private final BluetoothReceiveCallback mCallback;
+    private final long mMaxBytes;
+    private final byte[] mTerminator;
+    // mTerminator的KMP部分匹配表
+    private final int[] mTerminatorFallback;
+    private final ByteBuffer mBuffer;
+    private final long mProgressIntervalNanos;
+
+    private long mBytes;
+    private boolean mStarted;
+    private long mStartNanos;
+    private long mLastProgressNanos;
+    private long mLastProgressBytes;
+    private boolean mFinished;
+
+    /**
+     * @param closeChannel 结束时是否关闭通道
+     */
+    ChannelReceiver(WritableByteChannel channel, boolean closeChannel, ReceiveOptions options,
+                    BluetoothReceiveCallback callback) {
+        if (channel == null || callback == null) {
+            throw new IllegalArgumentException("channel and callback can not be Null!");
+        }
+        if (options == null) {
+            options = new ReceiveOptions();
+        }
+        mChannel = channel;
+        mCloseChannel = closeChannel;
+        mCallback = callback;
+        mMaxBytes = options.getMaxBytes();
+        mTerminator = options.getTerminator();
+        mTerminatorFallback = mTerminator == null ? null : fallbackTable(mTerminator);
+        mBuffer = ByteBuffer.allocateDirect(options.getBufferSize());
+        mProgressIntervalNanos = options.getProgressIntervalMillis() * 1000000L;
+    }
+
+    /**
+     * 取消接收，已经收到的数据写入通道后回调onReceiveError(ERROR_CANCELLED)
+     */
+    public void cancel() {
+        fail(new BluetoothException(BluetoothException.ERROR_CANCELLED, null));
+    }
+
+    /**
+     * 已写入通道的字节数，包含还在直接缓冲区中的部分
+     */
+    public synchronized long getBytes() {
+        return mBytes;
+    }
+
+    public synchronized boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * 在读线程中处理一段数据
+     *
+     * @return 消费的字节数，结束后剩下的数据由读任务照常处理
+     */
+    int onData(byte[] data, int offset, int length) {
+        int consumed;
+        long bytes;
+        long bytesPerSecond = 0;
+        boolean done;
+        boolean progress = false;
+        BluetoothException error = null;
+        synchronized (this) {
+            if (mFinished) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            if (!mStarted) {
+                mStarted = true;
+                mStartNanos = now;
+                mLastProgressNanos = now;
+            }
+
+            int accept;
+            boolean found = false;
+            if (mTerminator == null) {
+                accept = length;
+                consumed = length;
+            } else {
+                int end = offset + length;
+                int i = offset;
+                int matched = 0;
+                byte first = mTerminator[0];
+                while (i < end) {
+                    if (matched == 0) {
+                        // 先快速跳到结束标记的第一个字节
+                        while (i < end && data[i] != first) {
+                            i++;
+                        }
+                        if (i == end) {
+                            break;
+                        }
+                    }
+                    byte b = data[i++];
+                    while (matched > 0 && mTerminator[matched] != b) {
+                        matched = mTerminatorFallback[matched - 1];
+                    }
+                    if (mTerminator[matched] == b && ++matched == mTerminator.length) {
+                        found = true;
+                        break;
+                    }
+                }
+                consumed = i - offset;
+                accept = consumed - matched;
+                if (!found) {
+                    // 可能是结束标记的开头，等下一段数据
+                    consumed = accept;
+                }
+            }
+            done = found;
+            long remaining = mMaxBytes - mBytes;
+            if (mMaxBytes >= 0 && accept >= remaining) {
+                // 结束标记或可能的结束标记在字节数之后开始，以字节数为准，多出的部分留给读任务
+                accept = (int) remaining;
+                consumed = accept;
+                done = true;
+            }
+
+            try {
+                put(data, offset, accept);
+                if (done) {
+                    flush();
+                    finish();
+                }
+            } catch (IOException e) {
+                BluetoothLog.e("ChannelReceiver write catch: %s", e.getMessage());
+                error = new BluetoothException(BluetoothException.ERROR_IO, e.getMessage());
+                finish();
+                // 写入失败时本段数据丢弃
+                consumed = length;
+                done = false;
+            }
+            bytes = mBytes;
+            if (done) {
+                bytesPerSecond = rate(bytes, now - mStartNanos);
+            } else if (error == null && now - mLastProgressNanos >= mProgressIntervalNanos
+                    && bytes > mLastProgressBytes) {
+                progress = true;
+                bytesPerSecond = rate(bytes - mLastProgressBytes, now - mLastProgressNanos);
+                mLastProgressNanos = now;
+                mLastProgressBytes = bytes;
+            }
+        }
+        if (error != null) {
+            mCallback.onReceiveError(error, bytes);
+        } else if (done) {
+            mCallback.onReceiveProgress(bytes, bytesPerSecond);
+            mCallback.onReceiveComplete(bytes, bytesPerSecond);
+        } else if (progress) {
+            mCallback.onReceiveProgress(bytes, bytesPerSecond);
+        }
+        return consumed;
+    }
+
+    /**
+     * 连接断开或读取出错，在读线程中调用
+     */
+    void onReadError(int code) {
+        fail(new BluetoothException(code, null));
+    }
+
+    private void put(byte[] src, int offset, int length) throws IOException {
+        while (length > 0) {
+            int count = Math.min(length, mBuffer.remaining());
+            mBuffer.put(src, offset, count);
+            mBytes += count;
+            offset += count;
+            length -= count;
+            if (!mBuffer.hasRemaining()) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * 写入失败时mBytes减去没有写出的部分
+     */
+    private void flush() throws IOException {
+        mBuffer.flip();
+        try {
+            while (mBuffer.hasRemaining()) {
+                mChannel.write(mBuffer);
+            }
+        } catch (IOException e) {
+            mBytes -= mBuffer.remaining();
+            throw e;
+        } finally {
+            mBuffer.clear();
+        }
+    }
+
+    /**
+     * 先把缓冲区中的数据写入通道，写入失败时改为回调ERROR_IO
+     */
+    private void fail(BluetoothException e) {
+        long bytes;
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            try {
+                flush();
+            } catch (IOException ioe) {
+                BluetoothLog.e("ChannelReceiver write catch: %s", ioe.getMessage());
+                e = new BluetoothException(BluetoothException.ERROR_IO, ioe.getMessage());
+            }
+            finish();
+            bytes = mBytes;
+        }
+        mCallback.onReceiveError(e, bytes);
+    }
+
+    private void finish() {
+        if (mFinished) {
+            return;
+        }
+        mFinished = true;
+        if (mCloseChannel) {
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                BluetoothLog.e("ChannelReceiver close catch: %s", e.getMessage());
+            }
+        }
+    }
+
+    private static int[] fallbackTable(byte[] pattern) {
+        int[] table = new int[pattern.length];
+        int k = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = table[k - 1];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            table[i] = k;
+        }
+        return table;
+    }
+
+    private static long rate(long bytes, long nanos) {
+        return nanos <= 0 ? 0 : bytes * 1000000000L / nanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ChannelReceiver { " +
+                "bytes=" + mBytes +
+                ", maxBytes=" + mMaxBytes +
+                ", finished=" + mFinished +
+                '}';
+    }
+}
@@ -0,0 +1,136 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.data.TraceEvent;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * 把轨迹写成Chrome Trace Event格式的JSON文件，可以用chrome://tracing或Perfetto打开
+ * 每个事件输出为瞬时事件，时间从第一个事件开始以微秒计；
+ * 扫描过程和每次连接尝试另外输出为异步区间，在时间轴上可以直接看出各阶段的耗时。
+ */
+public class ChromeTraceFileSink implements TraceSink {
+
+    private static final int PID = 1;
+
+    private final File mFile;
+
+    public ChromeTraceFileSink(File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File can not be Null!");
+        }
+        mFile = file;
+    }
+
+    @Override
+    public void export(List<TraceEvent> events) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mFile), "UTF-8"));
+        try {
+            long origin = events.isEmpty() ? 0 : events.get(0).getTimeNanos();
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            boolean first = true;
+            for (TraceEvent event : events) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writeEvent(writer, event, event.getName(), "i", origin);
+
+                switch (event.getType()) {
+                    case TraceEvent.SCAN_STARTED:
+                        writer.write(',');
+                        writeEvent(writer, event, "scan", "b", origin);
+                        break;
+                    case TraceEvent.SCAN_FINISHED:
+                        writer.write(',');
+                        writeEvent(writer, event, "scan", "e", origin);
+                        break;
+                    case TraceEvent.CONNECT_ATTEMPT_STARTED:
+                        writer.write(',');
+                        writeEvent(writer, event, "connectAttempt", "b", origin);
+                        break;
+                    case TraceEvent.CONNECT_ATTEMPT_FAILED:
+                    case TraceEvent.CONNECTED:
+                        writer.write(',');
+                        writeEvent(writer, event, "connectAttempt", "e", origin);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            writer.write("]}");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeEvent(Writer writer, TraceEvent event, String name, String phase, long origin)
+            throws IOException {
+        writer.write("{\"name\":");
+        writeString(writer, name);
+        writer.write(",\"cat\":\"bluetooth\",\"ph\":\"");
+        writer.write(phase);
+        writer.write('"');
+        if ("i".equals(phase)) {
+            // 瞬时事件只画在所在线程上
+            writer.write(",\"s\":\"t\"");
+        } else {
+            // 异步区间按设备区分，扫描没有设备
+            writer.write(",\"id\":");
+            writeString(writer, event.getMac() != null ? event.getMac() : "scan");
+        }
+        writer.write(",\"ts\":");
+        writer.write(String.valueOf((event.getTimeNanos() - origin) / 1000.0));
+        writer.write(",\"pid\":");
+        writer.write(String.valueOf(PID));
+        writer.write(",\"tid\":");
+        writer.write(String.valueOf(event.getThreadId()));
+        writer.write(",\"args\":{\"mac\":");
+        writeString(writer, event.getMac());
+        writer.write(",\"detail\":");
+        writeString(writer, event.getDetail());
+        writer.write("}}");
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+                    break;
+            }
+        }
+        writer.write('"');
+    }
+}
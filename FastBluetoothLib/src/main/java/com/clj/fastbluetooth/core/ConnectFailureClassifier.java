@@ -0,0 +1,53 @@
+package com.clj.fastbluetooth.core;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Locale;
+
+/**
+ * 根据socket连接的异常和设备的配对状态判断连接失败的原因
+ * Android没有为RFCOMM连接失败提供错误码，只能依据异常信息，无法识别时返回{@link BluetoothException#ERROR_CONNECT}
+ */
+public class ConnectFailureClassifier {
+
+    /**
+     * @param bondState {@link BluetoothDevice#getBondState()}
+     * @return {@link BluetoothException}中的错误码
+     */
+    public static int classify(IOException e, int bondState) {
+        if (e instanceof SocketTimeoutException) {
+            return BluetoothException.ERROR_CONNECT_TIMEOUT;
+        }
+        String message = e != null && e.getMessage() != null ? e.getMessage().toLowerCase(Locale.US) : "";
+
+        // 拒绝连接和找不到服务的信息最明确，先于配对状态判断，正在配对时也可能是这两种原因
+        if (message.contains("refused")) {
+            return BluetoothException.ERROR_CONNECT_REFUSED;
+        }
+        if (message.contains("service discovery") || message.contains("sdp")
+                || message.contains("service not found")) {
+            return BluetoothException.ERROR_SERVICE_NOT_FOUND;
+        }
+        // 正在配对或者配对信息失效时，连接会以认证错误结束
+        if (bondState == BluetoothDevice.BOND_BONDING
+                || message.contains("auth") || message.contains("pair")
+                || message.contains("bond") || message.contains("key missing")) {
+            return BluetoothException.ERROR_BOND;
+        }
+        // "read failed, socket might closed or timeout, read ret: -1"只说明socket在握手时被关闭，
+        // 原因很多，虽然带有"timeout"字样也不当作超时
+        if (message.contains("read ret: -1")) {
+            return BluetoothException.ERROR_CONNECT;
+        }
+        // 设备不在范围内或未开机时常见"host is down"
+        if (message.contains("timeout") || message.contains("timed out")
+                || message.contains("host is down")) {
+            return BluetoothException.ERROR_CONNECT_TIMEOUT;
+        }
+        return BluetoothException.ERROR_CONNECT;
+    }
+}
@@ -0,0 +1,64 @@
+package com.clj.fastbluetooth.core;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+
+/**
+ * 常用的socket建立方式
+ */
+public class ConnectStrategies {
+
+    public static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    /**
+     * 加密的SPP连接，需要配对
+     */
+    public static final ConnectStrategy SECURE = new ConnectStrategy() {
+        @Override
+        public String getName() {
+            return "secure";
+        }
+
+        @Override
+        public BluetoothSocket createSocket(BluetoothDevice device) throws Exception {
+            return device.createRfcommSocketToServiceRecord(SPP_UUID);
+        }
+    };
+
+    /**
+     * 不加密的SPP连接，部分不支持配对的模块只能这样连接
+     */
+    public static final ConnectStrategy INSECURE = new ConnectStrategy() {
+        @Override
+        public String getName() {
+            return "insecure";
+        }
+
+        @Override
+        public BluetoothSocket createSocket(BluetoothDevice device) throws Exception {
+            return device.createInsecureRfcommSocketToServiceRecord(SPP_UUID);
+        }
+    };
+
+    /**
+     * 跳过SDP查询，直接连接指定的RFCOMM通道，用于SDP记录缺失或查询失败的设备
+     * 通过反射调用隐藏的createRfcommSocket(int)
+     */
+    public static ConnectStrategy channel(final int channel) {
+        return new ConnectStrategy() {
+            @Override
+            public String getName() {
+                return "channel-" + channel;
+            }
+
+            @Override
+            public BluetoothSocket createSocket(BluetoothDevice device) throws Exception {
+                Method m = device.getClass().getMethod("createRfcommSocket", int.class);
+                return (BluetoothSocket) m.invoke(device, channel);
+            }
+        };
+    }
+}
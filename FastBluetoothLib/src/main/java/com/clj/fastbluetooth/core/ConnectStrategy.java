@@ -0,0 +1,21 @@
+package com.clj.fastbluetooth.core;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+/**
+ * 建立socket的方式，连接时按顺序尝试，成功的方式会按设备记录下来，下次优先使用
+ * 常用的实现见{@link ConnectStrategies}
+ */
+public interface ConnectStrategy {
+
+    /**
+     * 用于记录和日志，不同的方式名称不能相同
+     */
+    String getName();
+
+    /**
+     * 创建未连接的socket，由调用方connect()
+     */
+    BluetoothSocket createSocket(BluetoothDevice device) throws Exception;
+}
@@ -0,0 +1,108 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.data.TraceEvent;
+import com.clj.fastbluetooth.util.MacUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个连接的统计数据，读写线程实时更新，可以随时读取
+ * 同时计入{@link BluetoothMetrics}的全局指标。
+ */
+public class ConnectionStats {
+
+    private final String mac;
+    private final long macValue;
+    private final long connectedTime = System.currentTimeMillis();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong framesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong writesCompleted = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+    private final AtomicLong readErrors = new AtomicLong();
+
+    ConnectionStats(String mac) {
+        this.mac = mac;
+        this.macValue = MacUtils.pack(mac);
+    }
+
+    void onBytesRead(int count) {
+        if (bytesRead.addAndGet(count) == count && count > 0) {
+            BluetoothTracer.getInstance().record(TraceEvent.FIRST_BYTE, mac);
+        }
+        BluetoothMetrics.getInstance().onBytesRead(count);
+    }
+
+    void onFrameRead() {
+        framesRead.incrementAndGet();
+        BluetoothMetrics.getInstance().onFrameRead();
+    }
+
+    void onReadError() {
+        readErrors.incrementAndGet();
+        BluetoothMetrics.getInstance().onReadError();
+    }
+
+    void onWritten(int bytes, int writes) {
+        bytesWritten.addAndGet(bytes);
+        writesCompleted.addAndGet(writes);
+        BluetoothMetrics.getInstance().onWritten(bytes, writes);
+    }
+
+    void onWriteError(int writes) {
+        writeErrors.addAndGet(writes);
+        BluetoothMetrics.getInstance().onWriteError(writes);
+    }
+
+    public String getMac() {
+        return mac;
+    }
+
+    /**
+     * 打包后的MAC地址，抓包时每段数据都要用到，只转换一次
+     */
+    long getMacValue() {
+        return macValue;
+    }
+
+    public long getConnectedTime() {
+        return connectedTime;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getFramesRead() {
+        return framesRead.get();
+    }
+
+    public long getReadErrors() {
+        return readErrors.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getWritesCompleted() {
+        return writesCompleted.get();
+    }
+
+    public long getWriteErrors() {
+        return writeErrors.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionStats { " +
+                "connectedTime=" + connectedTime +
+                ", bytesRead=" + bytesRead +
+                ", framesRead=" + framesRead +
+                ", readErrors=" + readErrors +
+                ", bytesWritten=" + bytesWritten +
+                ", writesCompleted=" + writesCompleted +
+                ", writeErrors=" + writeErrors +
+                '}';
+    }
+}
@@ -0,0 +1,178 @@
+package com.clj.fastbluetooth.core;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.os.SystemClock;
+
+import com.clj.fastbluetooth.data.ConnectOptions;
+import com.clj.fastbluetooth.data.TraceEvent;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+
+/**
+ * 按{@link ConnectOptions}建立socket连接
+ * 同一个设备同时只能有一个RFCOMM连接在建立，多种方式依次尝试而不是同时进行；
+ * 上次成功的方式排在最前，失败后指数退避，总时限到期时关闭socket中止阻塞中的connect()。
+ */
+class Connector {
+
+    static class Result {
+        final BluetoothSocket socket;
+        final String strategy;
+        final int attempts;
+
+        Result(BluetoothSocket socket, String strategy, int attempts) {
+            this.socket = socket;
+            this.strategy = strategy;
+            this.attempts = attempts;
+        }
+    }
+
+    private static final Random sRandom = new Random();
+
+    private final ConnectOptions mOptions;
+
+    Connector(ConnectOptions options) {
+        mOptions = options;
+    }
+
+    /**
+     * 阻塞到连接成功、全部失败或超时，在连接任务中调用
+     *
+     * @param preferred 上次成功的方式名称，可以为null
+     * @throws SocketTimeoutException 超过总时限
+     * @throws IOException            全部方式都失败时抛出最后一次的异常
+     */
+    Result connect(BluetoothDevice device, String preferred) throws IOException {
+        List<ConnectStrategy> strategies = order(mOptions.getStrategies(), preferred);
+        long deadline = SystemClock.elapsedRealtime() + mOptions.getDeadlineMillis();
+        long backoff = mOptions.getInitialBackoffMillis();
+        IOException lastError = null;
+        int attempts = 0;
+
+        for (int round = 0; round < mOptions.getMaxRounds(); round++) {
+            for (ConnectStrategy strategy : strategies) {
+                if (attempts > 0) {
+                    sleep(Math.min(jittered(backoff), deadline - SystemClock.elapsedRealtime()));
+                    backoff = Math.min(backoff << 1, mOptions.getMaxBackoffMillis());
+                }
+                long remaining = deadline - SystemClock.elapsedRealtime();
+                if (remaining <= 0) {
+                    throw timeout(lastError);
+                }
+                attempts++;
+
+                BluetoothTracer tracer = BluetoothTracer.getInstance();
+                BluetoothSocket socket;
+                try {
+                    socket = strategy.createSocket(device);
+                } catch (Exception e) {
+                    BluetoothLog.e("create socket catch(%s): %s", strategy.getName(), e.getMessage());
+                    lastError = new IOException(strategy.getName() + ": " + e.getMessage());
+                    continue;
+                }
+                if (socket == null) {
+                    lastError = new IOException(strategy.getName() + ": socket is null");
+                    continue;
+                }
+
+                tracer.record(TraceEvent.SOCKET_CREATED, device.getAddress(), strategy.getName());
+
+                Future<?> abortTask = BluetoothExecutor.getInstance().schedule(new CloseTask(socket), remaining);
+                tracer.record(TraceEvent.CONNECT_ATTEMPT_STARTED, device.getAddress(), strategy.getName());
+                try {
+                    socket.connect();
+                } catch (IOException e) {
+                    boolean aborted = !abortTask.cancel(false);
+                    tracer.record(TraceEvent.CONNECT_ATTEMPT_FAILED, device.getAddress(), strategy.getName());
+                    closeQuietly(socket);
+                    BluetoothLog.e("socket connect catch(%s, 第%d次): %s", strategy.getName(), attempts, e.getMessage());
+                    if (aborted) {
+                        throw timeout(e);
+                    }
+                    lastError = e;
+                    continue;
+                }
+                // 到期关闭socket与connect()成功返回同时发生时，以关闭为准
+                if (!abortTask.cancel(false)) {
+                    closeQuietly(socket);
+                    throw timeout(lastError);
+                }
+                return new Result(socket, strategy.getName(), attempts);
+            }
+        }
+        throw lastError != null ? lastError : new IOException("no connect strategy");
+    }
+
+    private static List<ConnectStrategy> order(List<ConnectStrategy> strategies, String preferred) {
+        List<ConnectStrategy> ordered = new ArrayList<>(strategies);
+        if (preferred == null) {
+            return ordered;
+        }
+        for (int i = 0; i < ordered.size(); i++) {
+            if (preferred.equals(ordered.get(i).getName())) {
+                ordered.add(0, ordered.remove(i));
+                break;
+            }
+        }
+        return ordered;
+    }
+
+    private long jittered(long backoff) {
+        float jitter = mOptions.getJitter();
+        double factor;
+        synchronized (sRandom) {
+            factor = 1 - jitter * sRandom.nextDouble();
+        }
+        return (long) (backoff * factor);
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("connect interrupted");
+        }
+    }
+
+    private static SocketTimeoutException timeout(IOException cause) {
+        SocketTimeoutException e = new SocketTimeoutException("connect deadline exceeded");
+        if (cause != null) {
+            e.initCause(cause);
+        }
+        return e;
+    }
+
+    private static void closeQuietly(BluetoothSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            BluetoothLog.e("socket close catch: %s", e.getMessage());
+        }
+    }
+
+    private static class CloseTask implements Runnable {
+        private final BluetoothSocket mSocket;
+
+        CloseTask(BluetoothSocket socket) {
+            mSocket = socket;
+        }
+
+        @Override
+        public void run() {
+            BluetoothLog.w("connect deadline exceeded, close socket");
+            closeQuietly(mSocket);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个设备的连接统计，应用运行期间有效，连接任务实时更新，可以随时读取
+ */
+public class DeviceConnectStats {
+
+    private final String mac;
+    private final AtomicInteger successes = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger timeouts = new AtomicInteger();
+    private final AtomicInteger refused = new AtomicInteger();
+    private final AtomicInteger serviceNotFound = new AtomicInteger();
+    private final AtomicInteger bondFailures = new AtomicInteger();
+    // 连续因配对问题失败的次数，成功或其他原因的失败都会清零
+    private final AtomicInteger consecutiveBondFailures = new AtomicInteger();
+    private final AtomicInteger bondRemovals = new AtomicInteger();
+    private volatile int lastFailureCode;
+
+    DeviceConnectStats(String mac) {
+        this.mac = mac;
+    }
+
+    void onSuccess() {
+        successes.incrementAndGet();
+        consecutiveFailures.set(0);
+        consecutiveBondFailures.set(0);
+    }
+
+    void onFailure(int code) {
+        failures.incrementAndGet();
+        lastFailureCode = code;
+        switch (code) {
+            case BluetoothException.ERROR_CONNECT_TIMEOUT:
+                timeouts.incrementAndGet();
+                break;
+            case BluetoothException.ERROR_CONNECT_REFUSED:
+                refused.incrementAndGet();
+                break;
+            case BluetoothException.ERROR_SERVICE_NOT_FOUND:
+                serviceNotFound.incrementAndGet();
+                break;
+            case BluetoothException.ERROR_BOND:
+                bondFailures.incrementAndGet();
+                break;
+            default:
+                break;
+        }
+        consecutiveFailures.incrementAndGet();
+        if (code == BluetoothException.ERROR_BOND) {
+            consecutiveBondFailures.incrementAndGet();
+        } else {
+            consecutiveBondFailures.set(0);
+        }
+    }
+
+    void onBondRemoved() {
+        bondRemovals.incrementAndGet();
+        consecutiveFailures.set(0);
+        consecutiveBondFailures.set(0);
+    }
+
+    public String getMac() {
+        return mac;
+    }
+
+    public int getSuccesses() {
+        return successes.get();
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public int getTimeouts() {
+        return timeouts.get();
+    }
+
+    public int getRefused() {
+        return refused.get();
+    }
+
+    public int getServiceNotFound() {
+        return serviceNotFound.get();
+    }
+
+    public int getBondFailures() {
+        return bondFailures.get();
+    }
+
+    /**
+     * 包括最近一次在内，连续因配对问题失败的次数
+     */
+    public int getConsecutiveBondFailures() {
+        return consecutiveBondFailures.get();
+    }
+
+    public int getBondRemovals() {
+        return bondRemovals.get();
+    }
+
+    /**
+     * 最近一次失败的错误码，没有失败过时为0
+     */
+    public int getLastFailureCode() {
+        return lastFailureCode;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceConnectStats { " +
+                "mac=" + mac +
+                ", successes=" + successes +
+                ", failures=" + failures +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", timeouts=" + timeouts +
+                ", refused=" + refused +
+                ", serviceNotFound=" + serviceNotFound +
+                ", bondFailures=" + bondFailures +
+                ", consecutiveBondFailures=" + consecutiveBondFailures +
+                ", bondRemovals=" + bondRemovals +
+                ", lastFailureCode=" + lastFailureCode +
+                '}';
+    }
+}
@@ -0,0 +1,390 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothTransferCallback;
+import com.clj.fastbluetooth.callback.BluetoothWriteCallback;
+import com.clj.fastbluetooth.data.TransferOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 发送文件
+ * 按块从FileChannel读取并交给连接的{@link WriteQueue}，整个文件不会读入内存；
+ * 同时在写队列中的块数不超过窗口大小，一块写出后才读取下一块，发送速度由链路决定，也可以另外限速。
+ * 读取文件在io执行器中进行，每次补满窗口后即返回，传输过程中不占用线程；块缓冲区循环使用。
+ * 失败或取消时等写队列中的块写出或失败后，回调已写出到的文件位置，该位置之前的数据都已写出、之后的都没有，
+ * 重连后用{@link TransferOptions#setOffset(long)}从该位置续传。
+ */
+public class FileTransfer implements Runnable {
+
+    private final File mFile;
+    private final WriteQueue mWriteQueue;
+    private final Executor mExecutor;
+    private final BluetoothTransferCallback mCallback;
+    private final int mChunkSize;
+    private final int mWindow;
+    private final long mMaxBytesPerSecond;
+    private final long mProgressIntervalNanos;
+    private final long mStartOffset;
+    private final ArrayDeque<byte[]> mFreeChunks = new ArrayDeque<>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+
+    private RandomAccessFile mRandomAccessFile;
+    private FileChannel mChannel;
+    private long mEndOffset;
+    // 下一块在文件中的位置
+    private long mNextOffset;
+    // 已写出到的位置，写队列按顺序写出，所以写出的部分总是连续的
+    private long mWrittenOffset;
+    private int mInFlight;
+    private long mStartNanos;
+    private long mLastProgressNanos;
+    private long mLastProgressOffset;
+    // 限速时已经安排了定时补充
+    private boolean mPacing;
+    // 失败或取消的原因，不为null时不再读取新块，等写队列中的块都有结果后回调
+    private BluetoothException mError;
+    // 有块写出失败，之后的块即使写出也不再计入位置
+    private boolean mWriteFailed;
+    private boolean mFinished;
+
+    private final BluetoothWriteCallback mChunkCallback = new BluetoothWriteCallback() {
+        @Override
+        public void onWriteError(BluetoothException e) {
+            onChunkFailed(e);
+        }
+
+        @Override
+        public void onWriteSuccess(byte[] data) {
+            onChunkWritten(data);
+        }
+    };
+
+    private final Runnable mScheduleTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (FileTransfer.this) {
+                mPacing = false;
+            }
+            schedule();
+        }
+    };
+
+    FileTransfer(File file, WriteQueue writeQueue, Executor executor, TransferOptions options,
+                 BluetoothTransferCallback callback) {
+        if (file == null || writeQueue == null || executor == null || callback == null) {
+            throw new IllegalArgumentException("file, writeQueue, executor and callback can not be Null!");
+        }
+        if (options == null) {
+            options = new TransferOptions();
+        }
+        mFile = file;
+        mWriteQueue = writeQueue;
+        mExecutor = executor;
+        mCallback = callback;
+        mChunkSize = options.getChunkSize();
+        mWindow = options.getWindow();
+        mMaxBytesPerSecond = options.getMaxBytesPerSecond();
+        mProgressIntervalNanos = options.getProgressIntervalMillis() * 1000000L;
+        mStartOffset = options.getOffset();
+        mEndOffset = options.getLength() < 0 ? -1 : mStartOffset + options.getLength();
+    }
+
+    /**
+     * 打开文件并开始发送，文件打不开或offset超出文件长度时回调onTransferError
+     */
+    void start() {
+        long size;
+        synchronized (this) {
+            try {
+                mRandomAccessFile = new RandomAccessFile(mFile, "r");
+                mChannel = mRandomAccessFile.getChannel();
+                size = mChannel.size();
+            } catch (IOException e) {
+                BluetoothLog.e("FileTransfer open catch: %s", e.getMessage());
+                size = -1;
+            }
+            if (size >= 0) {
+                mEndOffset = mEndOffset < 0 ? size : Math.min(mEndOffset, size);
+            }
+            mNextOffset = mStartOffset;
+            mWrittenOffset = mStartOffset;
+            mStartNanos = System.nanoTime();
+            mLastProgressNanos = mStartNanos;
+            mLastProgressOffset = mStartOffset;
+        }
+        if (size < 0) {
+            fail(new BluetoothException(BluetoothException.ERROR_IO, "can not open " + mFile));
+        } else if (mStartOffset > size) {
+            fail(new BluetoothException(BluetoothException.ERROR_IO, "offset " + mStartOffset + " beyond file size " + size));
+        } else if (mStartOffset == mEndOffset) {
+            complete();
+        } else {
+            schedule();
+        }
+    }
+
+    /**
+     * 取消传输，回调onTransferError(ERROR_CANCELLED)
+     * 已经进入写队列的块仍会写出，等它们写出或失败后才回调，回调的位置包含已写出的块，从该位置续传不会重复发送
+     */
+    public void cancel() {
+        fail(new BluetoothException(BluetoothException.ERROR_CANCELLED, null));
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * 已写出到的文件位置，传输过程中写队列里可能还有之后的块，续传以onTransferError回调的位置为准
+     */
+    public synchronized long getPosition() {
+        return mWrittenOffset;
+    }
+
+    public synchronized long getEndOffset() {
+        return mEndOffset;
+    }
+
+    public synchronized boolean isFinished() {
+        return mFinished;
+    }
+
+    private void schedule() {
+        if (mScheduled.compareAndSet(false, true)) {
+            try {
+                mExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                mScheduled.set(false);
+                fail(new BluetoothException(BluetoothException.ERROR_IO, "executor rejected"));
+            }
+        }
+    }
+
+    /**
+     * 补满窗口
+     * 同一时刻只在一个线程上运行，保证各块按文件顺序进入写队列
+     */
+    @Override
+    public void run() {
+        try {
+            fill();
+        } finally {
+            mScheduled.set(false);
+        }
+        // 运行期间写出的块调用schedule()会被忽略，这里补上
+        if (hasWork()) {
+            schedule();
+        }
+    }
+
+    private void fill() {
+        while (true) {
+            byte[] chunk;
+            long position;
+            synchronized (this) {
+                if (!hasWork()) {
+                    return;
+                }
+                if (mMaxBytesPerSecond > 0) {
+                    long due = mStartNanos + (mNextOffset - mStartOffset) * 1000000000L / mMaxBytesPerSecond;
+                    long delayNanos = due - System.nanoTime();
+                    if (delayNanos > 0) {
+                        mPacing = true;
+                        BluetoothExecutor.getInstance().schedule(mScheduleTask, (delayNanos + 999999) / 1000000);
+                        return;
+                    }
+                }
+                position = mNextOffset;
+                int length = (int) Math.min(mChunkSize, mEndOffset - position);
+                chunk = length == mChunkSize ? mFreeChunks.poll() : null;
+                if (chunk == null) {
+                    chunk = new byte[length];
+                }
+                mNextOffset += length;
+                mInFlight++;
+            }
+
+            try {
+                readFully(chunk, position);
+            } catch (IOException e) {
+                BluetoothLog.e("FileTransfer read catch: %s", e.getMessage());
+                synchronized (this) {
+                    // 这一块没有进入写队列
+                    mInFlight--;
+                }
+                fail(new BluetoothException(BluetoothException.ERROR_IO, e.getMessage()));
+                return;
+            }
+            // 失败时mChunkCallback已收到onWriteError
+            if (!mWriteQueue.write(chunk, mChunkCallback)) {
+                return;
+            }
+        }
+    }
+
+    private synchronized boolean hasWork() {
+        return !mFinished && mError == null && !mPacing && mInFlight < mWindow && mNextOffset < mEndOffset;
+    }
+
+    private void readFully(byte[] chunk, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("file truncated at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    private void onChunkWritten(byte[] chunk) {
+        boolean done;
+        boolean progress = false;
+        long position;
+        long bytesPerSecond = 0;
+        BluetoothException error;
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mInFlight--;
+            if (!mWriteFailed) {
+                mWrittenOffset += chunk.length;
+            }
+            position = mWrittenOffset;
+            error = mError;
+            if (error != null) {
+                // 已经失败或取消，等写队列中的块都有结果
+                if (!finishIfIdle()) {
+                    return;
+                }
+            } else if (chunk.length == mChunkSize) {
+                mFreeChunks.offer(chunk);
+            }
+            done = error == null && position >= mEndOffset;
+            long now = System.nanoTime();
+            if (error == null && !done && now - mLastProgressNanos >= mProgressIntervalNanos) {
+                progress = true;
+                bytesPerSecond = rate(position - mLastProgressOffset, now - mLastProgressNanos);
+                mLastProgressNanos = now;
+                mLastProgressOffset = position;
+            }
+        }
+        if (error != null) {
+            mCallback.onTransferError(error, position);
+            return;
+        }
+        if (done) {
+            complete();
+            return;
+        }
+        if (progress) {
+            mCallback.onTransferProgress(position, mEndOffset, bytesPerSecond);
+        }
+        schedule();
+    }
+
+    private void complete() {
+        long bytes;
+        long bytesPerSecond;
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+            bytes = mWrittenOffset - mStartOffset;
+            bytesPerSecond = rate(bytes, System.nanoTime() - mStartNanos);
+            closeFile();
+        }
+        mCallback.onTransferProgress(mEndOffset, mEndOffset, bytesPerSecond);
+        mCallback.onTransferComplete(bytes, bytesPerSecond);
+    }
+
+    /**
+     * 写队列中还有块时只记下原因，等最后一块写出或失败后再回调
+     */
+    private void fail(BluetoothException e) {
+        long position;
+        synchronized (this) {
+            if (mFinished || mError != null) {
+                return;
+            }
+            mError = e;
+            if (!finishIfIdle()) {
+                return;
+            }
+            position = mWrittenOffset;
+        }
+        mCallback.onTransferError(e, position);
+    }
+
+    private void onChunkFailed(BluetoothException e) {
+        long position;
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mInFlight--;
+            mWriteFailed = true;
+            if (mError == null) {
+                mError = e;
+            }
+            if (!finishIfIdle()) {
+                return;
+            }
+            e = mError;
+            position = mWrittenOffset;
+        }
+        mCallback.onTransferError(e, position);
+    }
+
+    /**
+     * 持有锁时调用
+     *
+     * @return 写队列中已经没有本次传输的块，传输结束
+     */
+    private boolean finishIfIdle() {
+        if (mInFlight > 0) {
+            return false;
+        }
+        mFinished = true;
+        closeFile();
+        return true;
+    }
+
+    private void closeFile() {
+        mFreeChunks.clear();
+        if (mRandomAccessFile != null) {
+            try {
+                mRandomAccessFile.close();
+            } catch (IOException e) {
+                BluetoothLog.e("FileTransfer close catch: %s", e.getMessage());
+            }
+        }
+    }
+
+    private static long rate(long bytes, long nanos) {
+        return nanos <= 0 ? 0 : bytes * 1000000000L / nanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FileTransfer { " +
+                "file=" + mFile +
+                ", position=" + mWrittenOffset +
+                ", end=" + mEndOffset +
+                ", inFlight=" + mInFlight +
+                ", finished=" + mFinished +
+                '}';
+    }
+}
@@ -0,0 +1,268 @@
+package com.clj.fastbluetooth.core;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+
+import com.clj.fastbluetooth.callback.BluetoothConnectCallback;
+import com.clj.fastbluetooth.callback.BluetoothHeartbeatCallback;
+import com.clj.fastbluetooth.callback.BluetoothResponseCallback;
+import com.clj.fastbluetooth.data.HeartbeatOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import java.util.concurrent.Future;
+
+/**
+ * 连接的心跳监控
+ * 按间隔通过{@link BluetoothConnection#request}发送心跳帧，连续超时达到上限时认为socket已半开，
+ * 主动关闭旧连接并按退避时间重连；重连成功后把读回调、帧解码器和可写状态回调转移到新连接上，继续监控。
+ * 写缓冲区已满等发送失败与超时一样计为一次丢失，只有连接断开和IO错误立即认为链路断开。
+ * 回调在后台线程中执行，执行时不持有锁。
+ */
+public class HeartbeatSupervisor {
+
+    private final HeartbeatOptions mOptions;
+    private final BluetoothHeartbeatCallback mCallback;
+    private final RttStats mRttStats;
+    private final BluetoothDevice mDevice;
+
+    private BluetoothConnection mConnection;
+    private Future<?> mScheduledTask;
+    private int mMissed;
+    private int mReconnectAttempts;
+    private long mReconnectDelay;
+    private boolean mStopped;
+    // 链路断开到重连成功之间为true，期间旧连接的心跳结果不再处理
+    private boolean mLinkLost;
+
+    HeartbeatSupervisor(BluetoothConnection connection, HeartbeatOptions options,
+                        BluetoothHeartbeatCallback callback) {
+        mConnection = connection;
+        mDevice = connection.getDevice();
+        mOptions = options;
+        mCallback = callback;
+        mRttStats = new RttStats(options.getRttWindowSize());
+    }
+
+    synchronized void start() {
+        schedule(mTickTask, mOptions.getIntervalMillis());
+    }
+
+    /**
+     * 停止心跳和自动重连，不会断开当前连接
+     */
+    public synchronized void stop() {
+        mStopped = true;
+        if (mScheduledTask != null) {
+            mScheduledTask.cancel(false);
+            mScheduledTask = null;
+        }
+    }
+
+    /**
+     * 只在仍然监控该连接时停止，重连前的旧连接断开时不能停掉新连接的心跳
+     */
+    synchronized void stopIfMonitoring(BluetoothConnection connection) {
+        if (connection == mConnection) {
+            stop();
+        }
+    }
+
+    public synchronized boolean isStopped() {
+        return mStopped;
+    }
+
+    /**
+     * 当前监控的连接，重连后会变为新的连接
+     */
+    public synchronized BluetoothConnection getConnection() {
+        return mConnection;
+    }
+
+    public RttStats getRttStats() {
+        return mRttStats;
+    }
+
+    private final Runnable mTickTask = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    private final Runnable mReconnectTask = new Runnable() {
+        @Override
+        public void run() {
+            reconnect();
+        }
+    };
+
+    private void tick() {
+        final BluetoothConnection connection;
+        synchronized (this) {
+            if (mStopped) {
+                return;
+            }
+            connection = mConnection;
+        }
+        if (!connection.isConnected()) {
+            synchronized (this) {
+                if (mStopped || connection != mConnection || !markLinkLost()) {
+                    return;
+                }
+            }
+            onLinkLost(connection, new BluetoothException(BluetoothException.ERROR_DISCONNECTION, null));
+            return;
+        }
+        final long sendTime = SystemClock.elapsedRealtime();
+        connection.request(mOptions.getPayload(), mOptions.getMatcher(), mOptions.getTimeoutMillis(),
+                new BluetoothResponseCallback() {
+                    @Override
+                    public void onResponseError(BluetoothException e) {
+                        onHeartbeatFail(connection, e);
+                    }
+
+                    @Override
+                    public void onResponse(byte[] data) {
+                        onHeartbeatResponse(connection, SystemClock.elapsedRealtime() - sendTime);
+                    }
+                });
+    }
+
+    private synchronized void onHeartbeatResponse(BluetoothConnection connection, long rtt) {
+        if (mStopped || mLinkLost || connection != mConnection) {
+            return;
+        }
+        mMissed = 0;
+        mRttStats.addSample(rtt);
+        schedule(mTickTask, mOptions.getIntervalMillis());
+    }
+
+    private void onHeartbeatFail(BluetoothConnection connection, BluetoothException e) {
+        synchronized (this) {
+            if (mStopped || mLinkLost || connection != mConnection) {
+                return;
+            }
+            int code = e.getCode();
+            if (code != BluetoothException.ERROR_DISCONNECTION && code != BluetoothException.ERROR_IO) {
+                // 超时或者写缓冲区已满等没能发出，都算一次丢失，连续达到上限才认为链路断开
+                if (code == BluetoothException.ERROR_TIMEOUT) {
+                    mRttStats.onMissed();
+                }
+                mMissed++;
+                BluetoothLog.w("heartbeat of %s missed %d times: %s", mDevice.getAddress(), mMissed, e);
+                if (mMissed < mOptions.getMaxMissed()) {
+                    schedule(mTickTask, mOptions.getIntervalMillis());
+                    return;
+                }
+            }
+            if (!markLinkLost()) {
+                return;
+            }
+        }
+        onLinkLost(connection, e);
+    }
+
+    /**
+     * 需要持有锁，返回true时由调用方在释放锁之后调用{@link #onLinkLost}
+     */
+    private boolean markLinkLost() {
+        if (mLinkLost) {
+            return false;
+        }
+        mLinkLost = true;
+        if (!mOptions.isAutoReconnect()) {
+            mStopped = true;
+        } else {
+            mReconnectAttempts = 0;
+            mReconnectDelay = mOptions.getInitialReconnectDelayMillis();
+        }
+        return true;
+    }
+
+    /**
+     * 不持有锁调用，关闭旧连接会回调其上未完成的请求，回调中可能再次进入本对象
+     */
+    private void onLinkLost(BluetoothConnection connection, BluetoothException e) {
+        BluetoothLog.w("link of %s lost: %s", mDevice.getAddress(), e);
+        // 半开的socket不会自己报错，主动关闭；心跳保持运行以便重连
+        connection.close();
+        mCallback.onLinkLost(mDevice, e);
+        synchronized (this) {
+            if (!mStopped) {
+                schedule(mReconnectTask, 0);
+            }
+        }
+    }
+
+    private void reconnect() {
+        synchronized (this) {
+            if (mStopped) {
+                return;
+            }
+            mReconnectAttempts++;
+        }
+        BluetoothController.getInstance().connect(mDevice, new BluetoothConnectCallback() {
+            @Override
+            public void onStartConnect(BluetoothDevice device) {
+            }
+
+            @Override
+            public void onConnectFail(BluetoothDevice device, BluetoothException exception) {
+                onReconnectFail(exception);
+            }
+
+            @Override
+            public void onConnectSuccess(BluetoothConnection connection) {
+                onReconnected(connection);
+            }
+
+            @Override
+            public void onDisConnected(BluetoothDevice device) {
+            }
+        });
+    }
+
+    private void onReconnectFail(BluetoothException e) {
+        synchronized (this) {
+            if (mStopped) {
+                return;
+            }
+            int maxAttempts = mOptions.getMaxReconnectAttempts();
+            if (maxAttempts <= 0 || mReconnectAttempts < maxAttempts) {
+                schedule(mReconnectTask, mReconnectDelay);
+                mReconnectDelay = Math.min(mReconnectDelay << 1, mOptions.getMaxReconnectDelayMillis());
+                return;
+            }
+            mStopped = true;
+        }
+        BluetoothLog.e("reconnect %s failed after %d attempts", mDevice.getAddress(), mReconnectAttempts);
+        mCallback.onReconnectFail(mDevice, e);
+    }
+
+    private void onReconnected(BluetoothConnection connection) {
+        BluetoothConnection previous;
+        synchronized (this) {
+            if (mStopped) {
+                return;
+            }
+            previous = mConnection;
+            mConnection = connection;
+            mLinkLost = false;
+            mMissed = 0;
+        }
+        connection.restoreFrom(previous);
+        connection.attachHeartbeat(this);
+        previous.detachHeartbeat(this);
+        mCallback.onReconnected(connection);
+        synchronized (this) {
+            if (!mStopped && mConnection == connection) {
+                schedule(mTickTask, mOptions.getIntervalMillis());
+            }
+        }
+    }
+
+    private void schedule(Runnable task, long delayMillis) {
+        mScheduledTask = BluetoothExecutor.getInstance().schedule(task, delayMillis);
+    }
+}
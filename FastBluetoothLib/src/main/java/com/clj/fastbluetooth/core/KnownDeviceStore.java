@@ -0,0 +1,146 @@
+package com.clj.fastbluetooth.core;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.clj.fastbluetooth.data.KnownDevice;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接成功过的设备列表，保存在SharedPreferences中，应用重启后仍然可用
+ * 每个设备一条记录，key为大写MAC，value为JSON；超过上限时淘汰最久未连接的设备。
+ */
+public class KnownDeviceStore {
+
+    public static final int DEFAULT_MAX_DEVICES = 16;
+
+    private static final String PREFS_NAME = "fastbluetooth_known_devices";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_LAST_CONNECT_TIME = "lastConnectTime";
+    private static final String KEY_CONNECT_LATENCY = "connectLatency";
+    private static final String KEY_SOCKET_METHOD = "socketMethod";
+    private static final String KEY_CONNECT_COUNT = "connectCount";
+
+    private static final Comparator<KnownDevice> RECENT_FIRST = new Comparator<KnownDevice>() {
+        @Override
+        public int compare(KnownDevice o1, KnownDevice o2) {
+            return o1.getLastConnectTime() < o2.getLastConnectTime() ? 1
+                    : (o1.getLastConnectTime() == o2.getLastConnectTime() ? 0 : -1);
+        }
+    };
+
+    private final SharedPreferences mPrefs;
+    private final int mMaxDevices;
+    private Map<String, KnownDevice> mDevices;
+
+    public KnownDeviceStore(Context context) {
+        this(context, DEFAULT_MAX_DEVICES);
+    }
+
+    public KnownDeviceStore(Context context, int maxDevices) {
+        mPrefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mMaxDevices = Math.max(1, maxDevices);
+    }
+
+    /**
+     * 记录一次成功的连接
+     */
+    public synchronized void recordConnected(String mac, String name, long connectLatency, String socketMethod) {
+        Map<String, KnownDevice> devices = load();
+        String key = mac.toUpperCase();
+        KnownDevice previous = devices.get(key);
+        KnownDevice device = new KnownDevice(key, name != null ? name : (previous != null ? previous.getName() : null),
+                System.currentTimeMillis(), connectLatency, socketMethod,
+                previous != null ? previous.getConnectCount() + 1 : 1);
+        devices.put(key, device);
+
+        SharedPreferences.Editor editor = mPrefs.edit();
+        try {
+            editor.putString(key, toJson(device));
+        } catch (JSONException e) {
+            BluetoothLog.e("KnownDeviceStore save catch: %s", e.getMessage());
+            return;
+        }
+        while (devices.size() > mMaxDevices) {
+            KnownDevice oldest = Collections.max(devices.values(), RECENT_FIRST);
+            devices.remove(oldest.getMac());
+            editor.remove(oldest.getMac());
+        }
+        editor.apply();
+    }
+
+    public synchronized KnownDevice get(String mac) {
+        return mac == null ? null : load().get(mac.toUpperCase());
+    }
+
+    /**
+     * 按最近连接时间排序，最近的在前
+     */
+    public synchronized List<KnownDevice> getAll() {
+        List<KnownDevice> devices = new ArrayList<>(load().values());
+        Collections.sort(devices, RECENT_FIRST);
+        return devices;
+    }
+
+    public synchronized void remove(String mac) {
+        if (mac == null) {
+            return;
+        }
+        String key = mac.toUpperCase();
+        load().remove(key);
+        mPrefs.edit().remove(key).apply();
+    }
+
+    public synchronized void clear() {
+        load().clear();
+        mPrefs.edit().clear().apply();
+    }
+
+    private Map<String, KnownDevice> load() {
+        if (mDevices != null) {
+            return mDevices;
+        }
+        mDevices = new HashMap<>();
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            if (!(entry.getValue() instanceof String)) {
+                continue;
+            }
+            try {
+                mDevices.put(entry.getKey(), fromJson(entry.getKey(), (String) entry.getValue()));
+            } catch (JSONException e) {
+                BluetoothLog.e("KnownDeviceStore load catch: %s", e.getMessage());
+            }
+        }
+        return mDevices;
+    }
+
+    private static String toJson(KnownDevice device) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put(KEY_NAME, device.getName());
+        json.put(KEY_LAST_CONNECT_TIME, device.getLastConnectTime());
+        json.put(KEY_CONNECT_LATENCY, device.getConnectLatency());
+        json.put(KEY_SOCKET_METHOD, device.getSocketMethod());
+        json.put(KEY_CONNECT_COUNT, device.getConnectCount());
+        return json.toString();
+    }
+
+    private static KnownDevice fromJson(String mac, String value) throws JSONException {
+        JSONObject json = new JSONObject(value);
+        return new KnownDevice(mac,
+                json.optString(KEY_NAME, null),
+                json.optLong(KEY_LAST_CONNECT_TIME, 0),
+                json.optLong(KEY_CONNECT_LATENCY, 0),
+                json.optString(KEY_SOCKET_METHOD, null),
+                json.optInt(KEY_CONNECT_COUNT, 0));
+    }
+}
@@ -0,0 +1,375 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothReadCallback;
+import com.clj.fastbluetooth.codec.CorruptedFrameException;
+import com.clj.fastbluetooth.codec.Frame;
+import com.clj.fastbluetooth.codec.FrameDecoder;
+import com.clj.fastbluetooth.exception.BluetoothException;
+import com.clj.fastbluetooth.util.ByteRingBuffer;
+import com.clj.fastbluetooth.util.MacUtils;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 读任务
+ * 运行在{@link BluetoothExecutor}的读线程池中，直接阻塞在socket的InputStream上，数据到达即回调，链路空闲时不占用CPU。
+ * 一次阻塞读返回后，会把输入流中已经到达的数据一并读入{@link ByteRingBuffer}，
+ * 连续到达的多段数据在缓冲区中累积，不会互相覆盖。
+ * 设置了{@link FrameDecoder}时只回调完整的帧，否则按到达的数据块回调。
+ * 设置了{@link RequestTracker}时，每一帧先交给未完成的请求匹配，匹配不上的才回调。
+ * 设置了{@link ChannelReceiver}时，数据直接写入它的通道，不经过解码器和回调，直到它结束。
+ * 任务的生命周期与输入流一致：{@link #setReadCallback(BluetoothReadCallback)}传null只是不再回调，数据照常读取后丢弃；
+ * {@link #pause()}之后不再从输入流读取，线程等待{@link #resume()}；
+ * 调用{@link #close()}或对端断开才会结束，占用的线程随即归还线程池。
+ */
+public class ReadLoop implements Runnable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream mInputStream;
+    private final ByteRingBuffer mReceiveBuffer;
+    private final Frame mFrame = new Frame();
+    // 上一次处理后留在缓冲区中、已经统计过的字节数
+    private int mCountedBytes;
+    private volatile BluetoothReadCallback mReadCallback;
+    private volatile FrameDecoder mFrameDecoder;
+    private FrameDecoder mActiveDecoder;
+    private volatile RequestTracker mRequestTracker;
+    private final AtomicReference<ChannelReceiver> mChannelReceiver = new AtomicReference<>();
+    private ConnectionStats mStats;
+    private Runnable mErrorListener;
+    private volatile boolean mRunning;
+    private volatile boolean mPaused;
+    private final Object mPauseLock = new Object();
+    // 暂停时最后一次读到、还没有处理的数据留在缓冲区中，恢复后先处理
+    private boolean mHeld;
+
+    public ReadLoop(InputStream inputStream, BluetoothReadCallback callback) {
+        this(inputStream, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE, callback);
+    }
+
+    public ReadLoop(InputStream inputStream, int bufferSize, int maxBufferSize, BluetoothReadCallback callback) {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("InputStream can not be Null!");
+        }
+        mInputStream = inputStream;
+        mReceiveBuffer = new ByteRingBuffer(bufferSize, Math.max(bufferSize, maxBufferSize));
+        mReadCallback = callback;
+    }
+
+    public void setReadCallback(BluetoothReadCallback callback) {
+        this.mReadCallback = callback;
+    }
+
+    /**
+     * 设置帧解码器，传null表示按到达的数据块回调
+     * 新的解码器会在读线程下一次处理数据前reset
+     */
+    public void setFrameDecoder(FrameDecoder decoder) {
+        this.mFrameDecoder = decoder;
+    }
+
+    public void setRequestTracker(RequestTracker tracker) {
+        this.mRequestTracker = tracker;
+    }
+
+    /**
+     * 之后收到的数据写入receiver的通道，已经收到但还没有组成完整帧的数据也一并写入
+     * receiver结束后恢复按解码器和回调处理，原来的receiver如果还没有结束会被取消
+     */
+    void setChannelReceiver(ChannelReceiver receiver) {
+        ChannelReceiver previous = mChannelReceiver.getAndSet(receiver);
+        if (previous != null && previous != receiver) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * 需要在start(Executor)之前设置
+     */
+    void setConnectionStats(ConnectionStats stats) {
+        this.mStats = stats;
+    }
+
+    /**
+     * 输入流出错或对端断开时在读线程中回调，需要在start(Executor)之前设置
+     */
+    void setErrorListener(Runnable listener) {
+        this.mErrorListener = listener;
+    }
+
+    /**
+     * 在指定的执行器中开始读取，执行器需要能为每个读任务提供独立的线程
+     */
+    public void start(Executor executor) {
+        mRunning = true;
+        executor.execute(this);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    public void cancel() {
+        mRunning = false;
+        synchronized (mPauseLock) {
+            mPauseLock.notifyAll();
+        }
+    }
+
+    /**
+     * 暂停从输入流读取，对端的数据留在socket的缓冲区中
+     * 调用时正在阻塞的那次读取不受影响，它读到的数据留到{@link #resume()}之后处理
+     */
+    public void pause() {
+        mPaused = true;
+    }
+
+    public void resume() {
+        synchronized (mPauseLock) {
+            mPaused = false;
+            mPauseLock.notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * 结束读任务
+     * 阻塞中的read()无法被interrupt唤醒，关闭输入流使其立即返回
+     */
+    public void close() {
+        cancel();
+        ChannelReceiver receiver = mChannelReceiver.getAndSet(null);
+        if (receiver != null) {
+            receiver.onReadError(BluetoothException.ERROR_DISCONNECTION);
+        }
+        try {
+            mInputStream.close();
+        } catch (IOException e) {
+            BluetoothLog.e("ReadLoop close catch: %s", e.getMessage());
+        }
+    }
+
+    @Override
+    public void run() {
+        while (mRunning && awaitResumed()) {
+            try {
+                cycle();
+            } catch (RuntimeException e) {
+                // 错误回调中抛出的异常，数据回调的异常在deliver()中已经处理
+                BluetoothLog.e("read error callback catch: %s", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return 恢复后返回true，等待期间任务结束返回false
+     */
+    private boolean awaitResumed() {
+        if (!mPaused) {
+            return true;
+        }
+        synchronized (mPauseLock) {
+            while (mPaused && mRunning) {
+                try {
+                    mPauseLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                }
+            }
+        }
+        return mRunning;
+    }
+
+    private void cycle() {
+        if (mHeld) {
+            mHeld = false;
+        } else if (!readInput()) {
+            return;
+        } else if (mPaused) {
+            mHeld = true;
+            return;
+        }
+        handleInput();
+    }
+
+    /**
+     * 阻塞读取，并统计、记录新到达的数据
+     *
+     * @return 输入流出错或缓冲区溢出时返回false
+     */
+    private boolean readInput() {
+        try {
+            // 阻塞等待第一段数据
+            if (mReceiveBuffer.readFrom(mInputStream) < 0) {
+                // 输入流已结束，对端断开
+                cancel();
+                notifyReadError(BluetoothException.ERROR_DISCONNECTION);
+                return false;
+            }
+            // 已经到达的数据一起读入，减少回调次数
+            while (!mReceiveBuffer.isFull() && mInputStream.available() > 0) {
+                if (mReceiveBuffer.readFrom(mInputStream) < 0) {
+                    break;
+                }
+            }
+        } catch (BufferOverflowException e) {
+            BluetoothLog.e("read buffer overflow, discard %d bytes", mReceiveBuffer.readableBytes());
+            mReceiveBuffer.clear();
+            mCountedBytes = 0;
+            notifyReadError(BluetoothException.ERROR_BUFFER_OVERFLOW);
+            return false;
+        } catch (IOException e) {
+            // 主动close()导致的异常不需要回调
+            if (isRunning()) {
+                cancel();
+                notifyReadError(BluetoothException.ERROR_IO);
+            }
+            return false;
+        }
+
+        int readable = mReceiveBuffer.readableBytes();
+        if (mStats != null) {
+            mStats.onBytesRead(readable - mCountedBytes);
+        }
+        TrafficRecorder recorder = TrafficRecorder.getActive();
+        if (recorder != null) {
+            recorder.record(TrafficRecorder.DIRECTION_RX, mStats != null ? mStats.getMacValue() : MacUtils.INVALID,
+                    mReceiveBuffer.array(), mReceiveBuffer.readerIndex() + mCountedBytes, readable - mCountedBytes);
+        }
+        if (BluetoothLog.isTrafficLoggable()) {
+            BluetoothLog.traffic(mStats != null ? mStats.getMac() : null, "rx", mReceiveBuffer.array(),
+                    mReceiveBuffer.readerIndex() + mCountedBytes, readable - mCountedBytes);
+        }
+        mCountedBytes = readable;
+        return true;
+    }
+
+    private void handleInput() {
+        int readable = mReceiveBuffer.readableBytes();
+        try {
+            if (readable > 0) {
+                int consumed = onDataReadable(mReceiveBuffer.array(), mReceiveBuffer.readerIndex(), readable);
+                mReceiveBuffer.skip(consumed);
+            }
+        } catch (RuntimeException e) {
+            // 解码器或接收器出错时不知道消费到了哪里，丢弃这些数据，不重复回调
+            BluetoothLog.e("read handle catch: %s, discard %d bytes", e.getMessage(), mReceiveBuffer.readableBytes());
+            mReceiveBuffer.clear();
+            mActiveDecoder = null;
+        } finally {
+            mCountedBytes = mReceiveBuffer.readableBytes();
+        }
+    }
+
+    /**
+     * 处理缓冲区中的可读数据，直接读取原数组，不做拷贝
+     *
+     * @return 已消费的字节数，未消费的部分保留到下一次
+     */
+    protected int onDataReadable(byte[] buffer, int offset, int length) {
+        ChannelReceiver receiver = mChannelReceiver.get();
+        if (receiver == null) {
+            return decode(buffer, offset, length);
+        }
+        int consumed = receiver.onData(buffer, offset, length);
+        if (!receiver.isFinished()) {
+            return consumed;
+        }
+        mChannelReceiver.compareAndSet(receiver, null);
+        // 解码器的状态已经失效，下一次使用前reset
+        mActiveDecoder = null;
+        return consumed < length ? consumed + decode(buffer, offset + consumed, length - consumed) : consumed;
+    }
+
+    private int decode(byte[] buffer, int offset, int length) {
+        FrameDecoder decoder = mFrameDecoder;
+        if (decoder != mActiveDecoder) {
+            mActiveDecoder = decoder;
+            if (decoder != null) {
+                decoder.reset();
+            }
+        }
+
+        if (decoder == null) {
+            deliver(buffer, offset, length);
+            return length;
+        }
+
+        int consumed = 0;
+        try {
+            while (consumed < length) {
+                int frameSize = decoder.decode(buffer, offset + consumed, length - consumed, mFrame);
+                if (frameSize <= 0) {
+                    break;
+                }
+                consumed += frameSize;
+                deliver(buffer, mFrame.getOffset(), mFrame.getLength());
+            }
+        } catch (CorruptedFrameException e) {
+            BluetoothLog.e("frame decode catch: %s, discard %d bytes", e.getMessage(), length - consumed);
+            decoder.reset();
+            notifyReadError(BluetoothException.ERROR_FRAME, e.getMessage());
+            return length;
+        }
+        return consumed;
+    }
+
+    /**
+     * 回调中抛出的异常只影响这一帧，之后的帧照常回调，已经回调的帧不会重复
+     */
+    private void deliver(byte[] buffer, int offset, int length) {
+        if (mStats != null) {
+            mStats.onFrameRead();
+        }
+        try {
+            RequestTracker tracker = mRequestTracker;
+            if (tracker != null && tracker.hasPending() && tracker.onFrame(buffer, offset, length)) {
+                return;
+            }
+            BluetoothReadCallback callback = mReadCallback;
+            if (callback != null) {
+                callback.onDataReceive(Arrays.copyOfRange(buffer, offset, offset + length));
+            }
+        } catch (RuntimeException e) {
+            BluetoothLog.e("read callback catch: %s", e.getMessage());
+        }
+    }
+
+    private void notifyReadError(int code) {
+        notifyReadError(code, null);
+    }
+
+    private void notifyReadError(int code, String description) {
+        if (mStats != null) {
+            mStats.onReadError();
+        }
+        RequestTracker tracker = mRequestTracker;
+        if (tracker != null && !isRunning()) {
+            tracker.failAll(code);
+        }
+        ChannelReceiver receiver = mChannelReceiver.get();
+        if (receiver != null && !isRunning()) {
+            mChannelReceiver.compareAndSet(receiver, null);
+            receiver.onReadError(code);
+        }
+        BluetoothReadCallback callback = mReadCallback;
+        if (callback != null) {
+            callback.onReadError(new BluetoothException(code, description));
+        }
+        if (mErrorListener != null && !isRunning()) {
+            mErrorListener.run();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.util.MacUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * 把抓包中收到的数据按原来的分段重新输出，代替socket的输入流交给{@link ReadLoop}，
+ * 用于离线复现现场的数据和对帧解码器做压力测试。
+ * speed为{@link #ORIGINAL_SPEED}时按记录的时间间隔输出，大于1时按倍数加快，{@link #AS_FAST_AS_POSSIBLE}时不等待。
+ * {@link #available()}只返回当前数据段剩余的字节数，读任务看到的分段与现场一致。
+ * 数据读完后返回-1，读任务按对端断开处理。
+ */
+public class ReplayInputStream extends InputStream {
+
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+    public static final double ORIGINAL_SPEED = 1;
+
+    private final CaptureReader mReader;
+    private final long mMac;
+    private final int mDirection;
+    private final double mSpeed;
+    private final byte[] mSingleByte = new byte[1];
+
+    // 第一段数据的记录时间和实际输出时间
+    private boolean mStarted;
+    private long mFirstRecordNanos;
+    private long mReplayStartNanos;
+    private int mRemaining;
+    private int mRecordOffset;
+    private long mReplayedBytes;
+    private boolean mClosed;
+
+    /**
+     * 重放收到的数据
+     *
+     * @param mac 只重放该设备的数据，为null时重放全部
+     */
+    public ReplayInputStream(File capture, String mac, double speed) throws IOException {
+        this(new CaptureReader(capture), mac, TrafficRecorder.DIRECTION_RX, speed);
+    }
+
+    /**
+     * @param direction {@link TrafficRecorder#DIRECTION_RX}或{@link TrafficRecorder#DIRECTION_TX}
+     */
+    public ReplayInputStream(CaptureReader reader, String mac, int direction, double speed) {
+        if (reader == null) {
+            throw new IllegalArgumentException("CaptureReader can not be Null!");
+        }
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("speed must not be negative: " + speed);
+        }
+        mReader = reader;
+        mMac = mac == null ? MacUtils.INVALID : MacUtils.pack(mac);
+        if (mac != null && mMac == MacUtils.INVALID) {
+            throw new IllegalArgumentException("invalid mac: " + mac);
+        }
+        mDirection = direction;
+        mSpeed = speed;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        if (!awaitData()) {
+            return -1;
+        }
+        copy(mSingleByte, 0, 1);
+        return mSingleByte[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!awaitData()) {
+            return -1;
+        }
+        int count = Math.min(len, mRemaining);
+        copy(b, off, count);
+        return count;
+    }
+
+    @Override
+    public synchronized int available() {
+        return mClosed ? 0 : mRemaining;
+    }
+
+    /**
+     * 已经输出的字节数
+     */
+    public synchronized long getReplayedBytes() {
+        return mReplayedBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            // 唤醒等待下一段数据的读线程
+            notifyAll();
+        }
+        mReader.close();
+    }
+
+    private void copy(byte[] b, int off, int count) {
+        mReader.getData(mRecordOffset, b, off, count);
+        mRecordOffset += count;
+        mRemaining -= count;
+        mReplayedBytes += count;
+    }
+
+    /**
+     * 当前数据段读完时移到下一段，需要时等到它按时间应该到达
+     *
+     * @return 已关闭或没有更多数据时返回false
+     */
+    private boolean awaitData() throws IOException {
+        if (mClosed) {
+            return false;
+        }
+        if (mRemaining > 0) {
+            return true;
+        }
+        while (mReader.next()) {
+            if (mReader.getDirection() != mDirection
+                    || (mMac != MacUtils.INVALID && mReader.getMacValue() != mMac)) {
+                continue;
+            }
+            waitUntilDue(mReader.getTimeNanos());
+            if (mClosed) {
+                return false;
+            }
+            mRemaining = mReader.getLength();
+            mRecordOffset = 0;
+            return true;
+        }
+        return false;
+    }
+
+    private void waitUntilDue(long recordNanos) throws IOException {
+        if (!mStarted) {
+            mStarted = true;
+            mFirstRecordNanos = recordNanos;
+            mReplayStartNanos = System.nanoTime();
+            return;
+        }
+        if (mSpeed == AS_FAST_AS_POSSIBLE) {
+            return;
+        }
+        long due = mReplayStartNanos + (long) ((recordNanos - mFirstRecordNanos) / mSpeed);
+        long remaining;
+        while (!mClosed && (remaining = due - System.nanoTime()) > 0) {
+            try {
+                wait(remaining / 1000000, (int) (remaining % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("replay interrupted");
+            }
+        }
+    }
+}
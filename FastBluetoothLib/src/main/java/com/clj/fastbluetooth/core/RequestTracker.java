@@ -0,0 +1,143 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 跟踪一个连接上所有未完成的请求
+ * 请求按发出的顺序排队，读线程每解码出一帧，交给第一个匹配的请求。
+ * 超时不为每个请求单独定时，整个跟踪器只有一个按最早截止时间运行的检查任务，
+ * 请求完成时不需要取消定时任务，{@link BluetoothExecutor}的定时队列不会随请求数增长。
+ * 已完成的请求在匹配、检查超时和注册新请求时顺带移出队列，不做O(n)的查找删除。
+ */
+public class RequestTracker {
+
+    private final Queue<ResponseFuture> mPending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+
+    private final Object mSweepLock = new Object();
+    // 已安排的超时检查的时间，System.nanoTime()
+    private long mSweepDeadline;
+    private boolean mSweepScheduled;
+
+    private final Runnable mSweepTask = new Runnable() {
+        @Override
+        public void run() {
+            sweep();
+        }
+    };
+
+    /**
+     * 开始跟踪一个请求，必须在命令写出之前调用，避免应答先于注册到达
+     */
+    public void register(ResponseFuture future, long timeoutMillis) {
+        // 应答通常按顺序到达，已完成的请求大多在队首
+        ResponseFuture head;
+        while ((head = mPending.peek()) != null && head.isDone()) {
+            mPending.remove(head);
+        }
+        mPendingCount.incrementAndGet();
+        mPending.offer(future);
+        if (timeoutMillis > 0) {
+            long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+            future.attach(this, deadline, true);
+            scheduleSweep(deadline);
+        } else {
+            future.attach(this, 0, false);
+        }
+    }
+
+    /**
+     * 在读线程中调用
+     *
+     * @return 这一帧是某个请求的应答时返回true
+     */
+    public boolean onFrame(byte[] buffer, int offset, int length) {
+        for (Iterator<ResponseFuture> it = mPending.iterator(); it.hasNext(); ) {
+            ResponseFuture future = it.next();
+            if (future.isDone()) {
+                it.remove();
+                continue;
+            }
+            if (!future.matcher.matches(buffer, offset, length)) {
+                continue;
+            }
+            if (future.complete(Arrays.copyOfRange(buffer, offset, offset + length))) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getPendingCount() {
+        return mPendingCount.get();
+    }
+
+    public boolean hasPending() {
+        return mPendingCount.get() > 0;
+    }
+
+    public void failAll(int code) {
+        ResponseFuture future;
+        while ((future = mPending.poll()) != null) {
+            future.fail(new BluetoothException(code, null));
+        }
+    }
+
+    /**
+     * 请求完成时调用一次，只计数，队列中的位置留到下一次遍历时移除
+     */
+    void onDone(ResponseFuture future) {
+        mPendingCount.decrementAndGet();
+    }
+
+    private void scheduleSweep(long deadline) {
+        synchronized (mSweepLock) {
+            if (mSweepScheduled && mSweepDeadline - deadline <= 0) {
+                return;
+            }
+            // 更早的检查取代原来的，原来的任务到时只会多检查一次，不取消它
+            mSweepScheduled = true;
+            mSweepDeadline = deadline;
+        }
+        long delayNanos = Math.max(0, deadline - System.nanoTime());
+        BluetoothExecutor.getInstance().schedule(mSweepTask, (delayNanos + 999999) / 1000000);
+    }
+
+    private void sweep() {
+        // 先清除标记再遍历，之后注册的请求要么被这次遍历看到，要么自己安排检查
+        synchronized (mSweepLock) {
+            mSweepScheduled = false;
+        }
+        long now = System.nanoTime();
+        boolean hasNext = false;
+        long next = 0;
+        for (Iterator<ResponseFuture> it = mPending.iterator(); it.hasNext(); ) {
+            ResponseFuture future = it.next();
+            if (future.isDone()) {
+                it.remove();
+                continue;
+            }
+            if (!future.hasDeadline()) {
+                continue;
+            }
+            long deadline = future.getDeadlineNanos();
+            if (deadline - now <= 0) {
+                it.remove();
+                future.fail(new BluetoothException(BluetoothException.ERROR_TIMEOUT, "response timeout"));
+            } else if (!hasNext || deadline - next < 0) {
+                hasNext = true;
+                next = deadline;
+            }
+        }
+        if (hasNext) {
+            scheduleSweep(next);
+        }
+    }
+}
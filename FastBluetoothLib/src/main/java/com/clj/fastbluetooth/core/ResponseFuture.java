@@ -0,0 +1,144 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothResponseCallback;
+import com.clj.fastbluetooth.codec.ResponseMatcher;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次请求的应答
+ * 收到应答、超时、写入失败或断开连接时完成，只会完成一次
+ */
+public class ResponseFuture implements Future<byte[]> {
+
+    final ResponseMatcher matcher;
+    private final BluetoothResponseCallback mCallback;
+    private final CountDownLatch mLatch = new CountDownLatch(1);
+    private final AtomicBoolean mDone = new AtomicBoolean(false);
+    private volatile byte[] mResponse;
+    private volatile BluetoothException mError;
+    private volatile boolean mCancelled;
+    private volatile RequestTracker mTracker;
+    private final AtomicBoolean mDetached = new AtomicBoolean(false);
+    // 超时的截止时间，System.nanoTime()
+    private volatile long mDeadlineNanos;
+    private volatile boolean mHasDeadline;
+
+    ResponseFuture(ResponseMatcher matcher, BluetoothResponseCallback callback) {
+        this.matcher = matcher;
+        this.mCallback = callback;
+    }
+
+    /**
+     * 请求失败时的原因，成功或未完成时返回null
+     */
+    public BluetoothException getError() {
+        return mError;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!mDone.compareAndSet(false, true)) {
+            return false;
+        }
+        mCancelled = true;
+        detach();
+        mLatch.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mLatch.getCount() == 0;
+    }
+
+    @Override
+    public byte[] get() throws InterruptedException, ExecutionException {
+        mLatch.await();
+        return report();
+    }
+
+    @Override
+    public byte[] get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mLatch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    void attach(RequestTracker tracker, long deadlineNanos, boolean hasDeadline) {
+        mDeadlineNanos = deadlineNanos;
+        mHasDeadline = hasDeadline;
+        mTracker = tracker;
+        // 注册期间已经完成的请求，不再占用跟踪器
+        if (mDone.get()) {
+            detach();
+        }
+    }
+
+    boolean hasDeadline() {
+        return mHasDeadline;
+    }
+
+    long getDeadlineNanos() {
+        return mDeadlineNanos;
+    }
+
+    boolean complete(byte[] response) {
+        if (!mDone.compareAndSet(false, true)) {
+            return false;
+        }
+        mResponse = response;
+        detach();
+        mLatch.countDown();
+        if (mCallback != null) {
+            mCallback.onResponse(response);
+        }
+        return true;
+    }
+
+    boolean fail(BluetoothException error) {
+        if (!mDone.compareAndSet(false, true)) {
+            return false;
+        }
+        mError = error;
+        detach();
+        mLatch.countDown();
+        if (mCallback != null) {
+            mCallback.onResponseError(error);
+        }
+        return true;
+    }
+
+    /**
+     * 完成后通知跟踪器一次，attach和完成同时发生时也只通知一次
+     */
+    private void detach() {
+        RequestTracker tracker = mTracker;
+        if (tracker != null && mDetached.compareAndSet(false, true)) {
+            tracker.onDone(this);
+        }
+    }
+
+    private byte[] report() throws ExecutionException {
+        if (mCancelled) {
+            throw new CancellationException();
+        }
+        if (mError != null) {
+            throw new ExecutionException(mError.toString(), null);
+        }
+        return mResponse;
+    }
+}
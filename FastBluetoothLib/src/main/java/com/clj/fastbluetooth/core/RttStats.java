@@ -0,0 +1,103 @@
+package com.clj.fastbluetooth.core;
+
+/**
+ * 心跳往返时延的滚动统计，只保留最近windowSize个样本
+ */
+public class RttStats {
+
+    private final long[] mSamples;
+    private int mNext;
+    private int mCount;
+    private long mTotalSamples;
+    private long mMissed;
+
+    RttStats(int windowSize) {
+        mSamples = new long[windowSize];
+    }
+
+    synchronized void addSample(long rttMillis) {
+        mSamples[mNext] = rttMillis;
+        mNext = (mNext + 1) % mSamples.length;
+        if (mCount < mSamples.length) {
+            mCount++;
+        }
+        mTotalSamples++;
+    }
+
+    synchronized void onMissed() {
+        mMissed++;
+    }
+
+    /**
+     * 最近一次的往返时延，还没有样本时返回-1
+     */
+    public synchronized long getLast() {
+        return mCount == 0 ? -1 : mSamples[(mNext - 1 + mSamples.length) % mSamples.length];
+    }
+
+    public synchronized long getMin() {
+        if (mCount == 0) {
+            return -1;
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < mCount; i++) {
+            min = Math.min(min, mSamples[i]);
+        }
+        return min;
+    }
+
+    public synchronized long getMax() {
+        if (mCount == 0) {
+            return -1;
+        }
+        long max = 0;
+        for (int i = 0; i < mCount; i++) {
+            max = Math.max(max, mSamples[i]);
+        }
+        return max;
+    }
+
+    public synchronized double getAverage() {
+        if (mCount == 0) {
+            return -1;
+        }
+        long sum = 0;
+        for (int i = 0; i < mCount; i++) {
+            sum += mSamples[i];
+        }
+        return (double) sum / mCount;
+    }
+
+    /**
+     * 窗口内的样本数
+     */
+    public synchronized int getSampleCount() {
+        return mCount;
+    }
+
+    /**
+     * 收到应答的心跳总数
+     */
+    public synchronized long getTotalSamples() {
+        return mTotalSamples;
+    }
+
+    /**
+     * 超时未应答的心跳总数
+     */
+    public synchronized long getMissed() {
+        return mMissed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RttStats { " +
+                "last=" + getLast() +
+                ", min=" + getMin() +
+                ", max=" + getMax() +
+                ", average=" + getAverage() +
+                ", totalSamples=" + mTotalSamples +
+                ", missed=" + mMissed +
+                '}';
+    }
+}
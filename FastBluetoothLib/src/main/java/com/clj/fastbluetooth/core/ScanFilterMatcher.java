@@ -0,0 +1,148 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.data.ScanFilter;
+import com.clj.fastbluetooth.util.LongHashSet;
+import com.clj.fastbluetooth.util.MacUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 由{@link ScanFilter}编译出的匹配器，每次扫描编译一次，只在筛选任务中使用
+ * 完整名称用HashSet，前缀和后缀用字典树，MAC压缩成long后查表，
+ * 除正则外每个设备的匹配耗时与条件数量无关，只与设备名长度有关。
+ */
+public class ScanFilterMatcher {
+
+    private final Set<String> mNames;
+    private final CharTrie mPrefixes;
+    private final CharTrie mSuffixes;
+    private final LongHashSet mMacs;
+    private final Matcher[] mPatterns;
+
+    public ScanFilterMatcher(ScanFilter filter) {
+        mNames = filter.getNames().isEmpty() ? null : new HashSet<>(filter.getNames());
+        mPrefixes = CharTrie.build(filter.getNamePrefixes(), false);
+        mSuffixes = CharTrie.build(filter.getNameSuffixes(), true);
+
+        LongHashSet macs = new LongHashSet(filter.getMacs().size());
+        for (String mac : filter.getMacs()) {
+            long key = MacUtils.pack(mac);
+            if (key != MacUtils.INVALID) {
+                macs.add(key);
+            }
+        }
+        mMacs = macs.isEmpty() ? null : macs;
+
+        List<Pattern> patterns = filter.getNamePatterns();
+        mPatterns = new Matcher[patterns.size()];
+        for (int i = 0; i < mPatterns.length; i++) {
+            mPatterns[i] = patterns.get(i).matcher("");
+        }
+    }
+
+    public boolean matches(String name, String mac) {
+        if (mMacs != null && mMacs.contains(MacUtils.pack(mac))) {
+            return true;
+        }
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        if (mNames != null && mNames.contains(name)) {
+            return true;
+        }
+        if (mPrefixes != null && mPrefixes.matchesAny(name)) {
+            return true;
+        }
+        if (mSuffixes != null && mSuffixes.matchesAny(name)) {
+            return true;
+        }
+        for (Matcher matcher : mPatterns) {
+            if (matcher.reset(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 只读的字典树，子节点按字符排序后二分查找
+     */
+    static class CharTrie {
+        private char[] mKeys = new char[0];
+        private CharTrie[] mChildren = new CharTrie[0];
+        private boolean mTerminal;
+        private final boolean mReversed;
+
+        private CharTrie(boolean reversed) {
+            mReversed = reversed;
+        }
+
+        /**
+         * @param reversed 为true时按字符串末尾开始建树，用于后缀匹配
+         * @return 没有条件时返回null
+         */
+        static CharTrie build(List<String> words, boolean reversed) {
+            if (words.isEmpty()) {
+                return null;
+            }
+            CharTrie root = new CharTrie(reversed);
+            for (String word : words) {
+                CharTrie node = root;
+                int length = word.length();
+                for (int i = 0; i < length; i++) {
+                    node = node.obtainChild(word.charAt(reversed ? length - 1 - i : i));
+                }
+                node.mTerminal = true;
+            }
+            return root;
+        }
+
+        /**
+         * name的某个前缀（或后缀）是树中的词时返回true
+         */
+        boolean matchesAny(String name) {
+            CharTrie node = this;
+            int length = name.length();
+            for (int i = 0; i < length; i++) {
+                if (node.mTerminal) {
+                    return true;
+                }
+                node = node.child(name.charAt(mReversed ? length - 1 - i : i));
+                if (node == null) {
+                    return false;
+                }
+            }
+            return node.mTerminal;
+        }
+
+        private CharTrie child(char c) {
+            int index = Arrays.binarySearch(mKeys, c);
+            return index >= 0 ? mChildren[index] : null;
+        }
+
+        private CharTrie obtainChild(char c) {
+            int index = Arrays.binarySearch(mKeys, c);
+            if (index >= 0) {
+                return mChildren[index];
+            }
+            int insert = -index - 1;
+            CharTrie child = new CharTrie(mReversed);
+            char[] keys = new char[mKeys.length + 1];
+            CharTrie[] children = new CharTrie[mChildren.length + 1];
+            System.arraycopy(mKeys, 0, keys, 0, insert);
+            System.arraycopy(mChildren, 0, children, 0, insert);
+            keys[insert] = c;
+            children[insert] = child;
+            System.arraycopy(mKeys, insert, keys, insert + 1, mKeys.length - insert);
+            System.arraycopy(mChildren, insert, children, insert + 1, mChildren.length - insert);
+            mKeys = keys;
+            mChildren = children;
+            return child;
+        }
+    }
+}
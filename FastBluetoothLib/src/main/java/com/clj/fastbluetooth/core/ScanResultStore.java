@@ -0,0 +1,98 @@
+package com.clj.fastbluetooth.core;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.clj.fastbluetooth.data.ScanResult;
+import com.clj.fastbluetooth.util.LongHashSet;
+import com.clj.fastbluetooth.util.MacUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 扫描结果集合
+ * 以压缩成long的MAC地址为key，用{@link LongHashSet}索引，去重和更新都是O(1)；
+ * 结果按发现顺序存放，{@link #snapshot()}返回不可变的快照，扫描过程中也可以放心遍历，
+ * 集合没有变化时重复获取快照不会再拷贝。
+ */
+public class ScanResultStore {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // 编号与mResults的下标一致
+    private final LongHashSet mMacs;
+    private ScanResult[] mResults;
+    private volatile List<ScanResult> mSnapshot;
+
+    public ScanResultStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ScanResultStore(int expectedSize) {
+        mMacs = new LongHashSet(expectedSize);
+        mResults = new ScanResult[Math.max(expectedSize, 4)];
+    }
+
+    /**
+     * 记录一次发现
+     *
+     * @return 本次扫描第一次发现该设备时返回true
+     */
+    public synchronized boolean put(BluetoothDevice device, long seenTime) {
+        long key = MacUtils.pack(device.getAddress());
+        if (key == MacUtils.INVALID) {
+            return false;
+        }
+        int index = mMacs.indexOf(key);
+        if (index >= 0) {
+            mResults[index] = mResults[index].seenAgain(seenTime);
+            mSnapshot = null;
+            return false;
+        }
+
+        index = mMacs.size();
+        if (index == mResults.length) {
+            mResults = Arrays.copyOf(mResults, index << 1);
+        }
+        mResults[index] = new ScanResult(device, seenTime);
+        mMacs.add(key);
+        mSnapshot = null;
+        return true;
+    }
+
+    public synchronized ScanResult get(String mac) {
+        int index = mMacs.indexOf(MacUtils.pack(mac));
+        return index >= 0 ? mResults[index] : null;
+    }
+
+    public boolean contains(String mac) {
+        return get(mac) != null;
+    }
+
+    public synchronized int size() {
+        return mMacs.size();
+    }
+
+    /**
+     * 按发现顺序排列的不可变快照
+     */
+    public List<ScanResult> snapshot() {
+        List<ScanResult> snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            if (mSnapshot == null) {
+                mSnapshot = Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(mResults, mMacs.size())));
+            }
+            return mSnapshot;
+        }
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(mResults, 0, mMacs.size(), null);
+        mMacs.clear();
+        mSnapshot = null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.clj.fastbluetooth.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次扫描的统计数据，扫描开始时清零，可以随时读取
+ */
+public class ScanStats {
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong bondedOffered = new AtomicLong();
+    private final AtomicLong eventsDropped = new AtomicLong();
+    private final AtomicLong devicesCollected = new AtomicLong();
+
+    void reset() {
+        eventsReceived.set(0);
+        bondedOffered.set(0);
+        eventsDropped.set(0);
+        devicesCollected.set(0);
+    }
+
+    void onEventReceived() {
+        eventsReceived.incrementAndGet();
+    }
+
+    void onBondedOffered() {
+        bondedOffered.incrementAndGet();
+    }
+
+    void onEventDropped() {
+        eventsDropped.incrementAndGet();
+    }
+
+    void onDeviceCollected() {
+        devicesCollected.incrementAndGet();
+    }
+
+    /**
+     * 广播接收器收到的ACTION_FOUND次数，包含重复的设备
+     */
+    public long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    /**
+     * 扫描开始时直接加入待筛选队列的已配对设备数，不计入{@link #getEventsReceived()}
+     */
+    public long getBondedOffered() {
+        return bondedOffered.get();
+    }
+
+    /**
+     * 待筛选队列已满被丢弃的次数，包括广播事件和已配对设备
+     */
+    public long getEventsDropped() {
+        return eventsDropped.get();
+    }
+
+    /**
+     * 去重后的设备数
+     */
+    public long getDevicesCollected() {
+        return devicesCollected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ScanStats { " +
+                "eventsReceived=" + eventsReceived +
+                ", bondedOffered=" + bondedOffered +
+                ", eventsDropped=" + eventsDropped +
+                ", devicesCollected=" + devicesCollected +
+                '}';
+    }
+}
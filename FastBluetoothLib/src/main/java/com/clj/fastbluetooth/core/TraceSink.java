@@ -0,0 +1,17 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.data.TraceEvent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 轨迹导出目标，由{@link BluetoothTracer#export(TraceSink)}在调用线程中调用
+ */
+public interface TraceSink {
+
+    /**
+     * @param events 按记录顺序排列
+     */
+    void export(List<TraceEvent> events) throws IOException;
+}
@@ -0,0 +1,222 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.util.MacUtils;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 收发数据的抓包记录
+ * 读写线程把每段收到或写出的数据连同System.nanoTime()和方向追加到内存映射文件，
+ * 记录只是一次加锁和内存拷贝，不经过write系统调用；映射区用完时再映射下一段。
+ * 每条记录最后才写入长度，进程崩溃时已完整写入的记录仍然可以读出，用{@link CaptureReader}读取。
+ * <p>
+ * 文件格式，多字节数值为大端：
+ * <pre>
+ * 文件头 32字节: magic "FBTC" | version(2) | headerSize(2) | startTimeMillis(8) | startNanos(8) | 保留(8)
+ * 记录 20字节+数据: length(4) | timeNanos(8) | direction(1) | mac(6，无效时全为0xFF) | 保留(1) | data(length)
+ * </pre>
+ * 长度为0表示文件结束。总大小达到上限后不再记录，只计数。
+ */
+public class TrafficRecorder {
+
+    public static final int DIRECTION_RX = 0;
+    public static final int DIRECTION_TX = 1;
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    static final int MAGIC = 0x46425443;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 20;
+    private static final long MAC_MASK = 0xFFFFFFFFFFFFL;
+    private static final int REGION_SIZE = 4 * 1024 * 1024;
+
+    private static volatile TrafficRecorder sActive;
+
+    private final File mFile;
+    private final long mMaxBytes;
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+    private MappedByteBuffer mRegion;
+    // mRegion在文件中的起始位置
+    private long mRegionStart;
+    // 下一条记录在文件中的位置
+    private long mPosition;
+    private long mRecords;
+    private long mDroppedRecords;
+    private boolean mClosed;
+
+    /**
+     * 开始抓包，已有的抓包会先结束
+     *
+     * @param maxBytes 文件大小上限
+     */
+    public static TrafficRecorder start(File file, long maxBytes) throws IOException {
+        TrafficRecorder recorder = new TrafficRecorder(file, maxBytes);
+        TrafficRecorder previous;
+        synchronized (TrafficRecorder.class) {
+            previous = sActive;
+            sActive = recorder;
+        }
+        if (previous != null) {
+            previous.close();
+        }
+        return recorder;
+    }
+
+    /**
+     * 结束当前的抓包
+     */
+    public static void stop() {
+        TrafficRecorder previous;
+        synchronized (TrafficRecorder.class) {
+            previous = sActive;
+            sActive = null;
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * 正在进行的抓包，没有时为null
+     */
+    public static TrafficRecorder getActive() {
+        return sActive;
+    }
+
+    public TrafficRecorder(File file, long maxBytes) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File can not be Null!");
+        }
+        if (maxBytes < HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("maxBytes too small: " + maxBytes);
+        }
+        mFile = file;
+        mMaxBytes = maxBytes;
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            mChannel = mRandomAccessFile.getChannel();
+            mChannel.truncate(0);
+            map(0, HEADER_SIZE);
+            mRegion.putInt(0, MAGIC);
+            mRegion.putShort(4, VERSION);
+            mRegion.putShort(6, (short) HEADER_SIZE);
+            mRegion.putLong(8, System.currentTimeMillis());
+            mRegion.putLong(16, System.nanoTime());
+            mPosition = HEADER_SIZE;
+        } catch (IOException e) {
+            mRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 在读写线程中调用，出错或超过上限时只计数，不影响收发
+     */
+    synchronized void record(int direction, long mac, byte[] data, int offset, int length) {
+        if (mClosed || length <= 0) {
+            return;
+        }
+        long time = System.nanoTime();
+        int recordSize = RECORD_HEADER_SIZE + length;
+        if (mPosition + recordSize > mMaxBytes) {
+            mDroppedRecords++;
+            return;
+        }
+        if (mPosition + recordSize > mRegionStart + mRegion.capacity()) {
+            // 新的映射从当前位置开始，与上一段剩余的部分重叠，记录之间没有空隙
+            try {
+                map(mPosition, recordSize);
+            } catch (IOException e) {
+                BluetoothLog.e("TrafficRecorder map catch: %s", e.getMessage());
+                mDroppedRecords++;
+                return;
+            }
+        }
+
+        int index = (int) (mPosition - mRegionStart);
+        MappedByteBuffer region = mRegion;
+        region.putLong(index + 4, time);
+        long tag = ((long) direction << 48) | (mac >= 0 ? mac & MAC_MASK : MAC_MASK);
+        region.putShort(index + 12, (short) (tag >>> 40));
+        region.putInt(index + 14, (int) (tag >>> 8));
+        region.put(index + 18, (byte) tag);
+        region.put(index + 19, (byte) 0);
+        region.position(index + RECORD_HEADER_SIZE);
+        region.put(data, offset, length);
+        // 长度最后写入，读取时以长度判断记录是否完整
+        region.putInt(index, length);
+        mPosition += recordSize;
+        mRecords++;
+    }
+
+    void record(int direction, String mac, byte[] data, int offset, int length) {
+        record(direction, MacUtils.pack(mac), data, offset, length);
+    }
+
+    private void map(long position, int minSize) throws IOException {
+        long size = Math.min(Math.max(REGION_SIZE, minSize), mMaxBytes - position);
+        mRegion = mChannel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        mRegionStart = position;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * 已写入的字节数，包含文件头
+     */
+    public synchronized long getSize() {
+        return mPosition;
+    }
+
+    public synchronized long getRecordCount() {
+        return mRecords;
+    }
+
+    /**
+     * 超过大小上限或映射失败而没有记录的数据段数
+     */
+    public synchronized long getDroppedRecordCount() {
+        return mDroppedRecords;
+    }
+
+    /**
+     * 结束记录并把文件截断到实际大小
+     */
+    public synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            // 映射区的数据已经在页缓存中，由系统写回，这里不等待刷盘
+            mChannel.truncate(mPosition);
+        } catch (IOException e) {
+            BluetoothLog.e("TrafficRecorder close catch: %s", e.getMessage());
+        } finally {
+            try {
+                mRandomAccessFile.close();
+            } catch (IOException e) {
+                BluetoothLog.e("TrafficRecorder close catch: %s", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TrafficRecorder { " +
+                "file=" + mFile +
+                ", size=" + mPosition +
+                ", records=" + mRecords +
+                ", droppedRecords=" + mDroppedRecords +
+                '}';
+    }
+}
@@ -0,0 +1,513 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothWritabilityCallback;
+import com.clj.fastbluetooth.callback.BluetoothWriteCallback;
+import com.clj.fastbluetooth.data.WriteOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+import com.clj.fastbluetooth.util.MacUtils;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 写队列
+ * 每个连接一个写队列，任意线程调用{@link #write(byte[], BluetoothWriteCallback)}只是把数据放入无锁队列，
+ * 有数据时把自己提交到所有连接共享的写线程池，按FIFO顺序依次写出，每次写入都回调各自的callback。
+ * 同一时刻一个队列最多只在一个线程上运行，每轮最多写出{@link #MAX_WRITES_PER_DRAIN}次后让出线程，
+ * 线程数不随连接数增长，多个连接之间也不会互相饿死。
+ * 开启合并写入后，在linger时间内到达的小数据会拷贝到同一个缓冲区，一次write + flush写出，
+ * 减少RFCOMM的分包开销，每条数据仍然各自回调。等待linger期间不占用写线程，到期后由定时线程重新提交写出。
+ * 排队中的字节数受{@link WriteOptions#getBufferLimit()}限制，并在高低水位之间回调可写状态，
+ * 生产者据此自行限速。
+ */
+public class WriteQueue implements Runnable {
+
+    private static final int MAX_WRITES_PER_DRAIN = 64;
+
+    // 当前线程是否正在运行某个写队列，写线程上的写入不能阻塞
+    private static final ThreadLocal<Boolean> sDraining = new ThreadLocal<>();
+
+    private final OutputStream mOutputStream;
+    private final Executor mExecutor;
+    private final Queue<WriteRequest> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+    private volatile boolean mClosed;
+
+    private final long mLingerNanos;
+    private final byte[] mBatchBuffer;
+    // 已合并还没写出的数据，跨越多轮run()，只在写线程中访问
+    private final List<WriteRequest> mBatch = new ArrayList<>();
+    private int mBatchSize;
+    private long mBatchDeadline;
+    // 放不进当前批次的请求，先写出批次再处理它
+    private WriteRequest mCarry;
+    private volatile boolean mFlushScheduled;
+    // linger已到期，写线程正在运行时由它在结束后重新提交
+    private volatile boolean mFlushDue;
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            mFlushScheduled = false;
+            mFlushDue = true;
+            schedule();
+        }
+    };
+
+    private final long mBufferLimit;
+    private final int mOverflowPolicy;
+    private final long mLowWatermark;
+    private final long mHighWatermark;
+    private final AtomicLong mPendingBytes = new AtomicLong();
+    private final AtomicBoolean mWritable = new AtomicBoolean(true);
+    private final Object mSpaceLock = new Object();
+    private volatile int mBlockedProducers;
+    private volatile BluetoothWritabilityCallback mWritabilityCallback;
+
+    private ConnectionStats mStats;
+    private Runnable mErrorListener;
+
+    public WriteQueue(OutputStream outputStream, WriteOptions options, Executor executor) {
+        if (outputStream == null) {
+            throw new IllegalArgumentException("OutputStream can not be Null!");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor can not be Null!");
+        }
+        if (options == null) {
+            options = new WriteOptions();
+        }
+        mOutputStream = outputStream;
+        mExecutor = executor;
+        if (options.isCoalescingEnabled()) {
+            mLingerNanos = options.getLingerMillis() * 1000000L;
+            mBatchBuffer = new byte[options.getMaxBatchSize()];
+        } else {
+            mLingerNanos = 0;
+            mBatchBuffer = null;
+        }
+        mBufferLimit = options.getBufferLimit();
+        mOverflowPolicy = options.getOverflowPolicy();
+        mLowWatermark = options.getLowWatermark();
+        mHighWatermark = options.getHighWatermark();
+    }
+
+    public void setWritabilityCallback(BluetoothWritabilityCallback callback) {
+        this.mWritabilityCallback = callback;
+    }
+
+    /**
+     * 需要在第一次写入之前设置
+     */
+    void setConnectionStats(ConnectionStats stats) {
+        this.mStats = stats;
+    }
+
+    /**
+     * 输出流写入失败时在写线程中回调，需要在第一次写入之前设置
+     */
+    void setErrorListener(Runnable listener) {
+        this.mErrorListener = listener;
+    }
+
+    public boolean isOpen() {
+        return !mClosed;
+    }
+
+    /**
+     * 待写出的数据是否低于高水位
+     */
+    public boolean isWritable() {
+        return mWritable.get();
+    }
+
+    /**
+     * 排队中还没有写出的字节数
+     */
+    public long getPendingBytes() {
+        return mPendingBytes.get();
+    }
+
+    /**
+     * 加入写队列，可以在任意线程调用
+     * 溢出策略为{@link WriteOptions#OVERFLOW_BLOCK}时，缓冲区已满会阻塞调用线程，
+     * 但在写线程上（例如onWriteSuccess回调中）调用时不阻塞，超过上限也直接入队
+     *
+     * @return 数据没有进入队列时返回false，此时callback已收到onWriteError
+     */
+    public boolean write(byte[] data, BluetoothWriteCallback callback) {
+        if (data == null) {
+            throw new IllegalArgumentException("data can not be Null!");
+        }
+        if (mClosed) {
+            notifyWriteError(callback, BluetoothException.ERROR_DISCONNECTION);
+            return false;
+        }
+        if (!reserve(data.length)) {
+            notifyWriteError(callback, mClosed ? BluetoothException.ERROR_DISCONNECTION
+                    : BluetoothException.ERROR_BUFFER_FULL);
+            return false;
+        }
+        mQueue.offer(new WriteRequest(data, callback));
+        schedule();
+
+        // 入队的同时队列刚好关闭，队列里剩下的请求由这里负责回调
+        if (mClosed) {
+            failPending(BluetoothException.ERROR_DISCONNECTION);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 关闭写队列，未写出的数据回调ERROR_DISCONNECTION
+     */
+    public void close() {
+        mClosed = true;
+        synchronized (mSpaceLock) {
+            mSpaceLock.notifyAll();
+        }
+        // 没有线程在写时由这里回调剩下的请求，否则交给写线程在本轮结束时处理
+        failIfIdle();
+    }
+
+    /**
+     * 已关闭且没有写线程在运行时，回调剩下的请求
+     */
+    private void failIfIdle() {
+        if (mScheduled.compareAndSet(false, true)) {
+            failBatchAndPending(BluetoothException.ERROR_DISCONNECTION);
+            mScheduled.set(false);
+        }
+    }
+
+    @Override
+    public void run() {
+        Boolean draining = sDraining.get();
+        sDraining.set(Boolean.TRUE);
+        mFlushDue = false;
+        try {
+            for (int i = 0; i < MAX_WRITES_PER_DRAIN && !mClosed; i++) {
+                WriteRequest request = mCarry;
+                mCarry = null;
+                if (request == null) {
+                    request = mQueue.poll();
+                }
+                if (request == null) {
+                    break;
+                }
+
+                boolean single = mBatchBuffer == null || request.data.length >= mBatchBuffer.length;
+                if (mBatchSize > 0 && (single || mBatchSize + request.data.length > mBatchBuffer.length)) {
+                    // 先写出已经合并的数据，保持FIFO顺序
+                    mCarry = request;
+                    flushBatch();
+                } else if (single) {
+                    writeSingle(request);
+                } else {
+                    append(request);
+                }
+            }
+            if (!mClosed && mBatchSize > 0 && mCarry == null && mQueue.isEmpty()) {
+                lingerOrFlush();
+            }
+        } finally {
+            if (draining == null) {
+                sDraining.remove();
+            }
+            if (mClosed) {
+                failBatchAndPending(BluetoothException.ERROR_DISCONNECTION);
+            }
+            mScheduled.set(false);
+        }
+
+        if (mClosed) {
+            // finally之后才关闭时，close()因为写线程还在运行而没有处理剩下的请求
+            failIfIdle();
+        } else if (mCarry != null || !mQueue.isEmpty() || mFlushDue) {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (mScheduled.compareAndSet(false, true)) {
+            try {
+                mExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                BluetoothLog.e("write executor rejected: %s", e.getMessage());
+                mScheduled.set(false);
+                close();
+            }
+        }
+    }
+
+    /**
+     * 队列已空时，批次到了linger时间或已经装满就写出，否则在定时线程上安排到期后再次运行，不在写线程中等待
+     */
+    private void lingerOrFlush() {
+        long remaining = mBatchDeadline - System.nanoTime();
+        if (remaining <= 0 || mBatchSize == mBatchBuffer.length) {
+            flushBatch();
+        } else if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            BluetoothExecutor.getInstance().schedule(mFlushTask, (remaining + 999999) / 1000000);
+        }
+    }
+
+    private void writeSingle(WriteRequest request) {
+        traffic(request.data, 0, request.data.length);
+        try {
+            mOutputStream.write(request.data);
+            mOutputStream.flush();
+        } catch (IOException e) {
+            release(request.data.length);
+            onStreamError(e);
+            notifyWriteError(request.callback, BluetoothException.ERROR_IO);
+            failPending(BluetoothException.ERROR_IO);
+            return;
+        }
+        release(request.data.length);
+        if (mStats != null) {
+            mStats.onWritten(request.data.length, 1);
+        }
+        BluetoothMetrics.getInstance().recordWriteLatency(request.enqueueTime);
+        if (request.callback != null) {
+            request.callback.onWriteSuccess(request.data);
+        }
+    }
+
+    private void flushBatch() {
+        int size = mBatchSize;
+        mBatchSize = 0;
+        traffic(mBatchBuffer, 0, size);
+        try {
+            mOutputStream.write(mBatchBuffer, 0, size);
+            mOutputStream.flush();
+        } catch (IOException e) {
+            release(size);
+            onStreamError(e);
+            for (WriteRequest request : mBatch) {
+                notifyWriteError(request.callback, BluetoothException.ERROR_IO);
+            }
+            mBatch.clear();
+            failCarryAndPending(BluetoothException.ERROR_IO);
+            return;
+        }
+        release(size);
+        if (mStats != null) {
+            mStats.onWritten(size, mBatch.size());
+        }
+        for (WriteRequest request : mBatch) {
+            BluetoothMetrics.getInstance().recordWriteLatency(request.enqueueTime);
+            if (request.callback != null) {
+                request.callback.onWriteSuccess(request.data);
+            }
+        }
+        mBatch.clear();
+    }
+
+    /**
+     * 即将写出的数据交给抓包和日志，两者都关闭时只有两次volatile读
+     */
+    private void traffic(byte[] data, int offset, int length) {
+        TrafficRecorder recorder = TrafficRecorder.getActive();
+        if (recorder != null) {
+            recorder.record(TrafficRecorder.DIRECTION_TX, mStats != null ? mStats.getMacValue() : MacUtils.INVALID,
+                    data, offset, length);
+        }
+        if (BluetoothLog.isTrafficLoggable()) {
+            BluetoothLog.traffic(mStats != null ? mStats.getMac() : null, "tx", data, offset, length);
+        }
+    }
+
+    private void append(WriteRequest request) {
+        if (mBatchSize == 0) {
+            mBatchDeadline = System.nanoTime() + mLingerNanos;
+        }
+        System.arraycopy(request.data, 0, mBatchBuffer, mBatchSize, request.data.length);
+        mBatch.add(request);
+        mBatchSize += request.data.length;
+    }
+
+    private void onStreamError(IOException e) {
+        BluetoothLog.e("write catch: %s", e.getMessage());
+        mClosed = true;
+        synchronized (mSpaceLock) {
+            mSpaceLock.notifyAll();
+        }
+        if (mErrorListener != null) {
+            mErrorListener.run();
+        }
+    }
+
+    /**
+     * 为即将入队的数据占用缓冲区空间
+     * 队列为空时总是允许，保证超过上限的单条数据也能写出
+     */
+    private boolean reserve(int length) {
+        while (!tryReserve(length)) {
+            if (mOverflowPolicy == WriteOptions.OVERFLOW_FAIL_FAST) {
+                return false;
+            }
+            if (mOverflowPolicy == WriteOptions.OVERFLOW_DROP_OLDEST) {
+                WriteRequest oldest = mQueue.poll();
+                if (oldest != null) {
+                    release(oldest.data.length);
+                    notifyWriteError(oldest.callback, BluetoothException.ERROR_BUFFER_FULL);
+                    continue;
+                }
+                // 剩下的都是写线程正在写的数据，等它写完
+            }
+            if (sDraining.get() != null) {
+                // 写线程阻塞在这里就没有线程去写出数据，所有共享写线程池的队列都会卡住
+                mPendingBytes.addAndGet(length);
+                break;
+            }
+            if (!awaitSpace(length)) {
+                return false;
+            }
+        }
+
+        updateWritability();
+        return true;
+    }
+
+    private boolean tryReserve(int length) {
+        while (true) {
+            long pending = mPendingBytes.get();
+            if (mBufferLimit > 0 && pending > 0 && pending + length > mBufferLimit) {
+                return false;
+            }
+            if (mPendingBytes.compareAndSet(pending, pending + length)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean awaitSpace(int length) {
+        synchronized (mSpaceLock) {
+            mBlockedProducers++;
+            try {
+                while (!mClosed) {
+                    long pending = mPendingBytes.get();
+                    if (pending == 0 || pending + length <= mBufferLimit) {
+                        return true;
+                    }
+                    try {
+                        mSpaceLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                return false;
+            } finally {
+                mBlockedProducers--;
+            }
+        }
+    }
+
+    private void release(long length) {
+        long pending = mPendingBytes.addAndGet(-length);
+        if (mBlockedProducers > 0) {
+            synchronized (mSpaceLock) {
+                mSpaceLock.notifyAll();
+            }
+        }
+        if (mHighWatermark > 0 && (pending <= mLowWatermark || !mWritable.get())) {
+            updateWritability();
+        }
+    }
+
+    /**
+     * 按排队的字节数切换可写状态，生产者和写线程都会调用
+     * 一方读到字节数后、切换状态前，另一方可能已经读到旧的状态而放弃切换，
+     * 所以每次切换后重新读取字节数，直到状态与字节数一致
+     */
+    private void updateWritability() {
+        if (mHighWatermark <= 0) {
+            return;
+        }
+        while (true) {
+            long pending = mPendingBytes.get();
+            if (mWritable.get()) {
+                if (pending < mHighWatermark || !mWritable.compareAndSet(true, false)) {
+                    return;
+                }
+                notifyWritabilityChanged(false);
+            } else {
+                if (pending > mLowWatermark || !mWritable.compareAndSet(false, true)) {
+                    return;
+                }
+                notifyWritabilityChanged(true);
+            }
+        }
+    }
+
+    private void failBatchAndPending(int code) {
+        if (mBatchSize > 0) {
+            release(mBatchSize);
+            mBatchSize = 0;
+            for (WriteRequest request : mBatch) {
+                notifyWriteError(request.callback, code);
+            }
+            mBatch.clear();
+        }
+        failCarryAndPending(code);
+    }
+
+    private void failCarryAndPending(int code) {
+        WriteRequest carry = mCarry;
+        mCarry = null;
+        if (carry != null) {
+            release(carry.data.length);
+            notifyWriteError(carry.callback, code);
+        }
+        failPending(code);
+    }
+
+    private void failPending(int code) {
+        WriteRequest request;
+        while ((request = mQueue.poll()) != null) {
+            release(request.data.length);
+            notifyWriteError(request.callback, code);
+        }
+    }
+
+    private void notifyWritabilityChanged(boolean writable) {
+        BluetoothWritabilityCallback callback = mWritabilityCallback;
+        if (callback != null) {
+            callback.onWritabilityChanged(writable);
+        }
+    }
+
+    private void notifyWriteError(BluetoothWriteCallback callback, int code) {
+        if (mStats != null) {
+            mStats.onWriteError(1);
+        }
+        if (callback != null) {
+            callback.onWriteError(new BluetoothException(code, null));
+        }
+    }
+
+    private static final class WriteRequest {
+        final byte[] data;
+        final BluetoothWriteCallback callback;
+        // 指标关闭时为0
+        final long enqueueTime;
+
+        WriteRequest(byte[] data, BluetoothWriteCallback callback) {
+            this.data = data;
+            this.callback = callback;
+            this.enqueueTime = BluetoothMetrics.getInstance().writeStartTime();
+        }
+    }
+}
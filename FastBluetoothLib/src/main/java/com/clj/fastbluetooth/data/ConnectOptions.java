@@ -0,0 +1,145 @@
+package com.clj.fastbluetooth.data;
+
+import com.clj.fastbluetooth.core.ConnectStrategies;
+import com.clj.fastbluetooth.core.ConnectStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 连接的配置，在下一次连接时生效
+ * 每一轮按顺序尝试所有建立方式，上次成功的方式排在最前；
+ * 两次尝试之间按指数退避等待，并加上随机抖动，所有尝试不超过总时限。
+ */
+public class ConnectOptions {
+
+    // 连接失败时从不清除配对信息
+    public static final int BOND_REMOVAL_NEVER = 0;
+    // 连续因配对问题失败达到bondRemovalThreshold次后，作为最后手段清除配对信息
+    public static final int BOND_REMOVAL_ON_BOND_FAILURE = 1;
+    // 每次连接失败都清除配对信息，旧版本的行为
+    public static final int BOND_REMOVAL_ALWAYS = 2;
+
+    private List<ConnectStrategy> strategies = Arrays.asList(
+            ConnectStrategies.SECURE, ConnectStrategies.INSECURE, ConnectStrategies.channel(1));
+    private int maxRounds = 2;
+    private long initialBackoffMillis = 200;
+    private long maxBackoffMillis = 2000;
+    private float jitter = 0.5f;
+    private long deadlineMillis = 20000;
+    private int bondRemovalPolicy = BOND_REMOVAL_NEVER;
+    private int bondRemovalThreshold = 3;
+
+    public List<ConnectStrategy> getStrategies() {
+        return strategies;
+    }
+
+    public ConnectOptions setStrategies(ConnectStrategy... strategies) {
+        if (strategies == null || strategies.length == 0) {
+            throw new IllegalArgumentException("strategies can not be empty!");
+        }
+        this.strategies = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(strategies)));
+        return this;
+    }
+
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    /**
+     * 所有建立方式最多尝试几轮
+     */
+    public ConnectOptions setMaxRounds(int maxRounds) {
+        if (maxRounds > 0) {
+            this.maxRounds = maxRounds;
+        }
+        return this;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * 第一次失败后等待initialBackoffMillis，之后每次翻倍，不超过maxBackoffMillis
+     */
+    public ConnectOptions setBackoff(long initialBackoffMillis, long maxBackoffMillis) {
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("initialBackoffMillis: " + initialBackoffMillis
+                    + ", maxBackoffMillis: " + maxBackoffMillis);
+        }
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        return this;
+    }
+
+    public float getJitter() {
+        return jitter;
+    }
+
+    /**
+     * 退避时间的随机比例，0.5表示实际等待时间在退避时间的50%到100%之间，避免多个设备同时重试
+     */
+    public ConnectOptions setJitter(float jitter) {
+        this.jitter = Math.max(0f, Math.min(1f, jitter));
+        return this;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * 一次连接的总时限，到期时正在进行的尝试会被中止
+     */
+    public ConnectOptions setDeadlineMillis(long deadlineMillis) {
+        if (deadlineMillis > 0) {
+            this.deadlineMillis = deadlineMillis;
+        }
+        return this;
+    }
+
+    public int getBondRemovalPolicy() {
+        return bondRemovalPolicy;
+    }
+
+    public int getBondRemovalThreshold() {
+        return bondRemovalThreshold;
+    }
+
+    /**
+     * 清除配对信息后需要用户重新配对，只应在配对信息确实失效时使用
+     *
+     * @param policy    {@link #BOND_REMOVAL_NEVER}、{@link #BOND_REMOVAL_ON_BOND_FAILURE}或{@link #BOND_REMOVAL_ALWAYS}
+     * @param threshold BOND_REMOVAL_ON_BOND_FAILURE时，连续多少次因配对问题失败后清除，中间有其他原因的失败则重新计数
+     */
+    public ConnectOptions setBondRemovalPolicy(int policy, int threshold) {
+        if (policy != BOND_REMOVAL_NEVER && policy != BOND_REMOVAL_ON_BOND_FAILURE
+                && policy != BOND_REMOVAL_ALWAYS) {
+            throw new IllegalArgumentException("unknown bondRemovalPolicy: " + policy);
+        }
+        this.bondRemovalPolicy = policy;
+        this.bondRemovalThreshold = Math.max(1, threshold);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectOptions { " +
+                "strategies=" + strategies.size() +
+                ", maxRounds=" + maxRounds +
+                ", initialBackoffMillis=" + initialBackoffMillis +
+                ", maxBackoffMillis=" + maxBackoffMillis +
+                ", jitter=" + jitter +
+                ", deadlineMillis=" + deadlineMillis +
+                ", bondRemovalPolicy=" + bondRemovalPolicy +
+                ", bondRemovalThreshold=" + bondRemovalThreshold +
+                '}';
+    }
+}
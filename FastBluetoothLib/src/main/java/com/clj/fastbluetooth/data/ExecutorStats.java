@@ -0,0 +1,68 @@
+package com.clj.fastbluetooth.data;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 线程池某一时刻的状态，线程池还未创建时各项均为0
+ */
+public class ExecutorStats {
+
+    private final String name;
+    private final int poolSize;
+    private final int activeCount;
+    private final int queueSize;
+    private final long completedTaskCount;
+
+    public ExecutorStats(String name, int poolSize, int activeCount, int queueSize, long completedTaskCount) {
+        this.name = name;
+        this.poolSize = poolSize;
+        this.activeCount = activeCount;
+        this.queueSize = queueSize;
+        this.completedTaskCount = completedTaskCount;
+    }
+
+    public static ExecutorStats of(String name, ThreadPoolExecutor executor) {
+        if (executor == null) {
+            return new ExecutorStats(name, 0, 0, 0, 0);
+        }
+        return new ExecutorStats(name, executor.getPoolSize(), executor.getActiveCount(),
+                executor.getQueue().size(), executor.getCompletedTaskCount());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * 正在执行任务的线程数
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * 排队等待执行的任务数
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public long getCompletedTaskCount() {
+        return completedTaskCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutorStats { " +
+                "name=" + name +
+                ", poolSize=" + poolSize +
+                ", activeCount=" + activeCount +
+                ", queueSize=" + queueSize +
+                ", completedTaskCount=" + completedTaskCount +
+                '}';
+    }
+}
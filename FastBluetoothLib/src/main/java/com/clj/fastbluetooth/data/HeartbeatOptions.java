@@ -0,0 +1,149 @@
+package com.clj.fastbluetooth.data;
+
+import com.clj.fastbluetooth.codec.ResponseMatcher;
+
+/**
+ * 心跳的配置
+ * 每隔intervalMillis发送一次心跳帧，timeoutMillis内没有收到匹配的应答记为一次丢失，
+ * 连续丢失maxMissed次判定链路已断开，最长在 intervalMillis + maxMissed * (intervalMillis + timeoutMillis) 内发现半开的socket。
+ */
+public class HeartbeatOptions {
+
+    private final byte[] payload;
+    private final ResponseMatcher matcher;
+    private long intervalMillis = 5000;
+    private long timeoutMillis = 2000;
+    private int maxMissed = 2;
+    private boolean autoReconnect = true;
+    private long initialReconnectDelayMillis = 1000;
+    private long maxReconnectDelayMillis = 30000;
+    private int maxReconnectAttempts = 0;
+    private int rttWindowSize = 32;
+
+    /**
+     * @param payload 心跳帧
+     * @param matcher 识别心跳应答，按帧匹配时需要先通过read()设置帧解码器
+     */
+    public HeartbeatOptions(byte[] payload, ResponseMatcher matcher) {
+        if (payload == null || matcher == null) {
+            throw new IllegalArgumentException("payload and matcher can not be Null!");
+        }
+        this.payload = payload;
+        this.matcher = matcher;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public ResponseMatcher getMatcher() {
+        return matcher;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public HeartbeatOptions setIntervalMillis(long intervalMillis) {
+        if (intervalMillis > 0) {
+            this.intervalMillis = intervalMillis;
+        }
+        return this;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public HeartbeatOptions setTimeoutMillis(long timeoutMillis) {
+        if (timeoutMillis > 0) {
+            this.timeoutMillis = timeoutMillis;
+        }
+        return this;
+    }
+
+    public int getMaxMissed() {
+        return maxMissed;
+    }
+
+    /**
+     * 连续丢失多少次心跳判定链路已断开
+     */
+    public HeartbeatOptions setMaxMissed(int maxMissed) {
+        if (maxMissed > 0) {
+            this.maxMissed = maxMissed;
+        }
+        return this;
+    }
+
+    public boolean isAutoReconnect() {
+        return autoReconnect;
+    }
+
+    public HeartbeatOptions setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+        return this;
+    }
+
+    public long getInitialReconnectDelayMillis() {
+        return initialReconnectDelayMillis;
+    }
+
+    public long getMaxReconnectDelayMillis() {
+        return maxReconnectDelayMillis;
+    }
+
+    /**
+     * 重连失败后等待的时间，从initialDelayMillis开始每次翻倍，不超过maxDelayMillis
+     */
+    public HeartbeatOptions setReconnectDelay(long initialDelayMillis, long maxDelayMillis) {
+        if (initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("initialDelayMillis: " + initialDelayMillis
+                    + ", maxDelayMillis: " + maxDelayMillis);
+        }
+        this.initialReconnectDelayMillis = initialDelayMillis;
+        this.maxReconnectDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    public int getMaxReconnectAttempts() {
+        return maxReconnectAttempts;
+    }
+
+    /**
+     * 最多连续重连多少次，为0时一直重连直到成功或停止心跳
+     */
+    public HeartbeatOptions setMaxReconnectAttempts(int maxReconnectAttempts) {
+        this.maxReconnectAttempts = Math.max(0, maxReconnectAttempts);
+        return this;
+    }
+
+    public int getRttWindowSize() {
+        return rttWindowSize;
+    }
+
+    /**
+     * 统计往返时延时保留最近多少个样本
+     */
+    public HeartbeatOptions setRttWindowSize(int rttWindowSize) {
+        if (rttWindowSize > 0) {
+            this.rttWindowSize = rttWindowSize;
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "HeartbeatOptions { " +
+                "payload=" + payload.length + " bytes" +
+                ", intervalMillis=" + intervalMillis +
+                ", timeoutMillis=" + timeoutMillis +
+                ", maxMissed=" + maxMissed +
+                ", autoReconnect=" + autoReconnect +
+                ", initialReconnectDelayMillis=" + initialReconnectDelayMillis +
+                ", maxReconnectDelayMillis=" + maxReconnectDelayMillis +
+                ", maxReconnectAttempts=" + maxReconnectAttempts +
+                ", rttWindowSize=" + rttWindowSize +
+                '}';
+    }
+}
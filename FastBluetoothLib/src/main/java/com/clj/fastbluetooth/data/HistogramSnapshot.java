@@ -0,0 +1,91 @@
+package com.clj.fastbluetooth.data;
+
+import com.clj.fastbluetooth.util.LogHistogram;
+
+/**
+ * 直方图某一时刻的数据，百分位数取所在桶的上界，相对误差不超过12.5%
+ */
+public class HistogramSnapshot {
+
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+    private final long[] counts;
+
+    public HistogramSnapshot(long count, long sum, long min, long max, long[] counts) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.counts = counts;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return 没有数据时为0
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LogHistogram.bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getP50() {
+        return getPercentile(50);
+    }
+
+    public long getP90() {
+        return getPercentile(90);
+    }
+
+    public long getP99() {
+        return getPercentile(99);
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot { " +
+                "count=" + count +
+                ", min=" + min +
+                ", mean=" + (long) getMean() +
+                ", p50=" + getP50() +
+                ", p90=" + getP90() +
+                ", p99=" + getP99() +
+                ", max=" + max +
+                '}';
+    }
+}
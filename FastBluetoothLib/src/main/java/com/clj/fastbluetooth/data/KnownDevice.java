@@ -0,0 +1,69 @@
+package com.clj.fastbluetooth.data;
+
+/**
+ * 曾经连接成功过的设备，用于下次跳过扫描直接连接
+ */
+public class KnownDevice {
+
+    private final String mac;
+    private final String name;
+    private final long lastConnectTime;
+    private final long connectLatency;
+    private final String socketMethod;
+    private final int connectCount;
+
+    public KnownDevice(String mac, String name, long lastConnectTime, long connectLatency,
+                       String socketMethod, int connectCount) {
+        this.mac = mac;
+        this.name = name;
+        this.lastConnectTime = lastConnectTime;
+        this.connectLatency = connectLatency;
+        this.socketMethod = socketMethod;
+        this.connectCount = connectCount;
+    }
+
+    public String getMac() {
+        return mac;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 最近一次连接成功的时间
+     */
+    public long getLastConnectTime() {
+        return lastConnectTime;
+    }
+
+    /**
+     * 最近一次连接耗时，毫秒，不包含扫描
+     */
+    public long getConnectLatency() {
+        return connectLatency;
+    }
+
+    /**
+     * 最近一次连接成功时使用的socket建立方式，即{@link com.clj.fastbluetooth.core.ConnectStrategy#getName()}
+     */
+    public String getSocketMethod() {
+        return socketMethod;
+    }
+
+    public int getConnectCount() {
+        return connectCount;
+    }
+
+    @Override
+    public String toString() {
+        return "KnownDevice { " +
+                "mac=" + mac +
+                ", name=" + name +
+                ", lastConnectTime=" + lastConnectTime +
+                ", connectLatency=" + connectLatency +
+                ", socketMethod=" + socketMethod +
+                ", connectCount=" + connectCount +
+                '}';
+    }
+}
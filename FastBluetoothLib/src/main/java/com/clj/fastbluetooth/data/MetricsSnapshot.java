@@ -0,0 +1,68 @@
+package com.clj.fastbluetooth.data;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 全部指标某一时刻的数据，计数器和直方图都是从开启或上次清零起累计的值
+ * 两次快照相减可以得到这段时间内的速率，例如每秒读取的字节数。
+ */
+public class MetricsSnapshot {
+
+    private final long time;
+    private final Map<String, Long> counters;
+    private final Map<String, HistogramSnapshot> histograms;
+
+    /**
+     * @param time 取快照时的SystemClock.elapsedRealtime()
+     */
+    public MetricsSnapshot(long time, Map<String, Long> counters, Map<String, HistogramSnapshot> histograms) {
+        this.time = time;
+        this.counters = Collections.unmodifiableMap(counters);
+        this.histograms = Collections.unmodifiableMap(histograms);
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public Map<String, HistogramSnapshot> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * @return 没有该计数器时为0
+     */
+    public long getCounter(String name) {
+        Long value = counters.get(name);
+        return value != null ? value : 0;
+    }
+
+    public HistogramSnapshot getHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    /**
+     * 相对于之前一次快照，计数器每秒增加的数量
+     */
+    public double getRate(MetricsSnapshot previous, String name) {
+        long elapsed = time - previous.time;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (getCounter(name) - previous.getCounter(name)) * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot { " +
+                "time=" + time +
+                ", counters=" + counters +
+                ", histograms=" + histograms +
+                '}';
+    }
+}
@@ -0,0 +1,97 @@
+package com.clj.fastbluetooth.data;
+
+import java.util.Arrays;
+
+/**
+ * 把收到的数据写入文件或通道的配置
+ * 字节数和结束标记都设置时，结束标记在达到字节数之前开始才以它为准，否则以字节数为准；都不设置时一直接收到取消或断开。
+ */
+public class ReceiveOptions {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final long DEFAULT_PROGRESS_INTERVAL_MILLIS = 200;
+
+    private long maxBytes = -1;
+    private byte[] terminator;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean append = false;
+    private long progressIntervalMillis = DEFAULT_PROGRESS_INTERVAL_MILLIS;
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 收到该字节数后结束，小于0时不限制
+     * 之后到达的数据照常交给read()的回调
+     */
+    public ReceiveOptions setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public byte[] getTerminator() {
+        return terminator;
+    }
+
+    /**
+     * 收到这段字节时结束，结束标记本身不写入通道，为null时不检查
+     */
+    public ReceiveOptions setTerminator(byte[] terminator) {
+        if (terminator != null && terminator.length == 0) {
+            throw new IllegalArgumentException("terminator can not be empty");
+        }
+        this.terminator = terminator == null ? null : terminator.clone();
+        return this;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 写入通道前累积数据的直接缓冲区大小，攒满一次才写入，减少小块写入的系统调用
+     */
+    public ReceiveOptions setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public boolean isAppend() {
+        return append;
+    }
+
+    /**
+     * 写入文件时追加到末尾而不是覆盖，用于断线后续传
+     */
+    public ReceiveOptions setAppend(boolean append) {
+        this.append = append;
+        return this;
+    }
+
+    public long getProgressIntervalMillis() {
+        return progressIntervalMillis;
+    }
+
+    /**
+     * 进度回调的最小间隔，为0时每段数据写入后都回调
+     */
+    public ReceiveOptions setProgressIntervalMillis(long progressIntervalMillis) {
+        this.progressIntervalMillis = Math.max(0, progressIntervalMillis);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiveOptions { " +
+                "maxBytes=" + maxBytes +
+                ", terminator=" + Arrays.toString(terminator) +
+                ", bufferSize=" + bufferSize +
+                ", append=" + append +
+                ", progressIntervalMillis=" + progressIntervalMillis +
+                '}';
+    }
+}
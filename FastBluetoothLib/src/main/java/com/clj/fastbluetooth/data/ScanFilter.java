@@ -0,0 +1,125 @@
+package com.clj.fastbluetooth.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 扫描的筛选条件，设备满足任意一个条件即匹配
+ * 扫描开始时编译一次，名称较多时匹配耗时也只与设备名长度有关（正则除外）
+ */
+public class ScanFilter {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<String> namePrefixes = new ArrayList<>();
+    private final List<String> nameSuffixes = new ArrayList<>();
+    private final List<String> macs = new ArrayList<>();
+    private final List<Pattern> namePatterns = new ArrayList<>();
+
+    /**
+     * 设备名完全相同
+     */
+    public ScanFilter addNames(String... names) {
+        addAll(this.names, names);
+        return this;
+    }
+
+    public ScanFilter addNames(Collection<String> names) {
+        addAll(this.names, names);
+        return this;
+    }
+
+    /**
+     * 设备名以prefix开头，例如序列号前缀"BRT2021"
+     */
+    public ScanFilter addNamePrefixes(String... prefixes) {
+        addAll(this.namePrefixes, prefixes);
+        return this;
+    }
+
+    public ScanFilter addNameSuffixes(String... suffixes) {
+        addAll(this.nameSuffixes, suffixes);
+        return this;
+    }
+
+    /**
+     * MAC地址，大小写均可，格式不正确的地址会被忽略
+     */
+    public ScanFilter addMacs(String... macs) {
+        addAll(this.macs, macs);
+        return this;
+    }
+
+    public ScanFilter addMacs(Collection<String> macs) {
+        addAll(this.macs, macs);
+        return this;
+    }
+
+    /**
+     * 设备名匹配正则，每个正则都要单独匹配一次，能用前缀、后缀表达的条件不要用正则
+     */
+    public ScanFilter addNamePattern(String regex) {
+        if (regex != null) {
+            namePatterns.add(Pattern.compile(regex));
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return names.isEmpty() && namePrefixes.isEmpty() && nameSuffixes.isEmpty()
+                && macs.isEmpty() && namePatterns.isEmpty();
+    }
+
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public List<String> getNamePrefixes() {
+        return Collections.unmodifiableList(namePrefixes);
+    }
+
+    public List<String> getNameSuffixes() {
+        return Collections.unmodifiableList(nameSuffixes);
+    }
+
+    public List<String> getMacs() {
+        return Collections.unmodifiableList(macs);
+    }
+
+    public List<Pattern> getNamePatterns() {
+        return Collections.unmodifiableList(namePatterns);
+    }
+
+    private static void addAll(List<String> target, String[] values) {
+        if (values != null) {
+            for (String value : values) {
+                if (value != null) {
+                    target.add(value);
+                }
+            }
+        }
+    }
+
+    private static void addAll(List<String> target, Collection<String> values) {
+        if (values != null) {
+            for (String value : values) {
+                if (value != null) {
+                    target.add(value);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ScanFilter { " +
+                "names=" + names.size() +
+                ", namePrefixes=" + namePrefixes.size() +
+                ", nameSuffixes=" + nameSuffixes.size() +
+                ", macs=" + macs.size() +
+                ", namePatterns=" + namePatterns +
+                '}';
+    }
+}
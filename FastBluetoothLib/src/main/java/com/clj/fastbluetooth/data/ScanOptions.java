@@ -0,0 +1,81 @@
+package com.clj.fastbluetooth.data;
+
+/**
+ * 扫描的配置，在下一次扫描开始时生效
+ */
+public class ScanOptions {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    // 待筛选队列已满时丢弃新发现的设备
+    public static final int OVERFLOW_DROP_NEWEST = 0;
+    // 待筛选队列已满时丢弃最早排队的设备
+    public static final int OVERFLOW_DROP_OLDEST = 1;
+
+    // 不查找已配对设备，只通过扫描发现
+    public static final int BONDED_LOOKUP_NONE = 0;
+    // 先查找已配对设备，有设备满足筛选条件时直接结束，不再启动扫描
+    public static final int BONDED_LOOKUP_FIRST = 1;
+    // 启动扫描的同时查找已配对设备，满足筛选条件的已配对设备同样会立即结束扫描
+    public static final int BONDED_LOOKUP_PARALLEL = 2;
+
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int overflowPolicy = OVERFLOW_DROP_NEWEST;
+    private int bondedLookup = BONDED_LOOKUP_NONE;
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * 广播接收器与筛选任务之间的队列长度，筛选跟不上设备发现的速度时按overflowPolicy丢弃
+     */
+    public ScanOptions setQueueCapacity(int queueCapacity) {
+        if (queueCapacity > 0) {
+            this.queueCapacity = queueCapacity;
+        }
+        return this;
+    }
+
+    public int getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @param overflowPolicy {@link #OVERFLOW_DROP_NEWEST}或{@link #OVERFLOW_DROP_OLDEST}
+     */
+    public ScanOptions setOverflowPolicy(int overflowPolicy) {
+        if (overflowPolicy != OVERFLOW_DROP_NEWEST && overflowPolicy != OVERFLOW_DROP_OLDEST) {
+            throw new IllegalArgumentException("unknown overflowPolicy: " + overflowPolicy);
+        }
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    public int getBondedLookup() {
+        return bondedLookup;
+    }
+
+    /**
+     * 已配对设备的查找方式，查到的设备与扫描到的设备一样回调onScanning并按同样的条件筛选
+     *
+     * @param bondedLookup {@link #BONDED_LOOKUP_NONE}、{@link #BONDED_LOOKUP_FIRST}或{@link #BONDED_LOOKUP_PARALLEL}
+     */
+    public ScanOptions setBondedLookup(int bondedLookup) {
+        if (bondedLookup != BONDED_LOOKUP_NONE && bondedLookup != BONDED_LOOKUP_FIRST
+                && bondedLookup != BONDED_LOOKUP_PARALLEL) {
+            throw new IllegalArgumentException("unknown bondedLookup: " + bondedLookup);
+        }
+        this.bondedLookup = bondedLookup;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanOptions { " +
+                "queueCapacity=" + queueCapacity +
+                ", overflowPolicy=" + overflowPolicy +
+                ", bondedLookup=" + bondedLookup +
+                '}';
+    }
+}
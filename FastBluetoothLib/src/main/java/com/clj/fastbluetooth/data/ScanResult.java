@@ -0,0 +1,61 @@
+package com.clj.fastbluetooth.data;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * 一次扫描中发现的设备，不可变，设备再次被发现时由新的实例替换
+ */
+public class ScanResult {
+
+    private final BluetoothDevice device;
+    private final long firstSeenTime;
+    private final long lastSeenTime;
+    private final int seenCount;
+
+    public ScanResult(BluetoothDevice device, long seenTime) {
+        this(device, seenTime, seenTime, 1);
+    }
+
+    private ScanResult(BluetoothDevice device, long firstSeenTime, long lastSeenTime, int seenCount) {
+        this.device = device;
+        this.firstSeenTime = firstSeenTime;
+        this.lastSeenTime = lastSeenTime;
+        this.seenCount = seenCount;
+    }
+
+    /**
+     * 设备再次被发现后的结果
+     */
+    public ScanResult seenAgain(long seenTime) {
+        return new ScanResult(device, firstSeenTime, seenTime, seenCount + 1);
+    }
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    public long getFirstSeenTime() {
+        return firstSeenTime;
+    }
+
+    public long getLastSeenTime() {
+        return lastSeenTime;
+    }
+
+    /**
+     * 本次扫描中收到该设备ACTION_FOUND的次数
+     */
+    public int getSeenCount() {
+        return seenCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanResult { " +
+                "device=" + device +
+                ", firstSeenTime=" + firstSeenTime +
+                ", lastSeenTime=" + lastSeenTime +
+                ", seenCount=" + seenCount +
+                '}';
+    }
+}
@@ -0,0 +1,103 @@
+package com.clj.fastbluetooth.data;
+
+/**
+ * 一条操作轨迹事件，时间为System.nanoTime()，只能用于同一进程内的先后比较和计算间隔
+ */
+public class TraceEvent {
+
+    public static final int SCAN_STARTED = 1;
+    public static final int FIRST_DEVICE = 2;
+    public static final int TARGET_MATCHED = 3;
+    public static final int DISCOVERY_CANCELLED = 4;
+    public static final int SCAN_FINISHED = 5;
+    public static final int SOCKET_CREATED = 6;
+    public static final int CONNECT_ATTEMPT_STARTED = 7;
+    public static final int CONNECT_ATTEMPT_FAILED = 8;
+    public static final int CONNECTED = 9;
+    public static final int CONNECT_FAILED = 10;
+    public static final int FIRST_BYTE = 11;
+
+    private final int type;
+    private final long timeNanos;
+    private final long threadId;
+    private final String mac;
+    private final String detail;
+
+    public TraceEvent(int type, long timeNanos, long threadId, String mac, String detail) {
+        this.type = type;
+        this.timeNanos = timeNanos;
+        this.threadId = threadId;
+        this.mac = mac;
+        this.detail = detail;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    /**
+     * 与设备无关的事件为null
+     */
+    public String getMac() {
+        return mac;
+    }
+
+    /**
+     * 附加信息，例如连接方式名称，可以为null
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    public String getName() {
+        return nameOf(type);
+    }
+
+    public static String nameOf(int type) {
+        switch (type) {
+            case SCAN_STARTED:
+                return "scanStarted";
+            case FIRST_DEVICE:
+                return "firstDevice";
+            case TARGET_MATCHED:
+                return "targetMatched";
+            case DISCOVERY_CANCELLED:
+                return "discoveryCancelled";
+            case SCAN_FINISHED:
+                return "scanFinished";
+            case SOCKET_CREATED:
+                return "socketCreated";
+            case CONNECT_ATTEMPT_STARTED:
+                return "connectAttemptStarted";
+            case CONNECT_ATTEMPT_FAILED:
+                return "connectAttemptFailed";
+            case CONNECTED:
+                return "connected";
+            case CONNECT_FAILED:
+                return "connectFailed";
+            case FIRST_BYTE:
+                return "firstByte";
+            default:
+                return "unknown(" + type + ")";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TraceEvent { " +
+                "name=" + getName() +
+                ", timeNanos=" + timeNanos +
+                ", threadId=" + threadId +
+                ", mac=" + mac +
+                ", detail=" + detail +
+                '}';
+    }
+}
@@ -0,0 +1,111 @@
+package com.clj.fastbluetooth.data;
+
+/**
+ * 发送文件的配置
+ */
+public class TransferOptions {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+    public static final int DEFAULT_WINDOW = 8;
+    public static final long DEFAULT_PROGRESS_INTERVAL_MILLIS = 200;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int window = DEFAULT_WINDOW;
+    private long offset = 0;
+    private long length = -1;
+    private long maxBytesPerSecond = 0;
+    private long progressIntervalMillis = DEFAULT_PROGRESS_INTERVAL_MILLIS;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 每次从文件读取并交给写队列的字节数
+     */
+    public TransferOptions setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * 最多同时在写队列中的块数，前面的块写出后才读取下一块，发送速度跟随链路
+     */
+    public TransferOptions setWindow(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        this.window = window;
+        return this;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * 从文件的该位置开始发送，用于断线后续传
+     */
+    public TransferOptions setOffset(long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative: " + offset);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 发送的字节数，小于0时发送到文件末尾
+     */
+    public TransferOptions setLength(long length) {
+        this.length = length;
+        return this;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    /**
+     * 发送速率上限，为0时不限制，只受链路和窗口限制
+     */
+    public TransferOptions setMaxBytesPerSecond(long maxBytesPerSecond) {
+        this.maxBytesPerSecond = Math.max(0, maxBytesPerSecond);
+        return this;
+    }
+
+    public long getProgressIntervalMillis() {
+        return progressIntervalMillis;
+    }
+
+    /**
+     * 进度回调的最小间隔，为0时每块写出后都回调
+     */
+    public TransferOptions setProgressIntervalMillis(long progressIntervalMillis) {
+        this.progressIntervalMillis = Math.max(0, progressIntervalMillis);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferOptions { " +
+                "chunkSize=" + chunkSize +
+                ", window=" + window +
+                ", offset=" + offset +
+                ", length=" + length +
+                ", maxBytesPerSecond=" + maxBytesPerSecond +
+                ", progressIntervalMillis=" + progressIntervalMillis +
+                '}';
+    }
+}
@@ -0,0 +1,109 @@
+package com.clj.fastbluetooth.data;
+
+/**
+ * 写数据的配置，在连接建立后第一次写入时生效
+ */
+public class WriteOptions {
+
+    /**
+     * 写缓冲区已满时阻塞调用线程，直到有空间
+     * 在写线程上调用write()时不阻塞，超过上限也直接入队，否则写线程会等待它自己写出数据而死锁，
+     * 包括onWriteSuccess中继续写入、在写入回调中发起request()等情况
+     */
+    public static final int OVERFLOW_BLOCK = 0;
+    // 写缓冲区已满时直接回调onWriteError
+    public static final int OVERFLOW_FAIL_FAST = 1;
+    // 写缓冲区已满时丢弃最早排队的数据，被丢弃的数据回调onWriteError
+    public static final int OVERFLOW_DROP_OLDEST = 2;
+
+    private long lingerMillis = 0;
+    private int maxBatchSize = 0;
+    private long bufferLimit = 0;
+    private int overflowPolicy = OVERFLOW_FAIL_FAST;
+    private long lowWatermark = 0;
+    private long highWatermark = 0;
+
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    /**
+     * 合并写入时，第一条数据之后最多再等待多久，收集随后到达的数据一起写出
+     * 为0时只合并已经在队列中的数据，不额外等待
+     */
+    public WriteOptions setLingerMillis(long lingerMillis) {
+        this.lingerMillis = Math.max(0, lingerMillis);
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * 合并写入时一次socket写入的最大字节数，为0时不合并，每条数据单独write + flush
+     */
+    public WriteOptions setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(0, maxBatchSize);
+        return this;
+    }
+
+    public long getBufferLimit() {
+        return bufferLimit;
+    }
+
+    public int getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * 每个连接排队待写出的最大字节数，为0时不限制
+     *
+     * @param overflowPolicy {@link #OVERFLOW_BLOCK}、{@link #OVERFLOW_FAIL_FAST}或{@link #OVERFLOW_DROP_OLDEST}
+     */
+    public WriteOptions setBufferLimit(long bufferLimit, int overflowPolicy) {
+        if (overflowPolicy != OVERFLOW_BLOCK && overflowPolicy != OVERFLOW_FAIL_FAST
+                && overflowPolicy != OVERFLOW_DROP_OLDEST) {
+            throw new IllegalArgumentException("unknown overflowPolicy: " + overflowPolicy);
+        }
+        this.bufferLimit = Math.max(0, bufferLimit);
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    public long getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public long getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * 可写状态的高低水位，highWatermark为0时不回调可写状态
+     */
+    public WriteOptions setWatermarks(long lowWatermark, long highWatermark) {
+        if (lowWatermark < 0 || highWatermark < lowWatermark) {
+            throw new IllegalArgumentException("lowWatermark: " + lowWatermark + ", highWatermark: " + highWatermark);
+        }
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        return this;
+    }
+
+    public boolean isCoalescingEnabled() {
+        return maxBatchSize > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteOptions { " +
+                "lingerMillis=" + lingerMillis +
+                ", maxBatchSize=" + maxBatchSize +
+                ", bufferLimit=" + bufferLimit +
+                ", overflowPolicy=" + overflowPolicy +
+                ", lowWatermark=" + lowWatermark +
+                ", highWatermark=" + highWatermark +
+                '}';
+    }
+}
@@ -9,6 +9,20 @@ public class BluetoothException implements Serializable {
 
     public static final int ERROR_DISCONNECTION = 100;
     public static final int ERROR_IO = 101;
+    public static final int ERROR_BUFFER_OVERFLOW = 102;
+    public static final int ERROR_FRAME = 103;
+    public static final int ERROR_BUFFER_FULL = 104;
+    public static final int ERROR_TIMEOUT = 105;
+    public static final int ERROR_CONNECT = 106;
+    public static final int ERROR_CONNECTION_LIMIT = 107;
+    // 以下为可以识别原因的连接失败，无法识别时为ERROR_CONNECT
+    public static final int ERROR_CONNECT_TIMEOUT = 108;
+    public static final int ERROR_CONNECT_REFUSED = 109;
+    public static final int ERROR_SERVICE_NOT_FOUND = 110;
+    public static final int ERROR_BOND = 111;
+    public static final int ERROR_CANCELLED = 112;
+    // 同一个设备已经在连接中
+    public static final int ERROR_BUSY = 113;
 
     private int code;
     private String description;
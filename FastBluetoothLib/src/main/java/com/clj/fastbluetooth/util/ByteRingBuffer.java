@@ -0,0 +1,116 @@
+package com.clj.fastbluetooth.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+
+/**
+ * 接收数据的累积缓冲区
+ * 可读区域[readerIndex, writerIndex)始终连续，消费者直接在{@link #array()}上读取，无需拷贝；
+ * 写入空间不足时先回收已读部分，仍不足再按2倍扩容，直到maxCapacity为止。
+ * 非线程安全，只允许读线程访问。
+ */
+public class ByteRingBuffer {
+
+    private final int maxCapacity;
+    private byte[] buffer;
+    private int readerIndex;
+    private int writerIndex;
+
+    public ByteRingBuffer(int initialCapacity, int maxCapacity) {
+        if (initialCapacity <= 0 || maxCapacity < initialCapacity) {
+            throw new IllegalArgumentException("initialCapacity: " + initialCapacity + ", maxCapacity: " + maxCapacity);
+        }
+        this.maxCapacity = maxCapacity;
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public byte[] array() {
+        return buffer;
+    }
+
+    public int readerIndex() {
+        return readerIndex;
+    }
+
+    public int readableBytes() {
+        return writerIndex - readerIndex;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public int maxCapacity() {
+        return maxCapacity;
+    }
+
+    public boolean isFull() {
+        return readableBytes() >= maxCapacity;
+    }
+
+    /**
+     * 标记前n个可读字节已被消费
+     */
+    public void skip(int n) {
+        if (n < 0 || n > readableBytes()) {
+            throw new IndexOutOfBoundsException("skip " + n + ", readable " + readableBytes());
+        }
+        readerIndex += n;
+        if (readerIndex == writerIndex) {
+            readerIndex = 0;
+            writerIndex = 0;
+        }
+    }
+
+    public void clear() {
+        readerIndex = 0;
+        writerIndex = 0;
+    }
+
+    /**
+     * 从输入流读取一次数据到缓冲区尾部，会阻塞直到有数据可读
+     *
+     * @return 读到的字节数，输入流结束时返回-1
+     * @throws BufferOverflowException 缓冲区已达到maxCapacity且没有被消费
+     */
+    public int readFrom(InputStream in) throws IOException {
+        ensureWritable(1);
+        int n = in.read(buffer, writerIndex, buffer.length - writerIndex);
+        if (n > 0) {
+            writerIndex += n;
+        }
+        return n;
+    }
+
+    public void write(byte[] src, int offset, int length) {
+        ensureWritable(length);
+        System.arraycopy(src, offset, buffer, writerIndex, length);
+        writerIndex += length;
+    }
+
+    private void ensureWritable(int minWritable) {
+        if (buffer.length - writerIndex >= minWritable) {
+            return;
+        }
+        int readable = readableBytes();
+        if (readable + minWritable > maxCapacity) {
+            throw new BufferOverflowException();
+        }
+
+        // 回收已读部分就足够时不扩容
+        if (buffer.length - readable >= minWritable) {
+            System.arraycopy(buffer, readerIndex, buffer, 0, readable);
+        } else {
+            int newCapacity = buffer.length;
+            while (newCapacity - readable < minWritable) {
+                newCapacity = Math.min(newCapacity << 1, maxCapacity);
+            }
+            byte[] newBuffer = new byte[newCapacity];
+            System.arraycopy(buffer, readerIndex, newBuffer, 0, readable);
+            buffer = newBuffer;
+        }
+        readerIndex = 0;
+        writerIndex = readable;
+    }
+}
@@ -27,6 +27,10 @@ public class CycleThread extends Thread {
         }
     }
 
+    public boolean isRunning() {
+        return this.isCycleRun;
+    }
+
     @Override
     public synchronized void start() {
         this.isCycleRun = true;
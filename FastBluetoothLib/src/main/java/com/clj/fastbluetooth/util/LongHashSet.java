@@ -0,0 +1,115 @@
+package com.clj.fastbluetooth.util;
+
+import java.util.Arrays;
+
+/**
+ * 存放非负long的开放寻址集合，不装箱，不是线程安全的
+ * 每个值按加入的顺序编号，{@link #indexOf(long)}返回编号，调用方可以用它索引自己的数组。
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = -1L;
+
+    // 开放寻址表，长度为2的幂，装载因子不超过1/2
+    private long[] mKeys;
+    private int[] mIndexes;
+    private int mSize;
+
+    public LongHashSet() {
+        this(8);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @return 集合中原来没有该值时返回true，新值的编号为size() - 1
+     */
+    public boolean add(long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("key must not be negative: " + key);
+        }
+        int slot = findSlot(key);
+        if (mKeys[slot] == key) {
+            return false;
+        }
+        mKeys[slot] = key;
+        mIndexes[slot] = mSize;
+        mSize++;
+        if (mSize << 1 > mKeys.length) {
+            rehash(mKeys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return 加入的顺序，从0开始，不存在时返回-1
+     */
+    public int indexOf(long key) {
+        if (key < 0) {
+            return -1;
+        }
+        int slot = findSlot(key);
+        return mKeys[slot] == key ? mIndexes[slot] : -1;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(mKeys, EMPTY);
+        mSize = 0;
+    }
+
+    /**
+     * 线性探测，返回key所在的槽或者第一个空槽
+     */
+    private int findSlot(long key) {
+        int mask = mKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (mKeys[slot] != EMPTY && mKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int tableSize) {
+        long[] oldKeys = mKeys;
+        int[] oldIndexes = mIndexes;
+        allocate(tableSize);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                mKeys[slot] = oldKeys[i];
+                mIndexes[slot] = oldIndexes[i];
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        mKeys = new long[tableSize];
+        mIndexes = new int[tableSize];
+        Arrays.fill(mKeys, EMPTY);
+    }
+
+    private static int mix(long key) {
+        // 同一厂商的设备高3字节相同，打散后再取低位
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int size = Integer.highestOneBit(Math.max(expectedSize, 4) - 1) << 2;
+        return Math.max(size, 8);
+    }
+}
@@ -0,0 +1,54 @@
+package com.clj.fastbluetooth.util;
+
+import com.clj.fastbluetooth.utils.HexUtil;
+
+/**
+ * MAC地址与long之间的转换
+ * 6个字节放在long的低48位，格式不正确时返回{@link #INVALID}，转换过程不分配对象
+ */
+public class MacUtils {
+
+    public static final long INVALID = -1L;
+
+    /**
+     * @param mac 形如"00:11:22:AA:BB:CC"，大小写均可
+     */
+    public static long pack(String mac) {
+        if (mac == null || mac.length() != 17) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = 0; i < 6; i++) {
+            int pos = i * 3;
+            if (i > 0 && mac.charAt(pos - 1) != ':') {
+                return INVALID;
+            }
+            int high = HexUtil.charToByte(mac.charAt(pos));
+            int low = HexUtil.charToByte(mac.charAt(pos + 1));
+            if (high < 0 || low < 0) {
+                return INVALID;
+            }
+            value = (value << 8) | (high << 4) | low;
+        }
+        return value;
+    }
+
+    /**
+     * @return 大写的MAC地址，value不是有效的MAC时返回null
+     */
+    public static String unpack(long value) {
+        if (value < 0 || value > 0xFFFFFFFFFFFFL) {
+            return null;
+        }
+        char[] chars = new char[17];
+        for (int i = 5; i >= 0; i--) {
+            int pos = i * 3;
+            HexUtil.encodeByte((int) value, chars, pos, false);
+            if (i > 0) {
+                chars[pos - 1] = ':';
+            }
+            value >>>= 8;
+        }
+        return new String(chars);
+    }
+}
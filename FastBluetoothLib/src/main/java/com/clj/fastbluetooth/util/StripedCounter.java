@@ -0,0 +1,49 @@
+package com.clj.fastbluetooth.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器，读写线程各自累加到不同的槽位，避免多线程竞争同一个AtomicLong
+ * 每个槽位之间间隔一个缓存行，读取时把所有槽位相加。
+ */
+public class StripedCounter {
+
+    // 8个long为64字节，一个槽位独占一个缓存行
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray mCells;
+    private final int mMask;
+
+    public StripedCounter() {
+        int stripes = 1;
+        int processors = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+        while (stripes < processors) {
+            stripes <<= 1;
+        }
+        mMask = stripes - 1;
+        mCells = new AtomicLongArray(stripes * PADDING);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        int stripe = (int) Thread.currentThread().getId() & mMask;
+        mCells.addAndGet(stripe * PADDING, delta);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < mCells.length(); i += PADDING) {
+            sum += mCells.get(i);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCells.length(); i += PADDING) {
+            mCells.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.clj.fastbluetooth.utils;
+
+/**
+ * 在后台线程输出日志
+ * 调用线程只把消息放进预先分配的环形缓冲区，写logcat等耗时操作由后台线程完成；
+ * 后台线程定时或在缓冲区过半时批量输出；缓冲区满时丢弃新的消息并计数，之后补一条丢弃条数的日志，调用线程不会被阻塞。
+ * {@link #close()}后剩余的消息会输出完，之后的消息直接交给目标输出。
+ */
+public class AsyncLogSink implements LogSink, Runnable {
+
+    public static final int DEFAULT_CAPACITY = 512;
+    // 后台线程空闲时的最长等待，消息最多延迟这么久输出
+    private static final long FLUSH_INTERVAL_MS = 50;
+
+    private final LogSink mTarget;
+
+    private final int[] mLevels;
+    private final String[] mTags;
+    private final String[] mMessages;
+    private int mHead;
+    private int mSize;
+    private long mDropped;
+    private boolean mWaiting;
+    private boolean mClosed;
+
+    public AsyncLogSink(LogSink target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+
+    public AsyncLogSink(LogSink target, int capacity) {
+        if (target == null) {
+            throw new IllegalArgumentException("LogSink can not be Null!");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        mTarget = target;
+        mLevels = new int[capacity];
+        mTags = new String[capacity];
+        mMessages = new String[capacity];
+        Thread thread = new Thread(this, "FastBluetooth-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void log(int level, String tag, String message) {
+        synchronized (this) {
+            if (!mClosed) {
+                if (mSize == mLevels.length) {
+                    mDropped++;
+                    return;
+                }
+                int index = (mHead + mSize) % mLevels.length;
+                mLevels[index] = level;
+                mTags[index] = tag;
+                mMessages[index] = message;
+                mSize++;
+                // 积累到一半才唤醒后台线程，否则等它定时醒来，避免每条消息都要唤醒一次
+                if (mWaiting && mSize >= (mLevels.length + 1) / 2) {
+                    notify();
+                }
+                return;
+            }
+        }
+        mTarget.log(level, tag, message);
+    }
+
+    public LogSink getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * 丢弃的消息总数
+     */
+    public synchronized long getDroppedCount() {
+        return mDropped;
+    }
+
+    /**
+     * 停止后台线程，缓冲区中剩余的消息会输出完
+     */
+    public void close() {
+        synchronized (this) {
+            mClosed = true;
+            notify();
+        }
+    }
+
+    @Override
+    public void run() {
+        int capacity = mLevels.length;
+        int[] levels = new int[capacity];
+        String[] tags = new String[capacity];
+        String[] messages = new String[capacity];
+        long reportedDropped = 0;
+
+        while (true) {
+            int count;
+            long dropped;
+            boolean closed;
+            synchronized (this) {
+                while (mSize == 0 && !mClosed) {
+                    mWaiting = true;
+                    try {
+                        wait(FLUSH_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        // 只在close()时退出
+                    }
+                    mWaiting = false;
+                }
+                // 整段取出后释放锁，输出时不影响调用线程继续放入
+                count = mSize;
+                for (int i = 0; i < count; i++) {
+                    int index = (mHead + i) % capacity;
+                    levels[i] = mLevels[index];
+                    tags[i] = mTags[index];
+                    messages[i] = mMessages[index];
+                    mTags[index] = null;
+                    mMessages[index] = null;
+                }
+                mHead = (mHead + count) % capacity;
+                mSize = 0;
+                dropped = mDropped;
+                closed = mClosed;
+            }
+
+            for (int i = 0; i < count; i++) {
+                output(levels[i], tags[i], messages[i]);
+                tags[i] = null;
+                messages[i] = null;
+            }
+            if (dropped > reportedDropped) {
+                output(BluetoothLog.WARN, "FastBluetooth", (dropped - reportedDropped) + " log messages dropped");
+                reportedDropped = dropped;
+            }
+            if (closed && count == 0) {
+                return;
+            }
+        }
+    }
+
+    private void output(int level, String tag, String message) {
+        try {
+            mTarget.log(level, tag, message);
+        } catch (RuntimeException e) {
+            // 目标输出出错不影响后续日志
+        }
+    }
+}
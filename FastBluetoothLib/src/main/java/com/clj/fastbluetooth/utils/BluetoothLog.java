@@ -3,29 +3,307 @@ package com.clj.fastbluetooth.utils;
 
 import android.util.Log;
 
+
+/**
+ * 日志
+ * 按级别过滤，低于{@link #setLevel(int)}的日志直接返回；
+ * 带格式参数或{@link MessageSupplier}的方法只在需要输出时才拼接消息，关闭时只多一次级别判断；
+ * 格式只支持%s和%d，直接拼接，不经过String.format。
+ * 固定参数个数的重载不会创建可变参数数组，读写线程等频繁调用的地方优先使用。
+ * 消息交给{@link LogSink}输出，默认直接写logcat，也可以换成{@link AsyncLogSink}在后台线程输出。
+ */
 public final class BluetoothLog {
 
+    // 与android.util.Log的级别一致
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int NONE = Integer.MAX_VALUE;
+
+    public static final int DEFAULT_TRAFFIC_MAX_BYTES = 256;
+
+    /**
+     * 输出到logcat
+     */
+    public static final LogSink LOGCAT = new LogSink() {
+        @Override
+        public void log(int level, String tag, String message) {
+            switch (level) {
+                case VERBOSE:
+                    Log.v(tag, message);
+                    break;
+                case DEBUG:
+                    Log.d(tag, message);
+                    break;
+                case INFO:
+                    Log.i(tag, message);
+                    break;
+                case WARN:
+                    Log.w(tag, message);
+                    break;
+                default:
+                    Log.e(tag, message);
+                    break;
+            }
+        }
+    };
+
+    /**
+     * 总开关，false时所有级别都不输出
+     */
     public static boolean isPrint = true;
     private static final String defaultTag = "FastBluetooth";
 
+    private static volatile int sLevel = VERBOSE;
+    private static volatile LogSink sSink = LOGCAT;
+    private static volatile boolean sTraffic;
+    private static volatile int sTrafficMaxBytes = DEFAULT_TRAFFIC_MAX_BYTES;
+
+    /**
+     * 延迟生成的日志消息，只在需要输出时调用
+     */
+    public interface MessageSupplier {
+        String get();
+    }
+
+    private BluetoothLog() {
+    }
+
+    /**
+     * 设置输出的最低级别，{@link #NONE}表示全部关闭
+     */
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    public static int getLevel() {
+        return sLevel;
+    }
+
+    /**
+     * 设置日志的输出目标，传null恢复为{@link #LOGCAT}
+     */
+    public static void setSink(LogSink sink) {
+        sSink = sink != null ? sink : LOGCAT;
+    }
+
+    public static LogSink getSink() {
+        return sSink;
+    }
+
+    /**
+     * 收发数据的十六进制转储，以{@link #DEBUG}级别输出
+     *
+     * @param maxBytes 每段数据最多转储的字节数，超出的部分只输出字节数，小于0时不限制
+     */
+    public static void setTrafficEnabled(boolean enabled, int maxBytes) {
+        sTrafficMaxBytes = maxBytes;
+        sTraffic = enabled;
+    }
+
+    public static boolean isLoggable(int level) {
+        return isPrint && level >= sLevel;
+    }
+
+    public static boolean isTrafficLoggable() {
+        return sTraffic && isLoggable(DEBUG);
+    }
+
+    public static void v(String msg) {
+        log(VERBOSE, msg);
+    }
+
+    public static void v(String format, Object arg) {
+        if (isLoggable(VERBOSE))
+            log(VERBOSE, format(format, arg));
+    }
+
+    public static void v(String format, Object arg1, Object arg2) {
+        if (isLoggable(VERBOSE))
+            log(VERBOSE, format(format, arg1, arg2));
+    }
+
+    public static void v(String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(VERBOSE))
+            log(VERBOSE, format(format, arg1, arg2, arg3));
+    }
+
+    public static void v(String format, Object... args) {
+        if (isLoggable(VERBOSE))
+            log(VERBOSE, format(format, args));
+    }
+
+    public static void v(MessageSupplier supplier) {
+        if (isLoggable(VERBOSE))
+            log(VERBOSE, supplier.get());
+    }
+
     public static void d(String msg) {
-        if (isPrint && msg != null)
-            Log.d(defaultTag, msg);
+        log(DEBUG, msg);
+    }
+
+    public static void d(String format, Object arg) {
+        if (isLoggable(DEBUG))
+            log(DEBUG, format(format, arg));
+    }
+
+    public static void d(String format, Object arg1, Object arg2) {
+        if (isLoggable(DEBUG))
+            log(DEBUG, format(format, arg1, arg2));
+    }
+
+    public static void d(String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(DEBUG))
+            log(DEBUG, format(format, arg1, arg2, arg3));
+    }
+
+    public static void d(String format, Object... args) {
+        if (isLoggable(DEBUG))
+            log(DEBUG, format(format, args));
+    }
+
+    public static void d(MessageSupplier supplier) {
+        if (isLoggable(DEBUG))
+            log(DEBUG, supplier.get());
     }
 
     public static void i(String msg) {
-        if (isPrint && msg != null)
-            Log.i(defaultTag, msg);
+        log(INFO, msg);
+    }
+
+    public static void i(String format, Object arg) {
+        if (isLoggable(INFO))
+            log(INFO, format(format, arg));
+    }
+
+    public static void i(String format, Object arg1, Object arg2) {
+        if (isLoggable(INFO))
+            log(INFO, format(format, arg1, arg2));
+    }
+
+    public static void i(String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(INFO))
+            log(INFO, format(format, arg1, arg2, arg3));
+    }
+
+    public static void i(String format, Object... args) {
+        if (isLoggable(INFO))
+            log(INFO, format(format, args));
+    }
+
+    public static void i(MessageSupplier supplier) {
+        if (isLoggable(INFO))
+            log(INFO, supplier.get());
     }
 
     public static void w(String msg) {
-        if (isPrint && msg != null)
-            Log.w(defaultTag, msg);
+        log(WARN, msg);
+    }
+
+    public static void w(String format, Object arg) {
+        if (isLoggable(WARN))
+            log(WARN, format(format, arg));
+    }
+
+    public static void w(String format, Object arg1, Object arg2) {
+        if (isLoggable(WARN))
+            log(WARN, format(format, arg1, arg2));
+    }
+
+    public static void w(String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(WARN))
+            log(WARN, format(format, arg1, arg2, arg3));
+    }
+
+    public static void w(String format, Object... args) {
+        if (isLoggable(WARN))
+            log(WARN, format(format, args));
+    }
+
+    public static void w(MessageSupplier supplier) {
+        if (isLoggable(WARN))
+            log(WARN, supplier.get());
     }
 
     public static void e(String msg) {
-        if (isPrint && msg != null)
-            Log.e(defaultTag, msg);
+        log(ERROR, msg);
+    }
+
+    public static void e(String format, Object arg) {
+        if (isLoggable(ERROR))
+            log(ERROR, format(format, arg));
+    }
+
+    public static void e(String format, Object arg1, Object arg2) {
+        if (isLoggable(ERROR))
+            log(ERROR, format(format, arg1, arg2));
+    }
+
+    public static void e(String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(ERROR))
+            log(ERROR, format(format, arg1, arg2, arg3));
+    }
+
+    public static void e(String format, Object... args) {
+        if (isLoggable(ERROR))
+            log(ERROR, format(format, args));
+    }
+
+    public static void e(MessageSupplier supplier) {
+        if (isLoggable(ERROR))
+            log(ERROR, supplier.get());
+    }
+
+    /**
+     * 输出一段收发数据的十六进制转储，调用前先用{@link #isTrafficLoggable()}判断，
+     * 关闭时读写线程不会为此做任何拷贝或拼接
+     *
+     * @param direction 例如"rx"、"tx"
+     */
+    public static void traffic(String mac, String direction, byte[] data, int offset, int length) {
+        if (!isTrafficLoggable()) {
+            return;
+        }
+        int maxBytes = sTrafficMaxBytes;
+        String header = mac + ' ' + direction + ' ' + length + " bytes\n";
+        log(DEBUG, header + HexDump.dump(data, offset, length, maxBytes));
+    }
+
+    private static void log(int level, String msg) {
+        if (msg != null && isLoggable(level)) {
+            sSink.log(level, defaultTag, msg);
+        }
+    }
+
+    /**
+     * 依次用参数替换%s和%d，%%输出为%，其余字符原样输出；
+     * 参数不够时保留占位符，多余的参数忽略，不会抛出异常
+     */
+    static String format(String format, Object... args) {
+        // 预估长度一次分配够，避免拼接过程中扩容
+        int capacity = format.length();
+        for (Object arg : args) {
+            capacity += arg instanceof String ? ((String) arg).length() : 16;
+        }
+        StringBuilder sb = new StringBuilder(capacity);
+        int argIndex = 0;
+        int start = 0;
+        int length = format.length();
+        int i;
+        while ((i = format.indexOf('%', start)) >= 0 && i + 1 < length) {
+            char next = format.charAt(i + 1);
+            if (next == '%') {
+                sb.append(format, start, i + 1);
+            } else if ((next == 's' || next == 'd') && argIndex < args.length) {
+                sb.append(format, start, i).append(args[argIndex++]);
+            } else {
+                sb.append(format, start, i + 2);
+            }
+            start = i + 2;
+        }
+        return sb.append(format, start, length).toString();
     }
 
 }
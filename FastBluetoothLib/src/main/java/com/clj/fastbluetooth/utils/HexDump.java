@@ -0,0 +1,135 @@
+package com.clj.fastbluetooth.utils;
+
+import java.io.IOException;
+
+/**
+ * 流式的十六进制转储，数据可以分多次传入，每16个字节输出一行：
+ * <pre>
+ * 00000000  48 65 6c 6c 6f 2c 20 42  6c 75 65 74 6f 6f 74 68  |Hello, Bluetooth|
+ * </pre>
+ * 最多输出maxBytes个字节，超出的部分只计数，{@link #finish()}时输出省略的字节数，
+ * 一帧很大时日志长度仍然有上限。不是线程安全的。
+ */
+public class HexDump {
+
+    public static final int BYTES_PER_LINE = 16;
+
+    // 偏移8位 + 2个空格，每个字节3个字符，第8个字节后多1个空格，再1个空格后是|ASCII|和换行
+    private static final int HEX_START = 10;
+    private static final int ASCII_START = HEX_START + BYTES_PER_LINE * 3 + 1 + 1;
+    private static final int LINE_LENGTH = ASCII_START + 1 + BYTES_PER_LINE + 2;
+
+    private final Appendable mOut;
+    private final long mMaxBytes;
+    private final byte[] mLine = new byte[BYTES_PER_LINE];
+    // 一行先填到字符数组里再整行输出，重复使用
+    private final char[] mLineChars = new char[LINE_LENGTH];
+    private final StringBuilder mLineBuilder = new StringBuilder(LINE_LENGTH);
+    private int mLineLength;
+    private long mTotalBytes;
+    private long mDumpedBytes;
+
+    /**
+     * @param maxBytes 最多输出的字节数，小于0时不限制
+     */
+    public HexDump(Appendable out, long maxBytes) {
+        if (out == null) {
+            throw new IllegalArgumentException("Appendable can not be Null!");
+        }
+        mOut = out;
+        mMaxBytes = maxBytes < 0 ? Long.MAX_VALUE : maxBytes;
+    }
+
+    /**
+     * 一次性转储，最多输出maxBytes个字节
+     */
+    public static String dump(byte[] data, int offset, int length, int maxBytes) {
+        int dumped = maxBytes < 0 ? length : Math.min(length, maxBytes);
+        StringBuilder sb = new StringBuilder(((dumped + BYTES_PER_LINE - 1) / BYTES_PER_LINE) * LINE_LENGTH + 32);
+        HexDump dump = new HexDump(sb, maxBytes);
+        try {
+            dump.write(data, offset, length);
+            dump.finish();
+        } catch (IOException e) {
+            // StringBuilder不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    public HexDump write(byte[] data, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length
+                    + ", arrayLength=" + data.length);
+        }
+        mTotalBytes += length;
+        // 当前行中还没输出的字节也计入上限
+        int end = offset + (int) Math.max(0, Math.min(length, mMaxBytes - mDumpedBytes - mLineLength));
+        for (int i = offset; i < end; i++) {
+            mLine[mLineLength++] = data[i];
+            if (mLineLength == BYTES_PER_LINE) {
+                flushLine();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 输出不满一行的剩余数据和省略的字节数，之后还可以继续write，从新的一行开始
+     */
+    public void finish() throws IOException {
+        if (mLineLength > 0) {
+            flushLine();
+        }
+        long omitted = mTotalBytes - mDumpedBytes;
+        if (omitted > 0) {
+            mOut.append("... ").append(String.valueOf(omitted)).append(" more bytes\n");
+            mTotalBytes = mDumpedBytes;
+        }
+    }
+
+    /**
+     * 传入的总字节数，包含省略的部分
+     */
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    private void flushLine() throws IOException {
+        char[] chars = mLineChars;
+        long lineOffset = mDumpedBytes;
+        for (int i = 0; i < 4; i++) {
+            HexUtil.encodeByte((int) (lineOffset >>> (24 - i * 8)), chars, i * 2, true);
+        }
+        chars[8] = ' ';
+        chars[9] = ' ';
+        int j = HEX_START;
+        for (int i = 0; i < BYTES_PER_LINE; i++) {
+            if (i == BYTES_PER_LINE / 2) {
+                chars[j++] = ' ';
+            }
+            if (i < mLineLength) {
+                j += HexUtil.encodeByte(mLine[i], chars, j, true);
+            } else {
+                chars[j++] = ' ';
+                chars[j++] = ' ';
+            }
+            chars[j++] = ' ';
+        }
+        chars[j++] = ' ';
+        chars[j++] = '|';
+        for (int i = 0; i < mLineLength; i++) {
+            int b = mLine[i] & 0xFF;
+            chars[j++] = b >= 0x20 && b < 0x7F ? (char) b : '.';
+        }
+        chars[j++] = '|';
+        chars[j++] = '\n';
+
+        StringBuilder line = mLineBuilder;
+        line.setLength(0);
+        line.append(chars, 0, j);
+        mOut.append(line);
+        mDumpedBytes += mLineLength;
+        mLineLength = 0;
+    }
+}
@@ -1,5 +1,12 @@
 package com.clj.fastbluetooth.utils;
 
+import java.io.IOException;
+
+/**
+ * 十六进制编解码
+ * 编码查表取字符，解码查ASCII表取数值，不区分大小写；
+ * 除返回新数组或String的便捷方法外，都直接读写调用方传入的char[]、byte[]、Appendable或CharSequence，不创建中间对象。
+ */
 public class HexUtil {
 
     private static final char[] DIGITS_LOWER = {'0', '1', '2', '3', '4', '5',
@@ -8,6 +15,19 @@ public class HexUtil {
     private static final char[] DIGITS_UPPER = {'0', '1', '2', '3', '4', '5',
             '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
 
+    // ASCII字符对应的数值，不是十六进制字符时为-1
+    private static final byte[] DIGIT_VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < DIGIT_VALUES.length; i++) {
+            DIGIT_VALUES[i] = -1;
+        }
+        for (int i = 0; i < 16; i++) {
+            DIGIT_VALUES[DIGITS_LOWER[i]] = (byte) i;
+            DIGIT_VALUES[DIGITS_UPPER[i]] = (byte) i;
+        }
+    }
+
     public static char[] encodeHex(byte[] data) {
         return encodeHex(data, true);
     }
@@ -19,12 +39,8 @@ public class HexUtil {
     protected static char[] encodeHex(byte[] data, char[] toDigits) {
         if (data == null)
             return null;
-        int l = data.length;
-        char[] out = new char[l << 1];
-        for (int i = 0, j = 0; i < l; i++) {
-            out[j++] = toDigits[(0xF0 & data[i]) >>> 4];
-            out[j++] = toDigits[0x0F & data[i]];
-        }
+        char[] out = new char[data.length << 1];
+        encode(data, 0, data.length, out, 0, toDigits);
         return out;
     }
 
@@ -46,20 +62,85 @@ public class HexUtil {
         return formatHexString(data, false);
     }
 
+    /**
+     * @param addSpace 为true时每个字节之间用一个空格分隔，末尾没有空格
+     */
     public static String formatHexString(byte[] data, boolean addSpace) {
         if (data == null || data.length < 1)
             return null;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < data.length; i++) {
-            String hex = Integer.toHexString(data[i] & 0xFF);
-            if (hex.length() == 1) {
-                hex = '0' + hex;
+        if (!addSpace) {
+            return encodeHexStr(data, DIGITS_LOWER);
+        }
+        char[] out = new char[data.length * 3 - 1];
+        for (int i = 0, j = 0; i < data.length; i++) {
+            if (i > 0) {
+                out[j++] = ' ';
             }
-            sb.append(hex);
-            if (addSpace)
-                sb.append(" ");
+            out[j++] = DIGITS_LOWER[(data[i] >>> 4) & 0x0F];
+            out[j++] = DIGITS_LOWER[data[i] & 0x0F];
         }
-        return sb.toString().trim();
+        return new String(out);
+    }
+
+    /**
+     * 编码到dst中，dst需要至少有length * 2个字符的空间
+     *
+     * @return 写入的字符数
+     */
+    public static int encode(byte[] src, int offset, int length, char[] dst, int dstOffset, boolean toLowerCase) {
+        checkRange(src.length, offset, length);
+        checkRange(dst.length, dstOffset, length << 1);
+        return encode(src, offset, length, dst, dstOffset, toLowerCase ? DIGITS_LOWER : DIGITS_UPPER);
+    }
+
+    /**
+     * 把一个字节编码为两个字符写入dst
+     *
+     * @return 写入的字符数，总是2
+     */
+    public static int encodeByte(int b, char[] dst, int dstOffset, boolean toLowerCase) {
+        char[] toDigits = toLowerCase ? DIGITS_LOWER : DIGITS_UPPER;
+        dst[dstOffset] = toDigits[(b >>> 4) & 0x0F];
+        dst[dstOffset + 1] = toDigits[b & 0x0F];
+        return 2;
+    }
+
+    private static int encode(byte[] src, int offset, int length, char[] dst, int dstOffset, char[] toDigits) {
+        int j = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            dst[j++] = toDigits[(src[i] >>> 4) & 0x0F];
+            dst[j++] = toDigits[src[i] & 0x0F];
+        }
+        return j - dstOffset;
+    }
+
+    /**
+     * 编码后追加到out中
+     */
+    public static StringBuilder encode(byte[] src, int offset, int length, StringBuilder out, boolean toLowerCase) {
+        checkRange(src.length, offset, length);
+        char[] toDigits = toLowerCase ? DIGITS_LOWER : DIGITS_UPPER;
+        // 先扩展长度再逐个setCharAt，比逐个append少了每次的扩容检查
+        int j = out.length();
+        out.setLength(j + (length << 1));
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out.setCharAt(j++, toDigits[(src[i] >>> 4) & 0x0F]);
+            out.setCharAt(j++, toDigits[src[i] & 0x0F]);
+        }
+        return out;
+    }
+
+    /**
+     * 编码后追加到out中，例如Writer
+     */
+    public static <A extends Appendable> A encode(byte[] src, int offset, int length, A out, boolean toLowerCase)
+            throws IOException {
+        checkRange(src.length, offset, length);
+        char[] toDigits = toLowerCase ? DIGITS_LOWER : DIGITS_UPPER;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out.append(toDigits[(src[i] >>> 4) & 0x0F]).append(toDigits[src[i] & 0x0F]);
+        }
+        return out;
     }
 
     public static byte[] decodeHex(char[] data) {
@@ -70,52 +151,112 @@ public class HexUtil {
         }
 
         byte[] out = new byte[len >> 1];
+        decode(data, 0, len, out, 0);
+        return out;
+    }
 
-        // two characters form the hex value.
-        for (int i = 0, j = 0; j < len; i++) {
-            int f = toDigit(data[j], j) << 4;
-            j++;
-            f = f | toDigit(data[j], j);
-            j++;
-            out[i] = (byte) (f & 0xFF);
+    /**
+     * 解码src[offset, offset + length)到dst中，dst需要至少有length / 2个字节的空间
+     *
+     * @return 写入的字节数
+     * @throws IllegalArgumentException 字符数为奇数或包含非十六进制字符
+     */
+    public static int decode(char[] src, int offset, int length, byte[] dst, int dstOffset) {
+        checkRange(src.length, offset, length);
+        if ((length & 0x01) != 0) {
+            throw new IllegalArgumentException("Odd number of characters.");
+        }
+        checkRange(dst.length, dstOffset, length >> 1);
+        int j = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i += 2) {
+            dst[j++] = decodePair(src[i], src[i + 1], i);
         }
+        return j - dstOffset;
+    }
 
-        return out;
+    /**
+     * 解码src中[start, end)之间的字符到dst中，直接读取，不拷贝输入
+     *
+     * @return 写入的字节数
+     * @throws IllegalArgumentException 字符数为奇数或包含非十六进制字符
+     */
+    public static int decode(CharSequence src, int start, int end, byte[] dst, int dstOffset) {
+        checkRange(src.length(), start, end - start);
+        int length = end - start;
+        if ((length & 0x01) != 0) {
+            throw new IllegalArgumentException("Odd number of characters.");
+        }
+        checkRange(dst.length, dstOffset, length >> 1);
+        int j = dstOffset;
+        for (int i = start; i < end; i += 2) {
+            dst[j++] = decodePair(src.charAt(i), src.charAt(i + 1), i);
+        }
+        return j - dstOffset;
     }
 
+    /**
+     * 两个字符合并检查，只有一次分支
+     */
+    private static byte decodePair(char high, char low, int index) {
+        int h = DIGIT_VALUES[high & 0x7F];
+        int l = DIGIT_VALUES[low & 0x7F];
+        if (((high | low) & 0xFF80) != 0 || (h | l) < 0) {
+            toDigit(high, index);
+            toDigit(low, index + 1);
+        }
+        return (byte) (h << 4 | l);
+    }
 
     protected static int toDigit(char ch, int index) {
-        int digit = Character.digit(ch, 16);
+        int digit = ch < DIGIT_VALUES.length ? DIGIT_VALUES[ch] : -1;
         if (digit == -1) {
-            throw new RuntimeException("Illegal hexadecimal character " + ch
+            throw new IllegalArgumentException("Illegal hexadecimal character " + ch
                     + " at index " + index);
         }
         return digit;
     }
 
 
+    /**
+     * 忽略首尾的空白，字符数为奇数时忽略最后一个字符
+     */
     public static byte[] hexStringToBytes(String hexString) {
         if (hexString == null || hexString.equals("")) {
             return null;
         }
-        hexString = hexString.trim();
-        hexString = hexString.toUpperCase();
-        int length = hexString.length() / 2;
-        char[] hexChars = hexString.toCharArray();
+        int start = 0;
+        int end = hexString.length();
+        while (start < end && hexString.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && hexString.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int length = (end - start) / 2;
         byte[] d = new byte[length];
         for (int i = 0; i < length; i++) {
-            int pos = i * 2;
-            d[i] = (byte) (charToByte(hexChars[pos]) << 4 | charToByte(hexChars[pos + 1]));
+            int pos = start + i * 2;
+            d[i] = (byte) (charToByte(hexString.charAt(pos)) << 4 | charToByte(hexString.charAt(pos + 1)));
         }
         return d;
     }
 
+    /**
+     * 不区分大小写，不是十六进制字符时返回-1
+     */
     public static byte charToByte(char c) {
-        return (byte) "0123456789ABCDEF".indexOf(c);
+        return c < DIGIT_VALUES.length ? DIGIT_VALUES[c] : -1;
     }
 
     public static String extractData(byte[] data, int position) {
         return HexUtil.formatHexString(new byte[]{data[position]});
     }
 
+    private static void checkRange(int arrayLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length
+                    + ", arrayLength=" + arrayLength);
+        }
+    }
+
 }
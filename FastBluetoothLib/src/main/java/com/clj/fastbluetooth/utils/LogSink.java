@@ -0,0 +1,12 @@
+package com.clj.fastbluetooth.utils;
+
+/**
+ * 日志的输出目标，可能在多个线程中同时调用
+ */
+public interface LogSink {
+
+    /**
+     * @param level {@link BluetoothLog#VERBOSE}到{@link BluetoothLog#ERROR}
+     */
+    void log(int level, String tag, String message);
+}
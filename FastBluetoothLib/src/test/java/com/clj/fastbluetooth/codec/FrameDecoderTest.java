@@ -0,0 +1,108 @@
+package com.clj.fastbluetooth.codec;
+
+import com.clj.fastbluetooth.util.ByteRingBuffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FrameDecoderTest {
+
+    @Test
+    public void fixedLength() throws Exception {
+        byte[] stream = {1, 2, 3, 4, 5, 6, 7};
+        for (int chunk = 1; chunk <= stream.length; chunk++) {
+            assertFrames(new FixedLengthFrameDecoder(3), stream, chunk, new byte[]{1, 2, 3}, new byte[]{4, 5, 6});
+        }
+    }
+
+    @Test
+    public void delimiterSplitAcrossChunks() throws Exception {
+        byte[] stream = "ab\r\ncde\r\n\r\nf\r".getBytes("US-ASCII");
+        for (int chunk = 1; chunk <= stream.length; chunk++) {
+            assertFrames(new DelimiterFrameDecoder(new byte[]{'\r', '\n'}, 16), stream, chunk,
+                    "ab".getBytes("US-ASCII"), "cde".getBytes("US-ASCII"), new byte[0]);
+        }
+    }
+
+    @Test
+    public void delimiterKept() throws Exception {
+        byte[] stream = "ab;c;".getBytes("US-ASCII");
+        assertFrames(new DelimiterFrameDecoder(new byte[]{';'}, false, 16), stream, 2,
+                "ab;".getBytes("US-ASCII"), "c;".getBytes("US-ASCII"));
+    }
+
+    @Test
+    public void delimiterTooLong() {
+        DelimiterFrameDecoder decoder = new DelimiterFrameDecoder(new byte[]{'\n'}, 4);
+        byte[] data = "abcdefg".getBytes();
+        try {
+            decoder.decode(data, 0, data.length, new Frame());
+            fail();
+        } catch (CorruptedFrameException expected) {
+        }
+    }
+
+    /**
+     * [0xAA][len 2字节][payload]，len只表示payload长度，回调时去掉3字节的帧头
+     */
+    @Test
+    public void lengthFieldWithHeaderStripped() throws Exception {
+        byte[] stream = {(byte) 0xAA, 0, 2, 7, 8, (byte) 0xAA, 0, 0, (byte) 0xAA, 0, 3, 9, 9, 9, (byte) 0xAA, 0};
+        for (int chunk = 1; chunk <= stream.length; chunk++) {
+            assertFrames(new LengthFieldFrameDecoder(64, 1, 2, 0, 3, true), stream, chunk,
+                    new byte[]{7, 8}, new byte[0], new byte[]{9, 9, 9});
+        }
+    }
+
+    @Test
+    public void lengthFieldLittleEndian() throws Exception {
+        byte[] frame = new byte[2 + 258];
+        frame[0] = 2;
+        frame[1] = 1;
+        frame[259] = 42;
+        Frame out = new Frame();
+        int consumed = new LengthFieldFrameDecoder(1024, 0, 2, 0, 2, false).decode(frame, 0, frame.length, out);
+        assertEquals(260, consumed);
+        assertEquals(2, out.getOffset());
+        assertEquals(258, out.getLength());
+    }
+
+    @Test
+    public void lengthFieldTooLong() {
+        byte[] data = {0, 100};
+        try {
+            new LengthFieldFrameDecoder(64, 0, 2).decode(data, 0, data.length, new Frame());
+            fail();
+        } catch (CorruptedFrameException expected) {
+        }
+    }
+
+    /**
+     * 与读线程一样把数据按chunk大小写入接收缓冲区，每次写入后解码出所有完整的帧
+     */
+    private static void assertFrames(FrameDecoder decoder, byte[] stream, int chunk, byte[]... expected)
+            throws CorruptedFrameException {
+        ByteRingBuffer buffer = new ByteRingBuffer(4, 256);
+        Frame frame = new Frame();
+        List<byte[]> frames = new ArrayList<>();
+        for (int offset = 0; offset < stream.length; offset += chunk) {
+            buffer.write(stream, offset, Math.min(chunk, stream.length - offset));
+            int consumed;
+            while (buffer.readableBytes() > 0
+                    && (consumed = decoder.decode(buffer.array(), buffer.readerIndex(), buffer.readableBytes(), frame)) > 0) {
+                frames.add(Arrays.copyOfRange(buffer.array(), frame.getOffset(), frame.getOffset() + frame.getLength()));
+                buffer.skip(consumed);
+            }
+        }
+        assertEquals("chunk " + chunk, expected.length, frames.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("chunk " + chunk + " frame " + i, Arrays.toString(expected[i]), Arrays.toString(frames.get(i)));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.clj.fastbluetooth.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BluetoothExecutorTest {
+
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        BluetoothExecutor.getInstance().setReadThreadPoolSize(BluetoothExecutor.DEFAULT_READ_THREAD_POOL_SIZE);
+    }
+
+    /**
+     * 读线程数达到上限后拒绝新的读任务，已有的读任务结束后可以再次提交
+     */
+    @Test(timeout = 5000)
+    public void readPoolIsBounded() throws Exception {
+        BluetoothExecutor.getInstance().setReadThreadPoolSize(2);
+        Executor executor = BluetoothExecutor.getInstance().getReadExecutor();
+        final CountDownLatch started = new CountDownLatch(2);
+        Runnable blocking = new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        executor.execute(blocking);
+        executor.execute(blocking);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        try {
+            executor.execute(blocking);
+            fail("read task beyond the limit should be rejected");
+        } catch (RejectedExecutionException expected) {
+            // 达到上限
+        }
+
+        // 放宽上限立即生效
+        BluetoothExecutor.getInstance().setReadThreadPoolSize(3);
+        executor.execute(blocking);
+    }
+}
@@ -0,0 +1,161 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothReceiveCallback;
+import com.clj.fastbluetooth.data.ReceiveOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+import com.clj.fastbluetooth.util.ByteRingBuffer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelReceiverTest {
+
+    private static final byte[] TERMINATOR = {'a', 'b', 'a', 'c'};
+
+    /**
+     * 结束标记跨越两段数据的每一种切分，数据中也有结束标记的开头部分
+     */
+    @Test
+    public void terminatorSplitAcrossChunks() {
+        byte[] payload = "xabaabab-ababa-abaab-aba".getBytes();
+        byte[] trailing = {'a', 'b', 'z'};
+        byte[] stream = concat(payload, TERMINATOR, trailing);
+        for (int chunk = 1; chunk <= stream.length; chunk++) {
+            Result result = receive(stream, chunk, new ReceiveOptions().setTerminator(TERMINATOR));
+            assertArrayEquals("chunk " + chunk, payload, result.output);
+            assertArrayEquals("chunk " + chunk, trailing, result.remaining);
+            assertEquals(payload.length, result.callback.completeBytes);
+        }
+    }
+
+    @Test
+    public void randomStreamsWithOverlappingPrefixes() {
+        Random random = new Random(7);
+        byte[] alphabet = {'a', 'b', 'c'};
+        for (int round = 0; round < 200; round++) {
+            byte[] payload = new byte[random.nextInt(64)];
+            do {
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] = alphabet[random.nextInt(alphabet.length)];
+                }
+            } while (indexOf(concat(payload, TERMINATOR), TERMINATOR) != payload.length);
+            byte[] stream = concat(payload, TERMINATOR, new byte[]{'z'});
+            Result result = receive(stream, 1 + random.nextInt(8), new ReceiveOptions().setTerminator(TERMINATOR));
+            assertArrayEquals(payload, result.output);
+            assertArrayEquals(new byte[]{'z'}, result.remaining);
+        }
+    }
+
+    @Test
+    public void stopsAtMaxBytes() {
+        byte[] stream = new byte[100];
+        new Random(3).nextBytes(stream);
+        Result result = receive(stream, 30, new ReceiveOptions().setMaxBytes(40));
+        assertArrayEquals(Arrays.copyOf(stream, 40), result.output);
+        assertArrayEquals(Arrays.copyOfRange(stream, 40, 100), result.remaining);
+        assertEquals(40, result.callback.completeBytes);
+    }
+
+    /**
+     * 字节数先到时以字节数为准，结束标记留给读任务
+     */
+    @Test
+    public void maxBytesBeforeTerminator() {
+        byte[] stream = concat("0123".getBytes(), TERMINATOR);
+        Result result = receive(stream, 3, new ReceiveOptions().setMaxBytes(2).setTerminator(TERMINATOR));
+        assertArrayEquals("01".getBytes(), result.output);
+        assertArrayEquals(concat("23".getBytes(), TERMINATOR), result.remaining);
+    }
+
+    @Test
+    public void cancelFlushesBufferedData() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordingCallback callback = new RecordingCallback();
+        ChannelReceiver receiver = new ChannelReceiver(Channels.newChannel(out), false,
+                new ReceiveOptions().setBufferSize(1024), callback);
+        byte[] data = {1, 2, 3};
+        assertEquals(3, receiver.onData(data, 0, data.length));
+        assertEquals(0, out.size());
+        receiver.cancel();
+        assertArrayEquals(data, out.toByteArray());
+        assertEquals(BluetoothException.ERROR_CANCELLED, callback.errorCode);
+        assertEquals(3, callback.errorBytes);
+        assertTrue(receiver.isFinished());
+        assertEquals(0, receiver.onData(data, 0, data.length));
+    }
+
+    /**
+     * 与读线程一样，把数据按chunk大小写入接收缓冲区，未消费的字节留到下一次
+     */
+    private static Result receive(byte[] stream, int chunk, ReceiveOptions options) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Result result = new Result();
+        result.callback = new RecordingCallback();
+        ChannelReceiver receiver = new ChannelReceiver(Channels.newChannel(out), true,
+                options.setBufferSize(8), result.callback);
+        ByteRingBuffer buffer = new ByteRingBuffer(16, 1024);
+        for (int offset = 0; offset < stream.length; offset += chunk) {
+            buffer.write(stream, offset, Math.min(chunk, stream.length - offset));
+            if (!receiver.isFinished()) {
+                buffer.skip(receiver.onData(buffer.array(), buffer.readerIndex(), buffer.readableBytes()));
+            }
+        }
+        assertTrue(receiver.isFinished());
+        result.output = out.toByteArray();
+        result.remaining = Arrays.copyOfRange(buffer.array(), buffer.readerIndex(),
+                buffer.readerIndex() + buffer.readableBytes());
+        return result;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class Result {
+        byte[] output;
+        byte[] remaining;
+        RecordingCallback callback;
+    }
+
+    private static class RecordingCallback implements BluetoothReceiveCallback {
+        long completeBytes = -1;
+        int errorCode;
+        long errorBytes = -1;
+
+        @Override
+        public void onReceiveProgress(long bytes, long bytesPerSecond) {
+        }
+
+        @Override
+        public void onReceiveComplete(long bytes, long bytesPerSecond) {
+            completeBytes = bytes;
+        }
+
+        @Override
+        public void onReceiveError(BluetoothException e, long bytes) {
+            errorCode = e.getCode();
+            errorBytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothTransferCallback;
+import com.clj.fastbluetooth.core.WriteQueueTest.ManualExecutor;
+import com.clj.fastbluetooth.core.WriteQueueTest.RecordingStream;
+import com.clj.fastbluetooth.data.TransferOptions;
+import com.clj.fastbluetooth.data.WriteOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 读文件和写出都由测试线程通过{@link ManualExecutor}驱动，可以在块还在写队列中时检查状态
+ */
+public class FileTransferTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private final ManualExecutor mIoExecutor = new ManualExecutor();
+    private final ManualExecutor mWriteExecutor = new ManualExecutor();
+    private final RecordingTransferCallback mCallback = new RecordingTransferCallback();
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = mFolder.newFile("transfer.bin");
+        FileOutputStream output = new FileOutputStream(mFile);
+        try {
+            output.write(CONTENT);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * 同时在写队列中的块不超过窗口，写出后再读取下一块
+     */
+    @Test
+    public void sendsFileWithinWindow() {
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream, new WriteOptions(), mWriteExecutor);
+        FileTransfer transfer = start(queue, new TransferOptions().setChunkSize(3).setWindow(2));
+
+        mIoExecutor.runAll();
+        assertEquals(6, queue.getPendingBytes());
+        assertEquals(0, stream.size());
+        mWriteExecutor.runAll();
+        assertEquals(6, transfer.getPosition());
+
+        drain();
+        assertArrayEquals(CONTENT, stream.toByteArray());
+        assertEquals(4, stream.writes);
+        assertEquals(10, mCallback.completedBytes);
+        assertEquals(10, mCallback.progress);
+        assertTrue(transfer.isFinished());
+    }
+
+    @Test
+    public void resumesFromOffset() {
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream, new WriteOptions(), mWriteExecutor);
+        start(queue, new TransferOptions().setChunkSize(4).setOffset(3).setLength(5));
+
+        drain();
+        assertEquals("34567", stream.toString());
+        assertEquals(5, mCallback.completedBytes);
+        assertNull(mCallback.error);
+    }
+
+    @Test
+    public void offsetBeyondFileFails() {
+        WriteQueue queue = new WriteQueue(new RecordingStream(), new WriteOptions(), mWriteExecutor);
+        start(queue, new TransferOptions().setOffset(11));
+
+        assertEquals(BluetoothException.ERROR_IO, mCallback.error.getCode());
+        assertEquals(11, mCallback.errorPosition);
+    }
+
+    /**
+     * 取消后等写队列中的块写出才回调，回调的位置包含这些块，之后不再读取新块
+     */
+    @Test
+    public void cancelWaitsForChunksInFlight() {
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream, new WriteOptions(), mWriteExecutor);
+        FileTransfer transfer = start(queue, new TransferOptions().setChunkSize(3).setWindow(2));
+        mIoExecutor.runAll();
+
+        transfer.cancel();
+        assertNull(mCallback.error);
+        assertFalse(transfer.isFinished());
+
+        drain();
+        assertEquals(BluetoothException.ERROR_CANCELLED, mCallback.error.getCode());
+        assertEquals(6, mCallback.errorPosition);
+        assertEquals("012345", stream.toString());
+        assertEquals(-1, mCallback.completedBytes);
+        assertTrue(transfer.isFinished());
+    }
+
+    /**
+     * 一块写出失败后，同一批在写队列中的块也失败，回调的位置停在最后一块写出的块之后
+     */
+    @Test
+    public void writeFailureReportsWrittenPosition() {
+        FailingStream stream = new FailingStream(1);
+        WriteQueue queue = new WriteQueue(stream, new WriteOptions(), mWriteExecutor);
+        start(queue, new TransferOptions().setChunkSize(3).setWindow(3));
+
+        drain();
+        assertEquals(BluetoothException.ERROR_IO, mCallback.error.getCode());
+        assertEquals(3, mCallback.errorPosition);
+        assertEquals(1, mCallback.errors);
+        assertEquals("012", stream.toString());
+    }
+
+    private FileTransfer start(WriteQueue queue, TransferOptions options) {
+        FileTransfer transfer = new FileTransfer(mFile, queue, mIoExecutor, options, mCallback);
+        transfer.start();
+        return transfer;
+    }
+
+    private void drain() {
+        for (int i = 0; i < 100; i++) {
+            mIoExecutor.runAll();
+            mWriteExecutor.runAll();
+        }
+    }
+
+    /**
+     * 前几次写入成功，之后抛出IOException
+     */
+    static class FailingStream extends OutputStream {
+        private final ByteArrayOutputStream mWritten = new ByteArrayOutputStream();
+        private final int mSuccessfulWrites;
+        private int mWrites;
+
+        FailingStream(int successfulWrites) {
+            mSuccessfulWrites = successfulWrites;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (mWrites++ == mSuccessfulWrites) {
+                throw new IOException("broken pipe");
+            }
+            mWritten.write(b, off, len);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return mWritten.toString();
+        }
+    }
+
+    static class RecordingTransferCallback implements BluetoothTransferCallback {
+        long progress = -1;
+        long completedBytes = -1;
+        BluetoothException error;
+        long errorPosition = -1;
+        int errors;
+
+        @Override
+        public void onTransferProgress(long position, long end, long bytesPerSecond) {
+            progress = position;
+        }
+
+        @Override
+        public void onTransferComplete(long bytes, long bytesPerSecond) {
+            completedBytes = bytes;
+        }
+
+        @Override
+        public void onTransferError(BluetoothException e, long position) {
+            error = e;
+            errorPosition = position;
+            errors++;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.clj.fastbluetooth.core;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.clj.fastbluetooth.callback.BluetoothHeartbeatCallback;
+import com.clj.fastbluetooth.callback.BluetoothResponseCallback;
+import com.clj.fastbluetooth.codec.PrefixResponseMatcher;
+import com.clj.fastbluetooth.codec.ResponseMatcher;
+import com.clj.fastbluetooth.data.HeartbeatOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HeartbeatSupervisorTest {
+
+    private BluetoothConnection mConnection;
+    private RecordingCallback mCallback;
+    private HeartbeatSupervisor mSupervisor;
+    // 每次心跳请求依次取出的结果，为0时应答成功
+    private final CopyOnWriteArrayList<Integer> mResults = new CopyOnWriteArrayList<>();
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        BluetoothDevice device = mock(BluetoothDevice.class);
+        when(device.getAddress()).thenReturn("00:11:22:33:44:55");
+        mConnection = mock(BluetoothConnection.class);
+        when(mConnection.getDevice()).thenReturn(device);
+        when(mConnection.isConnected()).thenReturn(true);
+        doAnswer(new Answer<ResponseFuture>() {
+            @Override
+            public ResponseFuture answer(InvocationOnMock invocation) {
+                BluetoothResponseCallback callback = invocation.getArgument(3);
+                int index = mRequests.getAndIncrement();
+                int result = index < mResults.size() ? mResults.get(index) : 0;
+                if (result == 0) {
+                    callback.onResponse(new byte[]{'h'});
+                } else {
+                    callback.onResponseError(new BluetoothException(result, null));
+                }
+                return null;
+            }
+        }).when(mConnection).request(any(byte[].class), any(ResponseMatcher.class), anyLong(),
+                any(BluetoothResponseCallback.class));
+        mCallback = new RecordingCallback();
+    }
+
+    @After
+    public void tearDown() {
+        if (mSupervisor != null) {
+            mSupervisor.stop();
+        }
+    }
+
+    /**
+     * 写缓冲区已满不是链路断开，计为丢失，下一次心跳成功后清零
+     */
+    @Test
+    public void bufferFullCountsAsMissedHeartbeat() throws Exception {
+        mResults.add(BluetoothException.ERROR_BUFFER_FULL);
+        mResults.add(BluetoothException.ERROR_BUFFER_FULL);
+        mResults.add(0);
+        mResults.add(BluetoothException.ERROR_BUFFER_FULL);
+        start(3);
+
+        awaitRequests(6);
+        verify(mConnection, never()).close();
+        assertEquals(1, mCallback.linkLost.getCount());
+        assertEquals(0, mSupervisor.getRttStats().getMissed());
+    }
+
+    @Test
+    public void consecutiveBufferFullLosesLink() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mResults.add(BluetoothException.ERROR_BUFFER_FULL);
+        }
+        start(3);
+
+        assertTrue(mCallback.linkLost.await(2, TimeUnit.SECONDS));
+        assertEquals(3, mRequests.get());
+        assertEquals(BluetoothException.ERROR_BUFFER_FULL, mCallback.code);
+        verify(mConnection).close();
+        assertTrue(mSupervisor.isStopped());
+    }
+
+    /**
+     * IO错误立即认为链路断开，关闭连接和回调时都不持有监控器的锁
+     */
+    @Test
+    public void ioErrorLosesLinkOutsideLock() throws Exception {
+        mResults.add(BluetoothException.ERROR_IO);
+        final boolean[] closedUnderLock = {true};
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                closedUnderLock[0] = Thread.holdsLock(mSupervisor);
+                return null;
+            }
+        }).when(mConnection).close();
+        start(3);
+
+        assertTrue(mCallback.linkLost.await(2, TimeUnit.SECONDS));
+        assertEquals(1, mRequests.get());
+        assertEquals(BluetoothException.ERROR_IO, mCallback.code);
+        assertFalse(closedUnderLock[0]);
+        assertFalse(mCallback.calledUnderLock);
+    }
+
+    @Test
+    public void disconnectedConnectionLosesLink() throws Exception {
+        when(mConnection.isConnected()).thenReturn(false);
+        start(3);
+
+        assertTrue(mCallback.linkLost.await(2, TimeUnit.SECONDS));
+        assertEquals(0, mRequests.get());
+        assertEquals(BluetoothException.ERROR_DISCONNECTION, mCallback.code);
+        verify(mConnection).close();
+    }
+
+    private void start(int maxMissed) {
+        HeartbeatOptions options = new HeartbeatOptions(new byte[]{'h'}, new PrefixResponseMatcher((byte) 'h'))
+                .setIntervalMillis(10)
+                .setMaxMissed(maxMissed)
+                .setAutoReconnect(false);
+        mSupervisor = new HeartbeatSupervisor(mConnection, options, mCallback);
+        mCallback.supervisor = mSupervisor;
+        mSupervisor.start();
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (mRequests.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(mRequests.get() >= count);
+    }
+
+    static class RecordingCallback implements BluetoothHeartbeatCallback {
+        final CountDownLatch linkLost = new CountDownLatch(1);
+        volatile HeartbeatSupervisor supervisor;
+        volatile int code;
+        volatile boolean calledUnderLock;
+
+        @Override
+        public void onLinkLost(BluetoothDevice device, BluetoothException exception) {
+            calledUnderLock = Thread.holdsLock(supervisor);
+            code = exception.getCode();
+            linkLost.countDown();
+        }
+
+        @Override
+        public void onReconnected(BluetoothConnection connection) {
+        }
+
+        @Override
+        public void onReconnectFail(BluetoothDevice device, BluetoothException exception) {
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothReadCallback;
+import com.clj.fastbluetooth.codec.FixedLengthFrameDecoder;
+import com.clj.fastbluetooth.codec.Frame;
+import com.clj.fastbluetooth.codec.FrameDecoder;
+import com.clj.fastbluetooth.codec.PrefixResponseMatcher;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReadLoopTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * 回调抛出异常后，同一次读到的其余帧照常回调，已经回调的帧不重复，字节数不重复统计
+     */
+    @Test
+    public void callbackExceptionDoesNotRedeliverFrames() {
+        RecordingCallback callback = new RecordingCallback();
+        callback.throwOn = "bb";
+        ConnectionStats stats = new ConnectionStats("00:11:22:33:44:55");
+        ReadLoop loop = new ReadLoop(new ByteArrayInputStream("aabbccd".getBytes()), callback);
+        loop.setFrameDecoder(new FixedLengthFrameDecoder(2));
+        loop.setConnectionStats(stats);
+        loop.start(DIRECT);
+
+        assertEquals(list("aa", "bb", "cc"), callback.frames);
+        assertEquals(7, stats.getBytesRead());
+        assertEquals(3, stats.getFramesRead());
+        assertEquals(1, callback.errors.size());
+        assertEquals(BluetoothException.ERROR_DISCONNECTION, (int) callback.errors.get(0));
+        assertFalse(loop.isRunning());
+    }
+
+    /**
+     * 解码器本身出错时丢弃缓冲区中的数据，之后的数据从新的帧开始
+     */
+    @Test
+    public void decoderExceptionDiscardsBufferedData() {
+        RecordingCallback callback = new RecordingCallback();
+        final int[] calls = {0};
+        FrameDecoder decoder = new FixedLengthFrameDecoder(2) {
+            @Override
+            public int decode(byte[] buffer, int offset, int length, Frame frame) {
+                if (calls[0]++ == 1) {
+                    throw new IllegalStateException("broken decoder");
+                }
+                return super.decode(buffer, offset, length, frame);
+            }
+        };
+        ReadLoop loop = new ReadLoop(new ChunkedInputStream("aab", "bcc"), callback);
+        loop.setFrameDecoder(decoder);
+        loop.start(DIRECT);
+        // 第一段剩下的"b"被丢弃
+        assertEquals(list("aa", "bc"), callback.frames);
+    }
+
+    @Test
+    public void deliversChunksWithoutDecoder() {
+        RecordingCallback callback = new RecordingCallback();
+        ReadLoop loop = new ReadLoop(new ChunkedInputStream("abc", "de"), callback);
+        loop.start(DIRECT);
+        assertEquals(list("abc", "de"), callback.frames);
+    }
+
+    @Test
+    public void requestTrackerTakesMatchingFrames() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        RequestTracker tracker = new RequestTracker();
+        ResponseFuture future = new ResponseFuture(new PrefixResponseMatcher((byte) 'r'), null);
+        tracker.register(future, 0);
+        ReadLoop loop = new ReadLoop(new ByteArrayInputStream("aar1bb".getBytes()), callback);
+        loop.setFrameDecoder(new FixedLengthFrameDecoder(2));
+        loop.setRequestTracker(tracker);
+        loop.start(DIRECT);
+        assertEquals(list("aa", "bb"), callback.frames);
+        assertEquals("r1", new String(future.get(1, TimeUnit.SECONDS)));
+    }
+
+    /**
+     * 暂停时正在进行的读取得到的数据留到恢复后处理，之后到达的数据留在输入流中，恢复后按顺序回调
+     */
+    @Test(timeout = 5000)
+    public void pauseStopsReadingUntilResumed() throws Exception {
+        PipedOutputStream out = new PipedOutputStream();
+        PipedInputStream in = new PipedInputStream(out);
+        final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        ReadLoop loop = new ReadLoop(in, new BluetoothReadCallback() {
+            @Override
+            public void onReadError(BluetoothException e) {
+            }
+
+            @Override
+            public void onDataReceive(byte[] data) {
+                frames.add(new String(data));
+            }
+        });
+        loop.setFrameDecoder(new FixedLengthFrameDecoder(2));
+        loop.start(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                new Thread(command).start();
+            }
+        });
+
+        out.write("aa".getBytes());
+        out.flush();
+        assertEquals("aa", frames.take());
+
+        loop.pause();
+        // 读线程可能已经阻塞在read()上，取走"bb"后才进入暂停，也可能还没开始读
+        out.write("bb".getBytes());
+        out.flush();
+        assertNull(frames.poll(100, TimeUnit.MILLISECONDS));
+        out.write("cc".getBytes());
+        out.flush();
+        assertNull(frames.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(in.available() >= 2);
+
+        loop.resume();
+        assertEquals("bb", frames.take());
+        assertEquals("cc", frames.take());
+        loop.close();
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * 每次read()只返回一段数据
+     */
+    static class ChunkedInputStream extends InputStream {
+        private final String[] mChunks;
+        private int mIndex;
+
+        ChunkedInputStream(String... chunks) {
+            mChunks = chunks;
+        }
+
+        @Override
+        public int read() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (mIndex == mChunks.length) {
+                return -1;
+            }
+            byte[] chunk = mChunks[mIndex++].getBytes();
+            System.arraycopy(chunk, 0, b, off, chunk.length);
+            return chunk.length;
+        }
+    }
+
+    static class RecordingCallback implements BluetoothReadCallback {
+        final List<String> frames = new ArrayList<>();
+        final List<Integer> errors = new ArrayList<>();
+        String throwOn;
+
+        @Override
+        public void onReadError(BluetoothException e) {
+            errors.add(e.getCode());
+        }
+
+        @Override
+        public void onDataReceive(byte[] data) {
+            String frame = new String(data);
+            frames.add(frame);
+            if (frame.equals(throwOn)) {
+                throw new IllegalStateException("callback failed on " + frame);
+            }
+        }
+    }
+}
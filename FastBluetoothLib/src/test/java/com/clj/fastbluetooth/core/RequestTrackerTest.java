@@ -0,0 +1,111 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.codec.PrefixResponseMatcher;
+import com.clj.fastbluetooth.codec.ResponseMatcher;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RequestTrackerTest {
+
+    private static final ResponseMatcher R = new PrefixResponseMatcher((byte) 'r');
+
+    /**
+     * 多个请求匹配同一类应答时按发出的顺序完成，匹配不上的帧不交给请求
+     */
+    @Test
+    public void framesCompleteRequestsInOrder() throws Exception {
+        RequestTracker tracker = new RequestTracker();
+        ResponseFuture first = new ResponseFuture(R, null);
+        ResponseFuture second = new ResponseFuture(R, null);
+        ResponseFuture other = new ResponseFuture(new PrefixResponseMatcher((byte) 'x'), null);
+        tracker.register(first, 0);
+        tracker.register(other, 0);
+        tracker.register(second, 0);
+        assertEquals(3, tracker.getPendingCount());
+
+        assertFalse(tracker.onFrame(bytes("a1"), 0, 2));
+        assertTrue(tracker.onFrame(bytes("--r1--"), 2, 2));
+        assertTrue(tracker.onFrame(bytes("r2"), 0, 2));
+        assertFalse(tracker.onFrame(bytes("r3"), 0, 2));
+
+        assertEquals("r1", new String(first.get(0, TimeUnit.SECONDS)));
+        assertEquals("r2", new String(second.get(0, TimeUnit.SECONDS)));
+        assertFalse(other.isDone());
+        assertEquals(1, tracker.getPendingCount());
+    }
+
+    @Test
+    public void cancelledRequestIsSkipped() throws Exception {
+        RequestTracker tracker = new RequestTracker();
+        ResponseFuture cancelled = new ResponseFuture(R, null);
+        ResponseFuture next = new ResponseFuture(R, null);
+        tracker.register(cancelled, 0);
+        tracker.register(next, 0);
+
+        assertTrue(cancelled.cancel(false));
+        assertEquals(1, tracker.getPendingCount());
+        assertTrue(tracker.onFrame(bytes("r1"), 0, 2));
+        assertEquals("r1", new String(next.get(0, TimeUnit.SECONDS)));
+        assertFalse(tracker.hasPending());
+    }
+
+    /**
+     * 后注册、截止时间更早的请求也按时超时，不等先安排的检查
+     */
+    @Test(timeout = 5000)
+    public void earlierDeadlineTimesOutFirst() throws Exception {
+        RequestTracker tracker = new RequestTracker();
+        ResponseFuture slow = new ResponseFuture(R, null);
+        ResponseFuture fast = new ResponseFuture(R, null);
+        ResponseFuture untimed = new ResponseFuture(R, null);
+        tracker.register(slow, 3000);
+        tracker.register(untimed, 0);
+        long start = System.nanoTime();
+        tracker.register(fast, 50);
+
+        awaitDone(fast);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(BluetoothException.ERROR_TIMEOUT, fast.getError().getCode());
+        assertFalse(slow.isDone());
+        assertFalse(untimed.isDone());
+        assertEquals(2, tracker.getPendingCount());
+
+        // 超时的请求已经移出队列，之后的应答交给下一个请求
+        assertTrue(tracker.onFrame(bytes("r1"), 0, 2));
+        assertEquals("r1", new String(slow.get(0, TimeUnit.SECONDS)));
+        assertNull(slow.getError());
+    }
+
+    @Test
+    public void failAllFailsPendingRequests() {
+        RequestTracker tracker = new RequestTracker();
+        ResponseFuture first = new ResponseFuture(R, null);
+        ResponseFuture second = new ResponseFuture(R, null);
+        tracker.register(first, 1000);
+        tracker.register(second, 0);
+
+        tracker.failAll(BluetoothException.ERROR_DISCONNECTION);
+        assertEquals(BluetoothException.ERROR_DISCONNECTION, first.getError().getCode());
+        assertEquals(BluetoothException.ERROR_DISCONNECTION, second.getError().getCode());
+        assertEquals(0, tracker.getPendingCount());
+        assertFalse(tracker.onFrame(bytes("r1"), 0, 2));
+    }
+
+    private static void awaitDone(ResponseFuture future) throws InterruptedException {
+        while (!future.isDone()) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes();
+    }
+}
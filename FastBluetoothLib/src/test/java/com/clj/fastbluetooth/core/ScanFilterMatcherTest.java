@@ -0,0 +1,82 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.data.ScanFilter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanFilterMatcherTest {
+
+    private static final String MAC = "00:11:22:33:44:55";
+
+    @Test
+    public void matchesExactNames() {
+        ScanFilterMatcher matcher = new ScanFilterMatcher(new ScanFilter().addNames("HC-05", "HC-06"));
+        assertTrue(matcher.matches("HC-05", MAC));
+        assertTrue(matcher.matches("HC-06", MAC));
+        assertFalse(matcher.matches("HC-0", MAC));
+        assertFalse(matcher.matches("HC-055", MAC));
+    }
+
+    /**
+     * MAC不区分大小写，名称为空的设备也能按MAC匹配
+     */
+    @Test
+    public void matchesMacsIgnoringCase() {
+        ScanFilterMatcher matcher = new ScanFilterMatcher(new ScanFilter().addMacs("aa:bb:cc:dd:ee:ff", "bad mac"));
+        assertTrue(matcher.matches(null, "AA:BB:CC:DD:EE:FF"));
+        assertTrue(matcher.matches("", "aa:bb:cc:dd:ee:ff"));
+        assertFalse(matcher.matches("HC-05", MAC));
+        assertFalse(matcher.matches("HC-05", null));
+    }
+
+    /**
+     * 前缀之间互为前缀时，较短的一个先命中
+     */
+    @Test
+    public void matchesNamePrefixes() {
+        ScanFilterMatcher matcher = new ScanFilterMatcher(new ScanFilter().addNamePrefixes("HC-0", "HC-05-long", "BT"));
+        assertTrue(matcher.matches("HC-0", MAC));
+        assertTrue(matcher.matches("HC-05", MAC));
+        assertTrue(matcher.matches("HC-05-longer", MAC));
+        assertTrue(matcher.matches("BT", MAC));
+        assertFalse(matcher.matches("HC-", MAC));
+        assertFalse(matcher.matches("B", MAC));
+        assertFalse(matcher.matches("xHC-05", MAC));
+    }
+
+    @Test
+    public void matchesNameSuffixes() {
+        ScanFilterMatcher matcher = new ScanFilterMatcher(new ScanFilter().addNameSuffixes("-printer", "Pad"));
+        assertTrue(matcher.matches("office-printer", MAC));
+        assertTrue(matcher.matches("-printer", MAC));
+        assertTrue(matcher.matches("MiPad", MAC));
+        assertFalse(matcher.matches("printer", MAC));
+        assertFalse(matcher.matches("MiPad2", MAC));
+    }
+
+    @Test
+    public void matchesWholeNameAgainstPatterns() {
+        ScanFilterMatcher matcher = new ScanFilterMatcher(new ScanFilter().addNamePattern("HC-0[5-6]"));
+        assertTrue(matcher.matches("HC-05", MAC));
+        assertFalse(matcher.matches("HC-07", MAC));
+        assertFalse(matcher.matches("HC-056", MAC));
+    }
+
+    /**
+     * 只有名称条件时，没有名称的设备不匹配
+     */
+    @Test
+    public void emptyNameMatchesNoNameFilter() {
+        ScanFilterMatcher matcher = new ScanFilterMatcher(new ScanFilter()
+                .addNames("")
+                .addNamePrefixes("")
+                .addNameSuffixes("")
+                .addNamePattern(".*"));
+        assertFalse(matcher.matches(null, MAC));
+        assertFalse(matcher.matches("", MAC));
+        assertTrue(matcher.matches("any", MAC));
+    }
+}
@@ -0,0 +1,101 @@
+package com.clj.fastbluetooth.core;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.clj.fastbluetooth.data.ScanResult;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ScanResultStoreTest {
+
+    /**
+     * 再次发现同一设备时只更新结果，地址大小写不同也视为同一设备
+     */
+    @Test
+    public void putDedupesByMac() {
+        ScanResultStore store = new ScanResultStore();
+        BluetoothDevice device = device("AA:BB:CC:DD:EE:01");
+        assertTrue(store.put(device, 100));
+        assertFalse(store.put(device, 200));
+        assertFalse(store.put(device("aa:bb:cc:dd:ee:01"), 300));
+
+        assertEquals(1, store.size());
+        ScanResult result = store.get("aa:bb:cc:dd:ee:01");
+        assertSame(device, result.getDevice());
+        assertEquals(100, result.getFirstSeenTime());
+        assertEquals(300, result.getLastSeenTime());
+        assertEquals(3, result.getSeenCount());
+    }
+
+    @Test
+    public void ignoresInvalidMac() {
+        ScanResultStore store = new ScanResultStore();
+        assertFalse(store.put(device("not a mac"), 100));
+        assertEquals(0, store.size());
+        assertNull(store.get("not a mac"));
+    }
+
+    /**
+     * 快照按发现顺序排列，之后的变化不影响已经取得的快照
+     */
+    @Test
+    public void snapshotKeepsDiscoveryOrder() {
+        ScanResultStore store = new ScanResultStore(2);
+        for (int i = 0; i < 10; i++) {
+            store.put(device(mac(i)), i);
+        }
+        List<ScanResult> snapshot = store.snapshot();
+        assertSame(snapshot, store.snapshot());
+        assertEquals(10, snapshot.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(mac(i), snapshot.get(i).getDevice().getAddress());
+        }
+
+        store.put(device(mac(3)), 100);
+        store.put(device(mac(10)), 100);
+        assertEquals(1, snapshot.get(3).getSeenCount());
+        assertEquals(10, snapshot.size());
+        List<ScanResult> updated = store.snapshot();
+        assertEquals(11, updated.size());
+        assertEquals(2, updated.get(3).getSeenCount());
+        assertEquals(mac(10), updated.get(10).getDevice().getAddress());
+    }
+
+    @Test
+    public void clearStartsNewScan() {
+        ScanResultStore store = new ScanResultStore();
+        store.put(device(mac(1)), 100);
+        store.put(device(mac(2)), 100);
+        List<ScanResult> snapshot = store.snapshot();
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertTrue(store.snapshot().isEmpty());
+        assertFalse(store.contains(mac(1)));
+        assertEquals(2, snapshot.size());
+
+        assertTrue(store.put(device(mac(2)), 200));
+        assertEquals(1, store.get(mac(2)).getSeenCount());
+        assertEquals(mac(2), store.snapshot().get(0).getDevice().getAddress());
+    }
+
+    private static String mac(int i) {
+        return String.format("00:11:22:33:44:%02X", i);
+    }
+
+    private static BluetoothDevice device(String mac) {
+        BluetoothDevice device = mock(BluetoothDevice.class);
+        when(device.getAddress()).thenReturn(mac);
+        return device;
+    }
+}
@@ -0,0 +1,91 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.util.MacUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrafficRecorderTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("capture", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void recordedTrafficReadsBack() throws Exception {
+        Random random = new Random(5);
+        byte[][] records = new byte[300][];
+        TrafficRecorder recorder = new TrafficRecorder(mFile, TrafficRecorder.DEFAULT_MAX_BYTES);
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new byte[1 + random.nextInt(4000)];
+            random.nextBytes(records[i]);
+            int direction = i % 2 == 0 ? TrafficRecorder.DIRECTION_RX : TrafficRecorder.DIRECTION_TX;
+            recorder.record(direction, i % 3 == 0 ? null : "00:11:22:AA:BB:CC", records[i], 0, records[i].length);
+        }
+        assertEquals(records.length, recorder.getRecordCount());
+        recorder.close();
+
+        CaptureReader reader = new CaptureReader(mFile);
+        try {
+            long lastTime = Long.MIN_VALUE;
+            for (int i = 0; i < records.length; i++) {
+                assertTrue(reader.next());
+                assertEquals(i % 2 == 0 ? TrafficRecorder.DIRECTION_RX : TrafficRecorder.DIRECTION_TX,
+                        reader.getDirection());
+                if (i % 3 == 0) {
+                    assertEquals(MacUtils.INVALID, reader.getMacValue());
+                } else {
+                    assertEquals("00:11:22:AA:BB:CC", reader.getMac());
+                }
+                assertArrayEquals(records[i], reader.getData());
+                assertTrue(reader.getTimeNanos() >= lastTime);
+                lastTime = reader.getTimeNanos();
+            }
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void recordsBeyondMaxBytesAreDropped() throws Exception {
+        TrafficRecorder recorder = new TrafficRecorder(mFile, 4096);
+        byte[] data = new byte[1000];
+        for (int i = 0; i < 10; i++) {
+            recorder.record(TrafficRecorder.DIRECTION_TX, "00:11:22:AA:BB:CC", data, 0, data.length);
+        }
+        long kept = recorder.getRecordCount();
+        assertTrue(kept > 0 && kept < 10);
+        assertEquals(10 - kept, recorder.getDroppedRecordCount());
+        recorder.close();
+
+        CaptureReader reader = new CaptureReader(mFile);
+        try {
+            int count = 0;
+            while (reader.next()) {
+                assertEquals(data.length, reader.getLength());
+                count++;
+            }
+            assertEquals(kept, count);
+        } finally {
+            reader.close();
+        }
+    }
+}
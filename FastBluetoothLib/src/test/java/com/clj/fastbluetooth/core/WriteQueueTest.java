@@ -0,0 +1,355 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothWritabilityCallback;
+import com.clj.fastbluetooth.callback.BluetoothWriteCallback;
+import com.clj.fastbluetooth.data.WriteOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteQueueTest {
+
+    /**
+     * 写线程在onWriteSuccess中继续写入，缓冲区已满也不能阻塞，否则没有线程写出数据
+     */
+    @Test(timeout = 5000)
+    public void blockingWriteFromDrainThreadDoesNotDeadlock() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingStream stream = new RecordingStream();
+        final WriteQueue queue = new WriteQueue(stream,
+                new WriteOptions().setBufferLimit(8, WriteOptions.OVERFLOW_BLOCK), executor);
+        final RecordingCallback callback = new RecordingCallback();
+        BluetoothWriteCallback chained = new RecordingCallback() {
+            @Override
+            public void onWriteSuccess(byte[] data) {
+                // 此时还有4字节排队，再写8字节超过上限
+                queue.write("cccccccc".getBytes(), callback);
+            }
+        };
+
+        queue.write("aaaa".getBytes(), chained);
+        queue.write("bbbb".getBytes(), callback);
+        executor.runAll();
+
+        assertEquals("aaaabbbbcccccccc", stream.toString());
+        assertEquals(list("bbbb", "cccccccc"), callback.written);
+        assertEquals(0, queue.getPendingBytes());
+    }
+
+    @Test
+    public void failFastRejectsWhenFull() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream,
+                new WriteOptions().setBufferLimit(8, WriteOptions.OVERFLOW_FAIL_FAST), executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        assertTrue(queue.write("aaaa".getBytes(), callback));
+        assertTrue(queue.write("bbbb".getBytes(), callback));
+        assertFalse(queue.write("cccc".getBytes(), callback));
+        assertEquals(list(BluetoothException.ERROR_BUFFER_FULL), callback.errors);
+
+        executor.runAll();
+        assertEquals("aaaabbbb", stream.toString());
+        // 写出后重新有空间
+        assertTrue(queue.write("dddd".getBytes(), callback));
+    }
+
+    /**
+     * 队列为空时超过上限的单条数据也能写出
+     */
+    @Test
+    public void oversizedWriteIsAcceptedWhenEmpty() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream,
+                new WriteOptions().setBufferLimit(4, WriteOptions.OVERFLOW_FAIL_FAST), executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        assertTrue(queue.write("aaaaaaaa".getBytes(), callback));
+        assertFalse(queue.write("b".getBytes(), callback));
+        executor.runAll();
+        assertEquals(list("aaaaaaaa"), callback.written);
+    }
+
+    @Test
+    public void dropOldestFailsOldestQueuedWrite() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream,
+                new WriteOptions().setBufferLimit(8, WriteOptions.OVERFLOW_DROP_OLDEST), executor);
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback callback = new RecordingCallback();
+
+        queue.write("aaaa".getBytes(), first);
+        queue.write("bbbb".getBytes(), callback);
+        assertTrue(queue.write("cccc".getBytes(), callback));
+        assertEquals(list(BluetoothException.ERROR_BUFFER_FULL), first.errors);
+
+        executor.runAll();
+        assertEquals("bbbbcccc", stream.toString());
+        assertEquals(list("bbbb", "cccc"), callback.written);
+    }
+
+    @Test
+    public void watermarksToggleWritability() {
+        ManualExecutor executor = new ManualExecutor();
+        WriteQueue queue = new WriteQueue(new RecordingStream(),
+                new WriteOptions().setWatermarks(4, 8), executor);
+        final List<Boolean> changes = new ArrayList<>();
+        queue.setWritabilityCallback(new BluetoothWritabilityCallback() {
+            @Override
+            public void onWritabilityChanged(boolean writable) {
+                changes.add(writable);
+            }
+        });
+
+        queue.write("aaaa".getBytes(), null);
+        assertTrue(queue.isWritable());
+        queue.write("bbbb".getBytes(), null);
+        assertFalse(queue.isWritable());
+
+        executor.runAll();
+        assertTrue(queue.isWritable());
+        assertEquals(list(false, true), changes);
+    }
+
+    @Test
+    public void closeFailsQueuedWrites() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream, new WriteOptions(), executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        queue.write("aaaa".getBytes(), callback);
+        queue.write("bbbb".getBytes(), callback);
+        queue.close();
+        // 写任务已经提交，剩下的请求由它回调
+        executor.runAll();
+        assertEquals(list(BluetoothException.ERROR_DISCONNECTION, BluetoothException.ERROR_DISCONNECTION),
+                callback.errors);
+        assertEquals(0, queue.getPendingBytes());
+        assertEquals(0, stream.size());
+        assertFalse(queue.write("cccc".getBytes(), callback));
+        assertEquals(3, callback.errors.size());
+    }
+
+    /**
+     * 阻塞等待空间的生产者在关闭时被唤醒并收到ERROR_DISCONNECTION
+     */
+    @Test(timeout = 5000)
+    public void closeWakesBlockedProducer() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        final WriteQueue queue = new WriteQueue(new RecordingStream(),
+                new WriteOptions().setBufferLimit(4, WriteOptions.OVERFLOW_BLOCK), executor);
+        final RecordingCallback callback = new RecordingCallback();
+        queue.write("aaaa".getBytes(), null);
+
+        final boolean[] accepted = {true};
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                accepted[0] = queue.write("bbbb".getBytes(), callback);
+            }
+        };
+        producer.start();
+        while (producer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        queue.close();
+        producer.join();
+
+        assertFalse(accepted[0]);
+        assertEquals(list(BluetoothException.ERROR_DISCONNECTION), callback.errors);
+    }
+
+    @Test
+    public void coalescesQueuedWrites() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream, new WriteOptions().setMaxBatchSize(16), executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        queue.write("aaaa".getBytes(), callback);
+        queue.write("bbbb".getBytes(), callback);
+        queue.write("cccc".getBytes(), callback);
+        executor.runAll();
+
+        assertEquals("aaaabbbbcccc", stream.toString());
+        assertEquals(1, stream.writes);
+        assertEquals(list("aaaa", "bbbb", "cccc"), callback.written);
+    }
+
+    /**
+     * 放不下的数据和超过批次大小的数据都在已合并的数据之后写出
+     */
+    @Test
+    public void batchBoundariesKeepOrder() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream, new WriteOptions().setMaxBatchSize(8), executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        queue.write("aaaa".getBytes(), callback);
+        queue.write("bbbb".getBytes(), callback);
+        queue.write("cccc".getBytes(), callback);
+        queue.write("dddddddddd".getBytes(), callback);
+        queue.write("ee".getBytes(), callback);
+        executor.runAll();
+
+        assertEquals("aaaabbbbccccddddddddddee", stream.toString());
+        assertEquals(4, stream.writes);
+        assertEquals(list("aaaa", "bbbb", "cccc", "dddddddddd", "ee"), callback.written);
+    }
+
+    /**
+     * 等待linger时写线程直接返回，到期后由定时线程重新提交
+     */
+    @Test(timeout = 5000)
+    public void lingerDoesNotHoldWriteThread() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream,
+                new WriteOptions().setMaxBatchSize(64).setLingerMillis(50), executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        queue.write("aa".getBytes(), callback);
+        executor.runAll();
+        queue.write("bb".getBytes(), callback);
+        executor.runAll();
+        assertEquals(0, stream.writes);
+
+        executor.awaitTask();
+        executor.runAll();
+        assertEquals("aabb", stream.toString());
+        assertEquals(1, stream.writes);
+        assertEquals(list("aa", "bb"), callback.written);
+    }
+
+    /**
+     * linger到期的定时任务与正在运行的写线程交错时，批次不能一直留在队列中
+     */
+    @Test(timeout = 20000)
+    public void lingerFlushIsNotLostWhileDraining() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        WriteQueue queue = new WriteQueue(new RecordingStream(),
+                new WriteOptions().setMaxBatchSize(64).setLingerMillis(1), executor);
+        try {
+            for (int round = 0; round < 2000; round++) {
+                final CountDownLatch done = new CountDownLatch(15);
+                BluetoothWriteCallback callback = new RecordingCallback() {
+                    @Override
+                    public void onWriteSuccess(byte[] data) {
+                        done.countDown();
+                    }
+                };
+                for (int i = 0; i < 15; i++) {
+                    queue.write("abcd".getBytes(), callback);
+                }
+                assertTrue("round " + round, done.await(2, TimeUnit.SECONDS));
+            }
+        } finally {
+            queue.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void closeFailsLingeringBatch() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingStream stream = new RecordingStream();
+        WriteQueue queue = new WriteQueue(stream,
+                new WriteOptions().setMaxBatchSize(64).setLingerMillis(1000), executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        queue.write("aa".getBytes(), callback);
+        executor.runAll();
+        queue.close();
+
+        assertEquals(list(BluetoothException.ERROR_DISCONNECTION), callback.errors);
+        assertEquals(0, queue.getPendingBytes());
+        assertEquals(0, stream.size());
+    }
+
+    @SafeVarargs
+    static <T> List<T> list(T... values) {
+        List<T> list = new ArrayList<>();
+        for (T value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * 任务先排队，由测试线程调用runAll()执行，测试线程即写线程
+     */
+    static class ManualExecutor implements Executor {
+        private final Queue<Runnable> mTasks = new ArrayDeque<>();
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            mTasks.offer(command);
+            notifyAll();
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = poll()) != null) {
+                task.run();
+            }
+        }
+
+        synchronized void awaitTask() throws InterruptedException {
+            while (mTasks.isEmpty()) {
+                wait();
+            }
+        }
+
+        private synchronized Runnable poll() {
+            return mTasks.poll();
+        }
+    }
+
+    /**
+     * 记录每次write调用
+     */
+    static class RecordingStream extends ByteArrayOutputStream {
+        int writes;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            writes++;
+            super.write(b, off, len);
+        }
+    }
+
+    static class RecordingCallback implements BluetoothWriteCallback {
+        final List<String> written = new ArrayList<>();
+        final List<Integer> errors = new ArrayList<>();
+
+        @Override
+        public void onWriteError(BluetoothException e) {
+            errors.add(e.getCode());
+        }
+
+        @Override
+        public void onWriteSuccess(byte[] data) {
+            written.add(new String(data));
+        }
+    }
+}
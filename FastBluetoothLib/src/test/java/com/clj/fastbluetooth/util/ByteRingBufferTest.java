@@ -0,0 +1,71 @@
+package com.clj.fastbluetooth.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.BufferOverflowException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ByteRingBufferTest {
+
+    @Test
+    public void readableRegionStaysContiguous() {
+        ByteRingBuffer buffer = new ByteRingBuffer(8, 64);
+        buffer.write(new byte[]{1, 2, 3, 4, 5, 6}, 0, 6);
+        buffer.skip(4);
+        // 回收已读的4个字节就够写入，不扩容
+        buffer.write(new byte[]{7, 8, 9, 10, 11, 12}, 0, 6);
+        assertEquals(8, buffer.capacity());
+        assertEquals(0, buffer.readerIndex());
+        assertContent(buffer, 5, 6, 7, 8, 9, 10, 11, 12);
+    }
+
+    @Test
+    public void growsByDoublingUpToMaxCapacity() {
+        ByteRingBuffer buffer = new ByteRingBuffer(4, 12);
+        buffer.write(new byte[]{1, 2, 3}, 0, 3);
+        buffer.write(new byte[]{4, 5, 6}, 0, 3);
+        assertEquals(8, buffer.capacity());
+        buffer.write(new byte[]{7, 8, 9}, 0, 3);
+        assertEquals(12, buffer.capacity());
+        assertContent(buffer, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        try {
+            buffer.write(new byte[4], 0, 4);
+            fail();
+        } catch (BufferOverflowException expected) {
+        }
+    }
+
+    @Test
+    public void skippingEverythingResetsIndexes() {
+        ByteRingBuffer buffer = new ByteRingBuffer(4, 4);
+        buffer.write(new byte[]{1, 2, 3, 4}, 0, 4);
+        assertTrue(buffer.isFull());
+        buffer.skip(4);
+        assertEquals(0, buffer.readableBytes());
+        assertEquals(0, buffer.readerIndex());
+        buffer.write(new byte[]{5, 6, 7, 8}, 0, 4);
+        assertContent(buffer, 5, 6, 7, 8);
+    }
+
+    @Test
+    public void readFromStream() throws Exception {
+        ByteRingBuffer buffer = new ByteRingBuffer(2, 16);
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[]{1, 2, 3});
+        assertEquals(2, buffer.readFrom(in));
+        buffer.skip(1);
+        assertEquals(1, buffer.readFrom(in));
+        assertContent(buffer, 2, 3);
+        assertEquals(-1, buffer.readFrom(in));
+    }
+
+    private static void assertContent(ByteRingBuffer buffer, int... expected) {
+        assertEquals(expected.length, buffer.readableBytes());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], buffer.array()[buffer.readerIndex() + i]);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.clj.fastbluetooth.util;
+
+import com.clj.fastbluetooth.data.HistogramSnapshot;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogHistogramTest {
+
+    @Test
+    public void smallValuesHaveTheirOwnBucket() {
+        for (int v = 0; v < 8; v++) {
+            assertEquals(v, LogHistogram.bucketIndex(v));
+            assertEquals(v, LogHistogram.bucketUpperBound(v));
+        }
+    }
+
+    /**
+     * 每个值都落在上一个桶的上界之后、自己所在桶的上界之内，桶是连续的
+     */
+    @Test
+    public void valuesFallWithinTheirBucketBounds() {
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int index = LogHistogram.bucketIndex(value);
+            assertTrue(index >= 0 && index < LogHistogram.BUCKET_COUNT);
+            assertTrue(value <= LogHistogram.bucketUpperBound(index));
+            if (index > 0) {
+                assertTrue(value > LogHistogram.bucketUpperBound(index - 1));
+            }
+        }
+        assertEquals(LogHistogram.BUCKET_COUNT - 1, LogHistogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LogHistogram.bucketUpperBound(LogHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void bucketBoundariesAreContiguous() {
+        for (int index = 1; index < LogHistogram.BUCKET_COUNT; index++) {
+            long lower = LogHistogram.bucketUpperBound(index - 1) + 1;
+            assertEquals(index, LogHistogram.bucketIndex(lower));
+            assertEquals(index, LogHistogram.bucketIndex(LogHistogram.bucketUpperBound(index)));
+        }
+    }
+
+    /**
+     * 8以上每个桶的宽度不超过下界的1/8
+     */
+    @Test
+    public void relativeErrorIsBounded() {
+        for (int index = 8; index < LogHistogram.BUCKET_COUNT - 1; index++) {
+            long lower = LogHistogram.bucketUpperBound(index - 1) + 1;
+            long width = LogHistogram.bucketUpperBound(index) - lower + 1;
+            assertTrue("bucket " + index, width * 8 <= lower);
+        }
+    }
+
+    @Test
+    public void snapshotStatistics() {
+        LogHistogram histogram = new LogHistogram();
+        for (int v = 1; v <= 100; v++) {
+            histogram.record(v);
+        }
+        histogram.record(-5);
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(101, snapshot.getCount());
+        assertEquals(5050, snapshot.getSum());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(100, snapshot.getMax());
+        long p50 = snapshot.getP50();
+        assertTrue(p50 >= 50 && p50 <= 50 + 50 / 8);
+        assertEquals(100, snapshot.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getP99());
+    }
+}
@@ -0,0 +1,71 @@
+package com.clj.fastbluetooth.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LongHashSetTest {
+
+    @Test
+    public void numbersKeysInInsertionOrder() {
+        LongHashSet set = new LongHashSet();
+        assertTrue(set.add(0x001122334455L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0x001122334455L));
+        assertTrue(set.add(0xFFFFFFFFFFFFL));
+
+        assertEquals(3, set.size());
+        assertEquals(0, set.indexOf(0x001122334455L));
+        assertEquals(1, set.indexOf(0L));
+        assertEquals(2, set.indexOf(0xFFFFFFFFFFFFL));
+        assertEquals(-1, set.indexOf(42L));
+        assertFalse(set.contains(42L));
+    }
+
+    /**
+     * 扩容后编号不变，同一厂商前缀的连续地址也能分开
+     */
+    @Test
+    public void keepsIndexesAcrossRehash() {
+        LongHashSet set = new LongHashSet(2);
+        long base = 0x001122000000L;
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(set.add(base + i));
+        }
+        assertEquals(1000, set.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, set.indexOf(base + i));
+        }
+        assertFalse(set.contains(base + 1000));
+    }
+
+    @Test
+    public void clearRestartsNumbering() {
+        LongHashSet set = new LongHashSet();
+        set.add(1L);
+        set.add(2L);
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(1L));
+
+        assertTrue(set.add(2L));
+        assertEquals(0, set.indexOf(2L));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void rejectsNegativeKeys() {
+        LongHashSet set = new LongHashSet();
+        assertEquals(-1, set.indexOf(-1L));
+        assertFalse(set.contains(MacUtils.INVALID));
+        try {
+            set.add(-1L);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertTrue(set.isEmpty());
+    }
+}
@@ -0,0 +1,35 @@
+package com.clj.fastbluetooth.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HexDumpTest {
+
+    @Test
+    public void formatsOffsetHexAndAscii() throws Exception {
+        StringBuilder out = new StringBuilder();
+        HexDump dump = new HexDump(out, Long.MAX_VALUE);
+        dump.write("0123456789abcdefXY".getBytes("US-ASCII"), 0, 18);
+        dump.finish();
+        assertEquals("00000000  30 31 32 33 34 35 36 37  38 39 61 62 63 64 65 66  |0123456789abcdef|\n"
+                + "00000010  58 59                                             |XY|\n", out.toString());
+    }
+
+    /**
+     * 分多次写入时，还没有输出的半行也计入上限
+     */
+    @Test
+    public void capCountsBufferedPartialLine() throws Exception {
+        StringBuilder out = new StringBuilder();
+        HexDump dump = new HexDump(out, 20);
+        for (int i = 0; i < 5; i++) {
+            dump.write(new byte[10], 0, 10);
+        }
+        assertEquals(50, dump.getTotalBytes());
+        dump.finish();
+        String[] lines = out.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("... 30 more bytes", lines[2]);
+    }
+}
@@ -0,0 +1,79 @@
+package com.clj.fastbluetooth.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HexUtilTest {
+
+    @Test
+    public void encodeDecodeRoundTrip() {
+        Random random = new Random(1);
+        for (int size = 0; size < 300; size += 7) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            for (boolean lower : new boolean[]{true, false}) {
+                char[] chars = new char[size * 2];
+                assertEquals(size * 2, HexUtil.encode(data, 0, size, chars, 0, lower));
+                assertEquals(new String(chars), HexUtil.encodeHexStr(data, lower));
+
+                byte[] decoded = new byte[size];
+                assertEquals(size, HexUtil.decode(chars, 0, chars.length, decoded, 0));
+                assertArrayEquals(data, decoded);
+
+                byte[] fromString = new byte[size];
+                HexUtil.decode(new String(chars), 0, chars.length, fromString, 0);
+                assertArrayEquals(data, fromString);
+            }
+        }
+    }
+
+    @Test
+    public void encodeRangeWithOffsets() {
+        byte[] data = {0x00, 0x0F, (byte) 0xA5, (byte) 0xFF};
+        char[] chars = {'x', 'x', 'x', 'x', 'x', 'x', 'x'};
+        HexUtil.encode(data, 1, 3, chars, 1, false);
+        assertEquals("x0FA5FF", new String(chars));
+        assertEquals("0fa5", HexUtil.encode(data, 1, 2, new StringBuilder(), true).toString());
+    }
+
+    @Test
+    public void encodeByte() {
+        char[] chars = new char[2];
+        for (int b = 0; b < 256; b++) {
+            assertEquals(2, HexUtil.encodeByte(b, chars, 0, false));
+            assertEquals(String.format("%02X", b), new String(chars));
+        }
+    }
+
+    @Test
+    public void decodeAcceptsBothCases() {
+        byte[] out = new byte[3];
+        HexUtil.decode("aBcDeF", 0, 6, out, 0);
+        assertArrayEquals(new byte[]{(byte) 0xAB, (byte) 0xCD, (byte) 0xEF}, out);
+        assertEquals(-1, HexUtil.charToByte('g'));
+        assertEquals(-1, HexUtil.charToByte('Ā'));
+    }
+
+    @Test
+    public void decodeRejectsOddLength() {
+        try {
+            HexUtil.decode("abc", 0, 3, new byte[2], 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void decodeRejectsNonHexCharacter() {
+        try {
+            HexUtil.decode("0g", 0, 2, new byte[1], 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.clj.fastbluetooth.benchmark;
+
+import com.clj.fastbluetooth.util.ConvertUtils;
+import com.clj.fastbluetooth.utils.HexDump;
+import com.clj.fastbluetooth.utils.HexUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 十六进制编解码，日志和界面显示收发数据时每帧都会调用
+ * legacy开头的是查表实现之前的方法，用于对比。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HexBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int size;
+
+    private byte[] mData;
+    private String mHexString;
+    private char[] mHexChars;
+    private char[] mCharBuffer;
+    private byte[] mByteBuffer;
+    private final StringBuilder mBuilder = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        mData = new byte[size];
+        new Random(42).nextBytes(mData);
+        mHexString = HexUtil.encodeHexStr(mData);
+        mHexChars = mHexString.toCharArray();
+        mCharBuffer = new char[size * 2];
+        mByteBuffer = new byte[size];
+    }
+
+    @Benchmark
+    public String formatHexString() {
+        return HexUtil.formatHexString(mData, true);
+    }
+
+    @Benchmark
+    public String legacyFormatHexString() {
+        return LegacyHex.formatHexString(mData, true);
+    }
+
+    @Benchmark
+    public String encodeHexStr() {
+        return HexUtil.encodeHexStr(mData);
+    }
+
+    @Benchmark
+    public String bytes2HexString() {
+        return ConvertUtils.bytes2HexString(mData);
+    }
+
+    @Benchmark
+    public String legacyBytes2HexString() {
+        return LegacyHex.bytes2HexString(mData);
+    }
+
+    @Benchmark
+    public char[] encodeIntoCharArray() {
+        HexUtil.encode(mData, 0, mData.length, mCharBuffer, 0, true);
+        return mCharBuffer;
+    }
+
+    @Benchmark
+    public StringBuilder encodeIntoStringBuilder() {
+        mBuilder.setLength(0);
+        return HexUtil.encode(mData, 0, mData.length, mBuilder, true);
+    }
+
+    @Benchmark
+    public byte[] hexStringToBytes() {
+        return HexUtil.hexStringToBytes(mHexString);
+    }
+
+    @Benchmark
+    public byte[] legacyHexStringToBytes() {
+        return LegacyHex.hexStringToBytes(mHexString);
+    }
+
+    @Benchmark
+    public byte[] decodeHex() {
+        return HexUtil.decodeHex(mHexChars);
+    }
+
+    @Benchmark
+    public byte[] legacyDecodeHex() {
+        return LegacyHex.decodeHex(mHexChars);
+    }
+
+    @Benchmark
+    public byte[] decodeCharSequenceIntoByteArray() {
+        HexUtil.decode(mHexString, 0, mHexString.length(), mByteBuffer, 0);
+        return mByteBuffer;
+    }
+
+    @Benchmark
+    public StringBuilder hexDump() throws IOException {
+        mBuilder.setLength(0);
+        HexDump dump = new HexDump(mBuilder, 1024);
+        dump.write(mData, 0, mData.length);
+        dump.finish();
+        return mBuilder;
+    }
+}
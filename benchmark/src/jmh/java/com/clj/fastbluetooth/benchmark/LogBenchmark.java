@@ -0,0 +1,96 @@
+package com.clj.fastbluetooth.benchmark;
+
+import com.clj.fastbluetooth.utils.AsyncLogSink;
+import com.clj.fastbluetooth.utils.BluetoothLog;
+import com.clj.fastbluetooth.utils.LogSink;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志调用点的开销：关闭时拼接字符串与传格式参数的对比，以及收发数据转储的判断
+ * level为NONE时全部关闭，ERROR时输出到{@link #sink}，目标输出本身不做任何事。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LogBenchmark {
+
+    @Param({"NONE", "ERROR"})
+    public String level;
+
+    @Param({"direct", "async"})
+    public String sink;
+
+    private final String mName = "insecureRfcomm";
+    private final String mMessage = "read failed, socket might closed or timeout, read ret: -1";
+    private int mAttempts;
+    private byte[] mData;
+    private AsyncLogSink mAsyncSink;
+
+    @Setup
+    public void setup() {
+        BluetoothLog.isPrint = true;
+        BluetoothLog.setLevel("NONE".equals(level) ? BluetoothLog.NONE : BluetoothLog.ERROR);
+        LogSink target = new LogSink() {
+            @Override
+            public void log(int level, String tag, String message) {
+            }
+        };
+        if ("async".equals(sink)) {
+            mAsyncSink = new AsyncLogSink(target);
+            BluetoothLog.setSink(mAsyncSink);
+        } else {
+            BluetoothLog.setSink(target);
+        }
+        BluetoothLog.setTrafficEnabled(false, BluetoothLog.DEFAULT_TRAFFIC_MAX_BYTES);
+        mData = new byte[256];
+        new Random(42).nextBytes(mData);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BluetoothLog.setSink(null);
+        BluetoothLog.setLevel(BluetoothLog.VERBOSE);
+        if (mAsyncSink != null) {
+            mAsyncSink.close();
+        }
+    }
+
+    /**
+     * 原来的写法，无论是否输出都先拼接
+     */
+    @Benchmark
+    public void concat() {
+        int attempts = (mAttempts++ & 0x03) + 1;
+        BluetoothLog.e("socket connect catch(" + mName + ", 第" + attempts + "次): " + mMessage);
+    }
+
+    @Benchmark
+    public void format() {
+        int attempts = (mAttempts++ & 0x03) + 1;
+        BluetoothLog.e("socket connect catch(%s, 第%d次): %s", mName, attempts, mMessage);
+    }
+
+    /**
+     * 读写线程每段数据都会做的判断，收发转储关闭时
+     */
+    @Benchmark
+    public void trafficDisabled(Blackhole blackhole) {
+        if (BluetoothLog.isTrafficLoggable()) {
+            BluetoothLog.traffic("00:11:22:33:44:55", "rx", mData, 0, mData.length);
+        }
+        blackhole.consume(mData);
+    }
+}
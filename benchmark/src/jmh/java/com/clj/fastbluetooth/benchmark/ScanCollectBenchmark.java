@@ -0,0 +1,125 @@
+package com.clj.fastbluetooth.benchmark;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.clj.fastbluetooth.core.ScanFilterMatcher;
+import com.clj.fastbluetooth.core.ScanResultStore;
+import com.clj.fastbluetooth.data.ScanFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 筛选任务对每个广播事件的处理：按MAC去重，新设备再按扫描条件匹配
+ * 事件中每个设备平均重复出现{@link #DUPLICATES}次，和实际扫描中同一设备多次广播的情况一致。
+ * filterKind为条件的类型：exact为完整名称和MAC，prefix、suffix、regex为同样数量的名称前缀、后缀和正则，
+ * 每种条件中每20条有1条能匹配上设备。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScanCollectBenchmark {
+
+    private static final int EVENTS = 4096;
+    private static final int DUPLICATES = 4;
+
+    @Param({"10", "10000"})
+    public int filterSize;
+
+    @Param({"exact", "prefix", "suffix", "regex"})
+    public String filterKind;
+
+    private BluetoothDevice[] mEvents;
+    private ScanFilter mFilter;
+    private ScanFilterMatcher mMatcher;
+    private ScanResultStore mStore;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        BluetoothDevice[] devices = new BluetoothDevice[EVENTS / DUPLICATES];
+        for (int i = 0; i < devices.length; i++) {
+            devices[i] = new BluetoothDevice(randomMac(random), "Device-" + i);
+        }
+        mEvents = new BluetoothDevice[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            mEvents[i] = devices[random.nextInt(devices.length)];
+        }
+
+        mFilter = new ScanFilter();
+        List<String> names = new ArrayList<>();
+        List<String> macs = new ArrayList<>();
+        for (int i = 0; i < filterSize; i++) {
+            boolean hit = i % 20 == 0;
+            // 设备名为"Device-序号"
+            String name = devices[i % devices.length].getName();
+            switch (filterKind) {
+                case "prefix":
+                    mFilter.addNamePrefixes(hit ? name : "Target-" + i + "-");
+                    break;
+                case "suffix":
+                    mFilter.addNameSuffixes(hit ? name.substring(name.indexOf('-')) : "-Target" + i);
+                    break;
+                case "regex":
+                    mFilter.addNamePattern(hit ? name + "(-[0-9A-F]{4})?" : "Target-" + i + "-[0-9A-F]{4}");
+                    break;
+                default:
+                    // 一半是名称一半是MAC
+                    if (hit) {
+                        names.add(name);
+                    } else if (i % 2 == 0) {
+                        names.add("Target-" + i);
+                    } else {
+                        macs.add(randomMac(random));
+                    }
+                    break;
+            }
+        }
+        if ("exact".equals(filterKind)) {
+            mFilter.addNames(names).addMacs(macs).addNamePrefixes("Printer-", "Scale-");
+        }
+        mMatcher = new ScanFilterMatcher(mFilter);
+        mStore = new ScanResultStore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int collect() {
+        mStore.clear();
+        int matched = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            BluetoothDevice device = mEvents[i];
+            if (mStore.put(device, i) && mMatcher.matches(device.getName(), device.getAddress())) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 每次扫描开始时编译一次扫描条件
+     */
+    @Benchmark
+    public ScanFilterMatcher compileFilter() {
+        return new ScanFilterMatcher(mFilter);
+    }
+
+    private static String randomMac(Random random) {
+        return String.format(Locale.US, "%02X:%02X:%02X:%02X:%02X:%02X",
+                random.nextInt(256), random.nextInt(256), random.nextInt(256),
+                random.nextInt(256), random.nextInt(256), random.nextInt(256));
+    }
+}
@@ -0,0 +1,143 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothTransferCallback;
+import com.clj.fastbluetooth.callback.BluetoothWriteCallback;
+import com.clj.fastbluetooth.data.TransferOptions;
+import com.clj.fastbluetooth.data.WriteOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发送一个固件大小的文件：整个读入byte[]后一次写入，和{@link FileTransfer}按块读取发送
+ * 执行器直接在当前线程运行任务，用丢弃数据的输出流代替socket，比较的是读取和排队的开销以及每次发送分配的堆内存。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileTransferBenchmark {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({"4194304"})
+    public int fileSize;
+
+    @Param({"4096"})
+    public int chunkSize;
+
+    private File mFile;
+    private WriteQueue mWriteQueue;
+    private TransferOptions mOptions;
+    private BluetoothWriteCallback mWriteCallback;
+    private BluetoothTransferCallback mTransferCallback;
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException {
+        mFile = File.createTempFile("transfer", ".bin");
+        byte[] data = new byte[fileSize];
+        new Random(1).nextBytes(data);
+        FileOutputStream out = new FileOutputStream(mFile);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        mWriteQueue = new WriteQueue(new NullOutputStream(), new WriteOptions(), DIRECT);
+        mOptions = new TransferOptions().setChunkSize(chunkSize);
+        mWriteCallback = new BluetoothWriteCallback() {
+            @Override
+            public void onWriteError(BluetoothException e) {
+                throw new IllegalStateException(e.toString());
+            }
+
+            @Override
+            public void onWriteSuccess(byte[] data) {
+                blackhole.consume(data);
+            }
+        };
+        mTransferCallback = new BluetoothTransferCallback() {
+            @Override
+            public void onTransferProgress(long position, long end, long bytesPerSecond) {
+                blackhole.consume(position);
+            }
+
+            @Override
+            public void onTransferComplete(long bytes, long bytesPerSecond) {
+                blackhole.consume(bytes);
+            }
+
+            @Override
+            public void onTransferError(BluetoothException e, long position) {
+                throw new IllegalStateException(e.toString());
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        mWriteQueue.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public void readAllAndWrite() throws IOException {
+        byte[] data = new byte[(int) mFile.length()];
+        FileInputStream in = new FileInputStream(mFile);
+        try {
+            int position = 0;
+            while (position < data.length) {
+                int count = in.read(data, position, data.length - position);
+                if (count < 0) {
+                    throw new IOException("file truncated");
+                }
+                position += count;
+            }
+        } finally {
+            in.close();
+        }
+        mWriteQueue.write(data, mWriteCallback);
+    }
+
+    @Benchmark
+    public FileTransfer sendFile() {
+        FileTransfer transfer = new FileTransfer(mFile, mWriteQueue, DIRECT, mOptions, mTransferCallback);
+        transfer.start();
+        if (!transfer.isFinished()) {
+            throw new IllegalStateException("transfer not finished: " + transfer);
+        }
+        return transfer;
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothReadCallback;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 改为阻塞读之前BluetoothController的ReadThread，轮询available()，没有数据时sleep(10)，只用于基准测试对比
+ */
+final class LegacyReadThread extends Thread {
+
+    private final DataInputStream dis;
+    private final BluetoothReadCallback mReadCallback;
+    private volatile boolean isCycleRun = false;
+    byte[] buffer = new byte[0];
+
+    LegacyReadThread(InputStream in, BluetoothReadCallback callback) {
+        dis = new DataInputStream(in);
+        mReadCallback = callback;
+    }
+
+    void cancel() {
+        if (this.isCycleRun) {
+            this.isCycleRun = false;
+            this.interrupt();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        this.isCycleRun = true;
+        super.start();
+    }
+
+    @Override
+    public void run() {
+        while (this.isCycleRun) {
+            try {
+                this.cycle();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void cycle() {
+        try {
+            int len = dis.available();
+            if (len == 0) {
+                if (buffer.length > 0) {
+                    if (mReadCallback != null) {
+                        mReadCallback.onDataReceive(buffer);
+                    }
+                    buffer = new byte[0];
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    // cancel()
+                }
+            } else {
+                buffer = new byte[len];
+                dis.read(buffer);
+            }
+        } catch (IOException e) {
+            cancel();
+            if (mReadCallback != null) {
+                mReadCallback.onReadError(new BluetoothException(BluetoothException.ERROR_IO, null));
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothWriteCallback;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 改为写队列之前BluetoothController的写入方式，每次write()新建一个WriteThread，只用于基准测试对比
+ */
+final class LegacyWriter {
+
+    private final OutputStream mOutputStream;
+    private BluetoothWriteCallback mWriteCallback;
+    private WriteThread mWriteThread = null;
+
+    LegacyWriter(OutputStream outputStream) {
+        mOutputStream = outputStream;
+    }
+
+    void write(byte[] command, BluetoothWriteCallback callback) {
+        this.mWriteCallback = callback;
+
+        if (mWriteThread != null && mWriteThread.isAlive()) {
+            mWriteThread.interrupt();
+        }
+        mWriteThread = null;
+        mWriteThread = new WriteThread(command);
+        mWriteThread.start();
+    }
+
+    private class WriteThread extends Thread {
+
+        private final byte[] mCommand;
+
+        WriteThread(byte[] command) {
+            mCommand = command;
+        }
+
+        @Override
+        public void run() {
+            super.run();
+            try {
+                OutputStream os = mOutputStream;
+                DataOutputStream dos = new DataOutputStream(os);
+                dos.write(mCommand);
+                dos.flush();
+                os.flush();
+                if (mWriteCallback != null) {
+                    mWriteCallback.onWriteSuccess(mCommand);
+                }
+            } catch (IOException e) {
+                if (mWriteCallback != null) {
+                    mWriteCallback.onWriteError(new BluetoothException(BluetoothException.ERROR_IO, null));
+                }
+            }
+        }
+    }
+}
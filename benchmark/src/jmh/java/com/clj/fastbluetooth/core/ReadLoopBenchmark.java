@@ -0,0 +1,199 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothReadCallback;
+import com.clj.fastbluetooth.codec.LengthFieldFrameDecoder;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取路径：输入流 -> 接收缓冲区 -> 分帧 -> 统计 -> 回调
+ * read：用内存中的输入流代替socket，读任务在当前线程运行到流结束，结果为每帧的平均耗时；
+ * latency：通过管道流写入一条数据，等待读线程回调，结果为端到端的平均延迟；
+ * idle：链路空闲时读线程消耗的CPU，readerCpuNanos为每秒消耗的CPU纳秒数。
+ * 后两项对比阻塞读的{@link ReadLoop}和改为阻塞读之前轮询available()的{@link LegacyReadThread}。
+ */
+public class ReadLoopBenchmark {
+
+    private static final int FRAMES = 2048;
+    private static final int HEADER_LENGTH = 3;
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(FRAMES)
+    public void read(StreamState state, final Blackhole blackhole) {
+        ReadLoop readLoop = new ReadLoop(new ByteArrayInputStream(state.mStream), ReadLoop.DEFAULT_BUFFER_SIZE,
+                ReadLoop.DEFAULT_MAX_BUFFER_SIZE, new BluetoothReadCallback() {
+            @Override
+            public void onReadError(BluetoothException e) {
+                blackhole.consume(e);
+            }
+
+            @Override
+            public void onDataReceive(byte[] data) {
+                blackhole.consume(data);
+            }
+        });
+        if (state.framed) {
+            readLoop.setFrameDecoder(new LengthFieldFrameDecoder(1024, 1, 2, 0, HEADER_LENGTH, true));
+        }
+        readLoop.setConnectionStats(new ConnectionStats("00:11:22:33:44:55"));
+        readLoop.start(DIRECT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] latency(PipeState state) throws Exception {
+        state.mOutput.write(state.mMessage);
+        state.mOutput.flush();
+        return state.mReceived.take();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void idle(PipeState state, CpuCounters counters) throws InterruptedException {
+        long start = state.readerCpuTime();
+        Thread.sleep(100);
+        counters.readerCpuNanos += state.readerCpuTime() - start;
+    }
+
+    @State(Scope.Thread)
+    public static class StreamState {
+
+        @Param({"20", "200"})
+        public int payloadSize;
+
+        @Param({"false", "true"})
+        public boolean framed;
+
+        @Param({"false", "true"})
+        public boolean metrics;
+
+        byte[] mStream;
+
+        @Setup
+        public void setup() {
+            // 帧格式为 [0xAA][len 2字节][payload]
+            int frameSize = HEADER_LENGTH + payloadSize;
+            mStream = new byte[frameSize * FRAMES];
+            byte[] payload = new byte[payloadSize];
+            new Random(42).nextBytes(payload);
+            for (int i = 0; i < FRAMES; i++) {
+                int offset = i * frameSize;
+                mStream[offset] = (byte) 0xAA;
+                mStream[offset + 1] = (byte) (payloadSize >>> 8);
+                mStream[offset + 2] = (byte) payloadSize;
+                System.arraycopy(payload, 0, mStream, offset + HEADER_LENGTH, payloadSize);
+            }
+            BluetoothMetrics.getInstance().setEnabled(metrics);
+        }
+    }
+
+    /**
+     * 读线程阻塞在管道流上，基准测试线程作为对端写入
+     */
+    @State(Scope.Thread)
+    public static class PipeState {
+
+        @Param({"blocking", "legacy"})
+        public String loop;
+
+        final byte[] mMessage = new byte[20];
+        final BlockingQueue<byte[]> mReceived = new LinkedBlockingQueue<>();
+        PipedOutputStream mOutput;
+        private ReadLoop mReadLoop;
+        private LegacyReadThread mLegacyThread;
+        private volatile Thread mReaderThread;
+        private final ThreadMXBean mThreadBean = ManagementFactory.getThreadMXBean();
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException, InterruptedException {
+            mOutput = new PipedOutputStream();
+            PipedInputStream input = new PipedInputStream(mOutput, 4096);
+            BluetoothReadCallback callback = new BluetoothReadCallback() {
+                @Override
+                public void onReadError(BluetoothException e) {
+                }
+
+                @Override
+                public void onDataReceive(byte[] data) {
+                    mReceived.add(data);
+                }
+            };
+            if ("legacy".equals(loop)) {
+                mLegacyThread = new LegacyReadThread(input, callback);
+                mLegacyThread.start();
+                mReaderThread = mLegacyThread;
+            } else {
+                mReadLoop = new ReadLoop(input, callback);
+                mReadLoop.start(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        Thread thread = new Thread(command);
+                        mReaderThread = thread;
+                        thread.start();
+                    }
+                });
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            if (mLegacyThread != null) {
+                mLegacyThread.cancel();
+            }
+            if (mReadLoop != null) {
+                mReadLoop.close();
+            }
+            mOutput.close();
+        }
+
+        long readerCpuTime() {
+            return mThreadBean.getThreadCpuTime(mReaderThread.getId());
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class CpuCounters {
+        public long readerCpuNanos;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            readerCpuNanos = 0;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothReadCallback;
+import com.clj.fastbluetooth.callback.BluetoothReceiveCallback;
+import com.clj.fastbluetooth.data.ReceiveOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接收大量数据写入文件：每段数据回调byte[]后由应用写入文件，和{@link ChannelReceiver}经直接缓冲区写入通道
+ * 直接调用读任务处理每段数据，文件为/dev/null，包含真实的write系统调用但不受磁盘影响，结果为每段数据的平均耗时。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReceiveBenchmark {
+
+    private static final int CHUNKS = 1024;
+
+    // RFCOMM一个数据包的典型大小
+    @Param({"990"})
+    public int chunkSize;
+
+    @Param({"false", "true"})
+    public boolean terminator;
+
+    private byte[] mChunk;
+    private FileOutputStream mCallbackFile;
+    private FileOutputStream mChannelFile;
+    private ReadLoop mCallbackLoop;
+    private ReadLoop mChannelLoop;
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException {
+        mChunk = new byte[chunkSize];
+        // 不含0xFF，结束标记不会出现
+        Random random = new Random(7);
+        for (int i = 0; i < mChunk.length; i++) {
+            mChunk[i] = (byte) random.nextInt(0xFF);
+        }
+        mCallbackFile = new FileOutputStream("/dev/null");
+        mChannelFile = new FileOutputStream("/dev/null");
+
+        mCallbackLoop = new ReadLoop(new ByteArrayInputStream(new byte[0]), new BluetoothReadCallback() {
+            @Override
+            public void onReadError(BluetoothException e) {
+                blackhole.consume(e);
+            }
+
+            @Override
+            public void onDataReceive(byte[] data) {
+                try {
+                    mCallbackFile.write(data);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        ReceiveOptions options = new ReceiveOptions();
+        if (terminator) {
+            options.setTerminator(new byte[]{(byte) 0xFF, (byte) 0xFF});
+        }
+        mChannelLoop = new ReadLoop(new ByteArrayInputStream(new byte[0]), null);
+        mChannelLoop.setChannelReceiver(new ChannelReceiver(mChannelFile.getChannel(), false, options,
+                new BluetoothReceiveCallback() {
+                    @Override
+                    public void onReceiveProgress(long bytes, long bytesPerSecond) {
+                        blackhole.consume(bytes);
+                    }
+
+                    @Override
+                    public void onReceiveComplete(long bytes, long bytesPerSecond) {
+                        throw new IllegalStateException("unexpected complete");
+                    }
+
+                    @Override
+                    public void onReceiveError(BluetoothException e, long bytes) {
+                        throw new IllegalStateException(e.toString());
+                    }
+                }));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mCallbackFile.close();
+        mChannelFile.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void readCallbackToFile() {
+        for (int i = 0; i < CHUNKS; i++) {
+            mCallbackLoop.onDataReadable(mChunk, 0, mChunk.length);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void channelReceiver() {
+        for (int i = 0; i < CHUNKS; i++) {
+            mChannelLoop.onDataReadable(mChunk, 0, mChunk.length);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothReadCallback;
+import com.clj.fastbluetooth.codec.LengthFieldFrameDecoder;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 抓包：读写线程记录一段数据的耗时，以及抓包文件经{@link ReplayInputStream}不等待地重放、分帧、回调的每帧耗时
+ * 记录的文件写满后重新开始，映射新区域的开销按实际频率计入。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrafficCaptureBenchmark {
+
+    private static final int FRAMES = 2048;
+    private static final int HEADER_LENGTH = 3;
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+    private static final long MAC = 0x001122334455L;
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({"20", "200", "2000"})
+    public int payloadSize;
+
+    private byte[] mFrame;
+    private File mRecordFile;
+    private File mReplayFile;
+    private TrafficRecorder mRecorder;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // 帧格式为 [0xAA][len 2字节][payload]
+        mFrame = new byte[HEADER_LENGTH + payloadSize];
+        new Random(42).nextBytes(mFrame);
+        mFrame[0] = (byte) 0xAA;
+        mFrame[1] = (byte) (payloadSize >>> 8);
+        mFrame[2] = (byte) payloadSize;
+
+        mRecordFile = File.createTempFile("record", ".fbtc");
+        mRecorder = new TrafficRecorder(mRecordFile, MAX_BYTES);
+
+        mReplayFile = File.createTempFile("replay", ".fbtc");
+        TrafficRecorder recorder = new TrafficRecorder(mReplayFile, MAX_BYTES);
+        for (int i = 0; i < FRAMES; i++) {
+            recorder.record(TrafficRecorder.DIRECTION_RX, MAC, mFrame, 0, mFrame.length);
+        }
+        recorder.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mRecorder.close();
+        mRecordFile.delete();
+        mReplayFile.delete();
+    }
+
+    @Benchmark
+    public void record() throws IOException {
+        if (mRecorder.getSize() + mFrame.length + TrafficRecorder.RECORD_HEADER_SIZE > MAX_BYTES) {
+            mRecorder.close();
+            mRecorder = new TrafficRecorder(mRecordFile, MAX_BYTES);
+        }
+        mRecorder.record(TrafficRecorder.DIRECTION_RX, MAC, mFrame, 0, mFrame.length);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void replay(final Blackhole blackhole) throws IOException {
+        ReadLoop readLoop = new ReadLoop(new ReplayInputStream(mReplayFile, null, ReplayInputStream.AS_FAST_AS_POSSIBLE),
+                new BluetoothReadCallback() {
+                    @Override
+                    public void onReadError(BluetoothException e) {
+                        blackhole.consume(e);
+                    }
+
+                    @Override
+                    public void onDataReceive(byte[] data) {
+                        blackhole.consume(data);
+                    }
+                });
+        readLoop.setFrameDecoder(new LengthFieldFrameDecoder(4096, 1, 2, 0, HEADER_LENGTH, true));
+        readLoop.start(DIRECT);
+    }
+}
@@ -0,0 +1,226 @@
+package com.clj.fastbluetooth.core;
+
+import com.clj.fastbluetooth.callback.BluetoothWriteCallback;
+import com.clj.fastbluetooth.data.WriteOptions;
+import com.clj.fastbluetooth.exception.BluetoothException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入路径：入队 -> 写任务取出 -> 合并 -> 输出流 -> 统计 -> 回调
+ * writeAndDrain：一次入队{@link #WRITES}条数据后在当前线程中排空，用丢弃数据的输出流代替socket，
+ * 结果为每条数据的平均耗时，只反映写队列本身的开销；
+ * burst：每次write()都有固定开销的输出流代替socket，在共享写线程池上写出{@link #BURST}条数据并等待全部回调，
+ * 结果为每秒写出的条数，对比不合并和不同linger时间下的合并写入；
+ * legacyBurst：同样的输出流和数据量，按改为写队列之前的方式每次write()新建一个线程，见{@link LegacyWriter}。
+ */
+public class WriteQueueBenchmark {
+
+    private static final int WRITES = 1024;
+    private static final int BURST = 256;
+
+    // 一次socket write的固定开销，包括系统调用和RFCOMM分包，与字节数关系不大
+    private static final long WRITE_COST_NANOS = 20000;
+    private static final long BYTE_COST_NANOS = 5;
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(WRITES)
+    public void writeAndDrain(DrainState state) {
+        for (int i = 0; i < WRITES; i++) {
+            state.mWriteQueue.write(state.mPayload, state.mCallback);
+        }
+        state.mExecutor.drain();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public void burst(SinkState state) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        state.mCallback.mDone = done;
+        for (int i = 0; i < BURST; i++) {
+            state.mWriteQueue.write(state.mPayload, state.mCallback);
+        }
+        done.await();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public void legacyBurst(LegacyState state) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        state.mCallback.mDone = done;
+        for (int i = 0; i < BURST; i++) {
+            state.mWriter.write(state.mPayload, state.mCallback);
+        }
+        done.await();
+    }
+
+    @State(Scope.Thread)
+    public static class DrainState {
+
+        @Param({"20", "200"})
+        public int payloadSize;
+
+        @Param({"false", "true"})
+        public boolean coalescing;
+
+        @Param({"false", "true"})
+        public boolean metrics;
+
+        final ManualExecutor mExecutor = new ManualExecutor();
+        byte[] mPayload;
+        WriteQueue mWriteQueue;
+        BluetoothWriteCallback mCallback;
+
+        @Setup
+        public void setup(final Blackhole blackhole) {
+            mPayload = new byte[payloadSize];
+            WriteOptions options = new WriteOptions();
+            if (coalescing) {
+                options.setMaxBatchSize(1024);
+            }
+            mWriteQueue = new WriteQueue(new NullOutputStream(), options, mExecutor);
+            mWriteQueue.setConnectionStats(new ConnectionStats("00:11:22:33:44:55"));
+            mCallback = new BluetoothWriteCallback() {
+                @Override
+                public void onWriteError(BluetoothException e) {
+                    blackhole.consume(e);
+                }
+
+                @Override
+                public void onWriteSuccess(byte[] data) {
+                    blackhole.consume(data);
+                }
+            };
+            BluetoothMetrics.getInstance().setEnabled(metrics);
+        }
+
+        @TearDown
+        public void tearDown() {
+            mWriteQueue.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SinkState {
+
+        // off为不合并，其余为合并写入的linger毫秒数
+        @Param({"off", "0", "1", "5"})
+        public String linger;
+
+        byte[] mPayload = new byte[20];
+        WriteQueue mWriteQueue;
+        final CountingCallback mCallback = new CountingCallback();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            WriteOptions options = new WriteOptions();
+            if (!"off".equals(linger)) {
+                options.setMaxBatchSize(1024).setLingerMillis(Long.parseLong(linger));
+            }
+            mWriteQueue = new WriteQueue(new CostlyOutputStream(), options,
+                    BluetoothExecutor.getInstance().getWriteExecutor());
+            BluetoothMetrics.getInstance().setEnabled(false);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            mWriteQueue.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LegacyState {
+        byte[] mPayload = new byte[20];
+        final LegacyWriter mWriter = new LegacyWriter(new CostlyOutputStream());
+        final CountingCallback mCallback = new CountingCallback();
+    }
+
+    static final class CountingCallback implements BluetoothWriteCallback {
+        volatile CountDownLatch mDone;
+
+        @Override
+        public void onWriteError(BluetoothException e) {
+            throw new IllegalStateException("write failed: " + e);
+        }
+
+        @Override
+        public void onWriteSuccess(byte[] data) {
+            mDone.countDown();
+        }
+    }
+
+    /**
+     * 只记录提交的任务，由基准测试线程统一执行，入队和写出不会并发
+     */
+    private static final class ManualExecutor implements Executor {
+        private Runnable mPending;
+
+        @Override
+        public void execute(Runnable command) {
+            mPending = command;
+        }
+
+        void drain() {
+            Runnable task;
+            while ((task = mPending) != null) {
+                mPending = null;
+                task.run();
+            }
+        }
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    /**
+     * 每次write忙等固定时间加上按字节计算的时间，模拟socket写入的开销
+     * 同一个socket上的写入互相排斥，多个线程同时写时依次完成
+     */
+    static final class CostlyOutputStream extends OutputStream {
+        @Override
+        public synchronized void write(int b) {
+            spin(WRITE_COST_NANOS + BYTE_COST_NANOS);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            spin(WRITE_COST_NANOS + BYTE_COST_NANOS * len);
+        }
+
+        private static void spin(long nanos) {
+            long deadline = System.nanoTime() + nanos;
+            while (System.nanoTime() < deadline) {
+                // 忙等
+            }
+        }
+    }
+}